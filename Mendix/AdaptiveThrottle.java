@@ -0,0 +1,244 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive rate limiter for metadata calls against a (busy) production database.
+ *
+ * Tracks the observed latency per call and adjusts both the number of calls
+ * allowed in flight and the call rate AIMD-style: while calls complete within
+ * the target latency the limits grow additively; when a call is slower than
+ * the target they are halved (at most once per observed latency window).
+ * The call rate is always paced: it is seeded from the latency of the first
+ * call (one connection calling back to back) and adapts from there, so a
+ * sequential export also backs off when the database gets slow. The hard caps
+ * are ceilings only; without a rate cap the rate grows as far as the database
+ * keeps up.
+ *
+ * One throttle is shared by all threads of an export, so parallel workers are
+ * limited by the same concurrency window.
+ *
+ * @author CaseTalk Integration
+ * @version 1.0
+ */
+public class AdaptiveThrottle
+{
+    private static final double MIN_RATE = 1.0;
+    private static final double EWMA_WEIGHT = 0.2;
+
+    private final long targetLatencyNanos;
+    private final int maxConcurrency;
+    private final double maxCallsPerSecond;
+
+    // Current (adaptive) limits; the rate is 0 until the first call is measured
+    private double concurrencyLimit;
+    private double callsPerSecond;
+
+    private int inFlight;
+    private long nextCallNanos;
+    private long lastDecreaseNanos;
+    private boolean decreased;
+    private double averageLatencyNanos;
+
+    // Statistics
+    private long calls;
+    private long slowCalls;
+    private long waitedNanos;
+
+    /**
+     * @param targetLatencyMs    latency per metadata call the database is comfortable with
+     * @param maxConcurrency     hard cap on calls in flight
+     * @param maxCallsPerSecond  ceiling for the adaptive call rate (0 or less: no ceiling)
+     */
+    public AdaptiveThrottle(long targetLatencyMs, int maxConcurrency, double maxCallsPerSecond)
+    {
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, targetLatencyMs));
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.maxCallsPerSecond = maxCallsPerSecond > 0 ? maxCallsPerSecond : Double.POSITIVE_INFINITY;
+
+        // Start conservatively and grow from there
+        this.concurrencyLimit = 1;
+    }
+
+    /**
+     * Wait until a call may start
+     */
+    public synchronized void acquire() throws InterruptedException
+    {
+        long start = System.nanoTime();
+
+        // Wait for a free slot in the concurrency window and for the next slot in the pacing
+        long now;
+        while (true)
+        {
+            if (inFlight >= (int) concurrencyLimit)
+            {
+                wait();
+                continue;
+            }
+
+            now = System.nanoTime();
+            if (callsPerSecond > 0 && nextCallNanos > now)
+            {
+                long delay = nextCallNanos - now;
+                wait(delay / 1000000, (int) (delay % 1000000));
+                continue;
+            }
+            break;
+        }
+
+        if (callsPerSecond > 0)
+        {
+            nextCallNanos = Math.max(now, nextCallNanos) + (long) (1e9 / callsPerSecond);
+        }
+
+        inFlight++;
+        waitedNanos += now - start;
+    }
+
+    /**
+     * Report a finished call and adjust the limits
+     */
+    public synchronized void release(long latencyNanos)
+    {
+        // Calls that were running together with this one (a sequential export has just one)
+        int concurrent = inFlight;
+        inFlight--;
+        calls++;
+
+        averageLatencyNanos = averageLatencyNanos == 0
+            ? latencyNanos
+            : (1 - EWMA_WEIGHT) * averageLatencyNanos + EWMA_WEIGHT * latencyNanos;
+
+        // Rate the running calls achieve at the current latency
+        double achievedRate = concurrent * 1e9 / Math.max(1, averageLatencyNanos);
+
+        long now = System.nanoTime();
+        if (callsPerSecond == 0)
+        {
+            // Seed the pacing with the first measured call
+            callsPerSecond = Math.min(maxCallsPerSecond, Math.max(MIN_RATE, achievedRate));
+        }
+
+        if (latencyNanos > targetLatencyNanos)
+        {
+            slowCalls++;
+
+            // Multiplicative decrease, once per latency window so one burst of slow calls
+            // does not collapse the limits to the minimum
+            if (!decreased || now - lastDecreaseNanos > Math.max(latencyNanos, targetLatencyNanos))
+            {
+                concurrencyLimit = Math.max(1, concurrencyLimit / 2);
+
+                // Never pace below a 50% duty cycle of a single connection: at that point
+                // the database already spends more time idle than serving the export
+                double dutyCycleRate = Math.max(MIN_RATE, 0.5e9 / averageLatencyNanos);
+                double current = Math.min(callsPerSecond, achievedRate);
+                callsPerSecond = Math.min(maxCallsPerSecond, Math.max(dutyCycleRate, current / 2));
+                lastDecreaseNanos = now;
+                decreased = true;
+            }
+        }
+        else
+        {
+            // Additive increase: about one extra slot per window of calls. The rate does not
+            // run far ahead of what the connections achieve, so a decrease bites at once.
+            concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1 / concurrencyLimit);
+            callsPerSecond = Math.min(maxCallsPerSecond, Math.min(callsPerSecond + 1, 2 * achievedRate));
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * Run a unit of work (e.g. a parallel worker's metadata call) under the throttle
+     */
+    public <T> T call(Callable<T> work) throws Exception
+    {
+        acquire();
+        long start = System.nanoTime();
+        try
+        {
+            return work.call();
+        }
+        finally
+        {
+            release(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Wrap DatabaseMetaData so that every call returning a ResultSet (a round trip)
+     * goes through the throttle
+     */
+    public DatabaseMetaData wrap(final DatabaseMetaData metaData)
+    {
+        return (DatabaseMetaData) Proxy.newProxyInstance(
+            DatabaseMetaData.class.getClassLoader(), new Class<?>[] {DatabaseMetaData.class}, new InvocationHandler()
+            {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+                {
+                    if (!ResultSet.class.isAssignableFrom(method.getReturnType()))
+                    {
+                        return invokeTarget(metaData, method, args);
+                    }
+
+                    acquire();
+                    long start = System.nanoTime();
+                    try
+                    {
+                        return invokeTarget(metaData, method, args);
+                    }
+                    finally
+                    {
+                        release(System.nanoTime() - start);
+                    }
+                }
+            });
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable
+    {
+        try
+        {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Current concurrency limit (whole calls)
+     */
+    public synchronized int getConcurrencyLimit()
+    {
+        return (int) concurrencyLimit;
+    }
+
+    /**
+     * Current paced call rate (0 before the first call)
+     */
+    public synchronized double getCallsPerSecond()
+    {
+        return callsPerSecond;
+    }
+
+    /**
+     * Summary of the throttle's behaviour for the export log
+     */
+    public synchronized String getSummary()
+    {
+        return String.format("%d metadata calls, avg latency %.1f ms, %d slower than target, "
+                + "waited %.1f s, final concurrency %d, final rate %s calls/s",
+            calls, averageLatencyNanos / 1e6, slowCalls, waitedNanos / 1e9, (int) concurrencyLimit,
+            String.format("%.0f", callsPerSecond));
+    }
+}
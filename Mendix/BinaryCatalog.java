@@ -0,0 +1,671 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary columnar catalog format (.bcatalog), an optional companion to .jcatalog.
+ *
+ * Layout (all integers big-endian):
+ *
+ *   header    "CTBCAT" + int16 version
+ *   sections  STRINGS, CATALOGS, SCHEMAS, TABLES, COLUMNS, PKCOLUMNS,
+ *             FOREIGNKEYS, FKCOLUMNS, ASSOCIATIONS, TABLEINDEX, SKIPPED,
+ *             INDEXES, INDEXCOLUMNS
+ *   trailer   int section count, int64 offset per section,
+ *             int64 offset of the trailer, "CTBCAT"
+ *
+ * Every section starts with an int row count followed by one int array per
+ * attribute (columnar). Strings are stored once in the STRINGS dictionary
+ * (offset table + UTF-8 blob) and referenced by id; -1 means null. Child rows
+ * are stored contiguously, so a table's columns are found through its
+ * columnStart/columnCount entries, and TABLEINDEX holds table ids sorted by
+ * name for random access by name. SKIPPED lists the tables left out of a
+ * partial export (table -1: the whole schema). INDEXES holds the indexes and
+ * unique constraints grouped by table id. SKIPPED and the index sections are
+ * optional when reading.
+ *
+ * Files are opened memory-mapped (read-only, up to 2 GB) and read lazily;
+ * toModels() materializes CatalogModel instances with bulk array copies.
+ *
+ * @author CaseTalk Integration
+ * @version 1.0
+ */
+public class BinaryCatalog
+{
+    private static final byte[] MAGIC = "CTBCAT".getBytes(StandardCharsets.US_ASCII);
+    private static final short VERSION = 1;
+
+    private static final int STRINGS = 0;
+    private static final int CATALOGS = 1;
+    private static final int SCHEMAS = 2;
+    private static final int TABLES = 3;
+    private static final int COLUMNS = 4;
+    private static final int PKCOLUMNS = 5;
+    private static final int FOREIGNKEYS = 6;
+    private static final int FKCOLUMNS = 7;
+    private static final int ASSOCIATIONS = 8;
+    private static final int TABLEINDEX = 9;
+    private static final int SKIPPED = 10;
+    private static final int INDEXES = 11;
+    private static final int INDEXCOLUMNS = 12;
+    private static final int SECTION_COUNT = 13;
+    private static final int REQUIRED_SECTIONS = 10;
+
+    // Attribute (array) positions within the sections
+    private static final int CATALOG_NAME = 0, CATALOG_SCHEMA_START = 1, CATALOG_SCHEMA_COUNT = 2;
+    private static final int SCHEMA_NAME = 0, SCHEMA_TABLE_START = 1, SCHEMA_TABLE_COUNT = 2,
+        SCHEMA_ASSOC_START = 3, SCHEMA_ASSOC_COUNT = 4;
+    private static final int TABLE_NAME = 0, TABLE_ANNOTATION = 1, TABLE_COLUMN_START = 2, TABLE_COLUMN_COUNT = 3,
+        TABLE_PK_START = 4, TABLE_PK_COUNT = 5, TABLE_FK_START = 6, TABLE_FK_COUNT = 7, TABLE_SCHEMA = 8;
+    private static final int COLUMN_NAME = 0, COLUMN_TYPE = 1, COLUMN_SIZE = 2, COLUMN_FLAGS = 3,
+        COLUMN_ANNOTATION = 4, COLUMN_DEFAULT = 5;
+    private static final int PK_COLUMN = 0, PK_POSITION = 1;
+    private static final int FK_NAME = 0, FK_REF_SCHEMA = 1, FK_REF_TABLE = 2, FK_COLUMN_START = 3, FK_COLUMN_COUNT = 4;
+    private static final int FKCOL_COLUMN = 0, FKCOL_REF_COLUMN = 1, FKCOL_POSITION = 2;
+    private static final int ASSOC_TYPE = 0, ASSOC_JUNCTION = 1, ASSOC_NAME = 2, ASSOC_ENTITY1 = 3, ASSOC_ENTITY2 = 4;
+    private static final int SKIPPED_SCHEMA = 0, SKIPPED_TABLE = 1, SKIPPED_REASON = 2;
+    private static final int INDEX_TABLE = 0, INDEX_NAME = 1, INDEX_FLAGS = 2, INDEX_COLUMN_START = 3,
+        INDEX_COLUMN_COUNT = 4;
+    private static final int INDEXCOL_COLUMN = 0, INDEXCOL_POSITION = 1;
+    private static final int UNIQUE = 1, CONSTRAINT = 2;
+
+    private final ByteBuffer buffer;
+    private final int[] sectionOffsets = new int[SECTION_COUNT];
+    private final int[] sectionRows = new int[SECTION_COUNT];
+
+    private final int stringCount;
+    private final int stringOffsetsBase;
+    private final int stringBlobBase;
+    private final String[] stringCache;
+
+    private BinaryCatalog(ByteBuffer buffer) throws IOException
+    {
+        this.buffer = buffer;
+
+        int limit = buffer.limit();
+        if (limit < MAGIC.length * 2 + 2 + 12 || !hasMagic(0) || !hasMagic(limit - MAGIC.length))
+        {
+            throw new IOException("Not a binary catalog file");
+        }
+        if (buffer.getShort(MAGIC.length) != VERSION)
+        {
+            throw new IOException("Unsupported binary catalog version: " + buffer.getShort(MAGIC.length));
+        }
+
+        int trailer = (int) buffer.getLong(limit - MAGIC.length - 8);
+        int sections = buffer.getInt(trailer);
+        if (sections < REQUIRED_SECTIONS)
+        {
+            throw new IOException("Binary catalog is missing sections");
+        }
+
+        for (int i = 0; i < Math.min(sections, SECTION_COUNT); i++)
+        {
+            sectionOffsets[i] = (int) buffer.getLong(trailer + 4 + 8 * i);
+            sectionRows[i] = buffer.getInt(sectionOffsets[i]);
+        }
+
+        stringCount = sectionRows[STRINGS];
+        stringOffsetsBase = sectionOffsets[STRINGS] + 4;
+        stringBlobBase = stringOffsetsBase + 4 * (stringCount + 1);
+        stringCache = new String[stringCount];
+    }
+
+    private boolean hasMagic(int offset)
+    {
+        for (int i = 0; i < MAGIC.length; i++)
+        {
+            if (buffer.get(offset + i) != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Open a binary catalog file memory-mapped
+     */
+    public static BinaryCatalog open(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            // The mapping stays valid after the channel is closed
+            return new BinaryCatalog(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Check whether a file is a binary catalog by its extension
+     */
+    static boolean isBinaryCatalog(Path file)
+    {
+        return file.getFileName().toString().toLowerCase().endsWith(".bcatalog");
+    }
+
+    // --- Random access ---
+
+    public int getCatalogCount() { return sectionRows[CATALOGS]; }
+    public int getTableCount() { return sectionRows[TABLES]; }
+    public String getTableName(int table) { return string(attr(TABLES, TABLE_NAME, table)); }
+    public String getTableSchema(int table) { return string(attr(SCHEMAS, SCHEMA_NAME, attr(TABLES, TABLE_SCHEMA, table))); }
+    public String getTableAnnotation(int table) { return string(attr(TABLES, TABLE_ANNOTATION, table)); }
+    public int getColumnCount(int table) { return attr(TABLES, TABLE_COLUMN_COUNT, table); }
+
+    public String getColumnName(int table, int i) { return string(attr(COLUMNS, COLUMN_NAME, column(table, i))); }
+    public String getColumnType(int table, int i) { return string(attr(COLUMNS, COLUMN_TYPE, column(table, i))); }
+    public int getColumnSize(int table, int i) { return attr(COLUMNS, COLUMN_SIZE, column(table, i)); }
+    public boolean isColumnNullable(int table, int i) { return (attr(COLUMNS, COLUMN_FLAGS, column(table, i)) & 1) != 0; }
+
+    private int column(int table, int i)
+    {
+        return attr(TABLES, TABLE_COLUMN_START, table) + i;
+    }
+
+    /**
+     * Find a table by name (and schema, if not null) using the sorted table index.
+     * Returns the table id or -1.
+     */
+    public int findTable(String schema, String name)
+    {
+        int low = 0;
+        int high = sectionRows[TABLEINDEX] - 1;
+
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int cmp = getTableName(attr(TABLEINDEX, 0, mid)).compareTo(name);
+            if (cmp < 0) low = mid + 1;
+            else if (cmp > 0) high = mid - 1;
+            else
+            {
+                // Walk back to the first entry with this name, then match the schema
+                while (mid > 0 && getTableName(attr(TABLEINDEX, 0, mid - 1)).equals(name)) mid--;
+                for (; mid < sectionRows[TABLEINDEX]; mid++)
+                {
+                    int table = attr(TABLEINDEX, 0, mid);
+                    if (!getTableName(table).equals(name)) break;
+                    if (schema == null || schema.equals(getTableSchema(table))) return table;
+                }
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Read a string from the dictionary; decoded strings are cached
+     */
+    String string(int id)
+    {
+        if (id < 0) return null;
+
+        String value = stringCache[id];
+        if (value == null)
+        {
+            int start = buffer.getInt(stringOffsetsBase + 4 * id);
+            int end = buffer.getInt(stringOffsetsBase + 4 * (id + 1));
+            byte[] bytes = new byte[end - start];
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(stringBlobBase + start);
+            slice.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+            stringCache[id] = value;
+        }
+        return value;
+    }
+
+    private int attr(int section, int attribute, int row)
+    {
+        return buffer.getInt(sectionOffsets[section] + 4 + 4 * (attribute * sectionRows[section] + row));
+    }
+
+    private int[] intColumn(int section, int attribute)
+    {
+        int[] values = new int[sectionRows[section]];
+        IntBuffer ints = slice(sectionOffsets[section] + 4 + 4 * attribute * sectionRows[section]).asIntBuffer();
+        ints.get(values);
+        return values;
+    }
+
+    private ByteBuffer slice(int offset)
+    {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(offset);
+        return slice.slice();
+    }
+
+    // --- Conversion to the in-memory model ---
+
+    /**
+     * Materialize all catalogs. The dictionary becomes the model's symbol table,
+     * so column attributes are copied as int arrays without remapping.
+     */
+    public List<CatalogModel> toModels()
+    {
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++)
+        {
+            strings[i] = string(i);
+        }
+
+        int[] columnName = intColumn(COLUMNS, COLUMN_NAME);
+        int[] columnType = intColumn(COLUMNS, COLUMN_TYPE);
+        int[] columnSize = intColumn(COLUMNS, COLUMN_SIZE);
+        int[] columnFlags = intColumn(COLUMNS, COLUMN_FLAGS);
+        int[] columnAnnotation = intColumn(COLUMNS, COLUMN_ANNOTATION);
+        int[] columnDefault = intColumn(COLUMNS, COLUMN_DEFAULT);
+
+        // Index rows are ordered by table id
+        int indexRow = 0;
+
+        List<CatalogModel> models = new ArrayList<>();
+        for (int c = 0; c < getCatalogCount(); c++)
+        {
+            CatalogModel model = new CatalogModel(string(attr(CATALOGS, CATALOG_NAME, c)), strings);
+
+            int schemaStart = attr(CATALOGS, CATALOG_SCHEMA_START, c);
+            int schemaEnd = schemaStart + attr(CATALOGS, CATALOG_SCHEMA_COUNT, c);
+            for (int s = schemaStart; s < schemaEnd; s++)
+            {
+                CatalogModel.Schema schema = model.addSchema(string(attr(SCHEMAS, SCHEMA_NAME, s)));
+                readSkipped(schema, s);
+
+                int tableStart = attr(SCHEMAS, SCHEMA_TABLE_START, s);
+                int tableEnd = tableStart + attr(SCHEMAS, SCHEMA_TABLE_COUNT, s);
+                for (int t = tableStart; t < tableEnd; t++)
+                {
+                    CatalogModel.Table table = schema.addTable(getTableName(t));
+                    table.annotation = getTableAnnotation(t);
+
+                    int from = attr(TABLES, TABLE_COLUMN_START, t);
+                    int count = attr(TABLES, TABLE_COLUMN_COUNT, t);
+                    table.columnCount = count;
+                    table.columnNames = Arrays.copyOfRange(columnName, from, from + count);
+                    table.columnTypes = Arrays.copyOfRange(columnType, from, from + count);
+                    table.columnSizes = Arrays.copyOfRange(columnSize, from, from + count);
+                    table.columnFlags = new byte[count];
+                    for (int i = 0; i < count; i++)
+                    {
+                        table.columnFlags[i] = (byte) columnFlags[from + i];
+                        if (columnAnnotation[from + i] >= 0)
+                        {
+                            if (table.columnAnnotations == null) table.columnAnnotations = new String[count];
+                            table.columnAnnotations[i] = strings[columnAnnotation[from + i]];
+                        }
+                        if (columnDefault[from + i] >= 0)
+                        {
+                            if (table.columnDefaults == null) table.columnDefaults = new String[count];
+                            table.columnDefaults[i] = strings[columnDefault[from + i]];
+                        }
+                    }
+
+                    int pkStart = attr(TABLES, TABLE_PK_START, t);
+                    int pkEnd = pkStart + attr(TABLES, TABLE_PK_COUNT, t);
+                    for (int p = pkStart; p < pkEnd; p++)
+                    {
+                        table.addPrimaryKeyColumn(string(attr(PKCOLUMNS, PK_COLUMN, p)), attr(PKCOLUMNS, PK_POSITION, p));
+                    }
+
+                    int fkStart = attr(TABLES, TABLE_FK_START, t);
+                    int fkEnd = fkStart + attr(TABLES, TABLE_FK_COUNT, t);
+                    for (int f = fkStart; f < fkEnd; f++)
+                    {
+                        CatalogModel.ForeignKey fk = table.foreignKey(string(attr(FOREIGNKEYS, FK_NAME, f)),
+                            string(attr(FOREIGNKEYS, FK_REF_SCHEMA, f)), string(attr(FOREIGNKEYS, FK_REF_TABLE, f)));
+
+                        int colStart = attr(FOREIGNKEYS, FK_COLUMN_START, f);
+                        int colEnd = colStart + attr(FOREIGNKEYS, FK_COLUMN_COUNT, f);
+                        for (int k = colStart; k < colEnd; k++)
+                        {
+                            fk.addColumn(string(attr(FKCOLUMNS, FKCOL_COLUMN, k)),
+                                string(attr(FKCOLUMNS, FKCOL_REF_COLUMN, k)), attr(FKCOLUMNS, FKCOL_POSITION, k));
+                        }
+                    }
+
+                    for (; indexRow < sectionRows[INDEXES] && attr(INDEXES, INDEX_TABLE, indexRow) == t; indexRow++)
+                    {
+                        int flags = attr(INDEXES, INDEX_FLAGS, indexRow);
+                        CatalogModel.Index index = table.index(string(attr(INDEXES, INDEX_NAME, indexRow)),
+                            (flags & UNIQUE) != 0, (flags & CONSTRAINT) != 0);
+
+                        int colStart = attr(INDEXES, INDEX_COLUMN_START, indexRow);
+                        int colEnd = colStart + attr(INDEXES, INDEX_COLUMN_COUNT, indexRow);
+                        for (int k = colStart; k < colEnd; k++)
+                        {
+                            index.addColumn(string(attr(INDEXCOLUMNS, INDEXCOL_COLUMN, k)),
+                                attr(INDEXCOLUMNS, INDEXCOL_POSITION, k));
+                        }
+                    }
+                }
+
+                int assocStart = attr(SCHEMAS, SCHEMA_ASSOC_START, s);
+                int assocEnd = assocStart + attr(SCHEMAS, SCHEMA_ASSOC_COUNT, s);
+                for (int a = assocStart; a < assocEnd; a++)
+                {
+                    CatalogModel.Association association = schema.addAssociation(string(attr(ASSOCIATIONS, ASSOC_JUNCTION, a)));
+                    association.type = string(attr(ASSOCIATIONS, ASSOC_TYPE, a));
+                    association.name = string(attr(ASSOCIATIONS, ASSOC_NAME, a));
+                    association.entity1 = string(attr(ASSOCIATIONS, ASSOC_ENTITY1, a));
+                    association.entity2 = string(attr(ASSOCIATIONS, ASSOC_ENTITY2, a));
+                }
+            }
+
+            models.add(model);
+        }
+
+        return models;
+    }
+
+    private void readSkipped(CatalogModel.Schema schema, int schemaId)
+    {
+        // Skipped rows are few and grouped by schema; a linear scan is fine
+        for (int i = 0; i < sectionRows[SKIPPED]; i++)
+        {
+            if (attr(SKIPPED, SKIPPED_SCHEMA, i) != schemaId) continue;
+
+            String reason = string(attr(SKIPPED, SKIPPED_REASON, i));
+            int table = attr(SKIPPED, SKIPPED_TABLE, i);
+            if (table < 0)
+            {
+                schema.setSkipped(reason);
+            }
+            else
+            {
+                schema.addSkippedTable(string(table), reason);
+            }
+        }
+    }
+
+    // --- Writing ---
+
+    /**
+     * Write catalogs in the binary format
+     */
+    public static void write(List<CatalogModel> models, Path file) throws IOException
+    {
+        new Builder(models).write(file);
+    }
+
+    /**
+     * Flattens the models into columnar int arrays and a string dictionary
+     */
+    private static class Builder
+    {
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        private final IntColumns catalogs = new IntColumns(3);
+        private final IntColumns schemas = new IntColumns(5);
+        private final IntColumns tables = new IntColumns(9);
+        private final IntColumns columns = new IntColumns(6);
+        private final IntColumns pkColumns = new IntColumns(2);
+        private final IntColumns foreignKeys = new IntColumns(5);
+        private final IntColumns fkColumns = new IntColumns(3);
+        private final IntColumns associations = new IntColumns(5);
+        private final IntColumns skipped = new IntColumns(3);
+        private final IntColumns indexes = new IntColumns(5);
+        private final IntColumns indexColumns = new IntColumns(2);
+        private final List<String> tableNames = new ArrayList<>();
+
+        Builder(List<CatalogModel> models)
+        {
+            for (CatalogModel model : models)
+            {
+                // Use the model's symbol ids where possible (only for a single catalog,
+                // since every catalog has its own symbol table)
+                int[] remap = symbolRemap(model);
+
+                catalogs.add(id(model.name), schemas.rows, model.schemas.size());
+
+                for (CatalogModel.Schema schema : model.schemas)
+                {
+                    int schemaId = schemas.rows;
+                    schemas.add(id(schema.name), tables.rows, schema.tables.size(),
+                        associations.rows, schema.associations.size());
+
+                    for (CatalogModel.Table table : schema.tables)
+                    {
+                        addTable(schemaId, table, remap);
+                    }
+
+                    for (CatalogModel.Association association : schema.associations)
+                    {
+                        associations.add(id(association.type), id(association.junctionTable), id(association.name),
+                            id(association.entity1), id(association.entity2));
+                    }
+
+                    if (schema.skippedReason != null)
+                    {
+                        skipped.add(schemaId, -1, id(schema.skippedReason));
+                    }
+                    for (CatalogModel.SkippedTable table : schema.skippedTables)
+                    {
+                        skipped.add(schemaId, id(table.name), id(table.reason));
+                    }
+                }
+            }
+        }
+
+        private int[] symbolRemap(CatalogModel model)
+        {
+            int size = model.symbols.size();
+            int[] remap = new int[size];
+            for (int i = 0; i < size; i++)
+            {
+                remap[i] = id(model.symbols.get(i));
+            }
+            return remap;
+        }
+
+        private void addTable(int schemaId, CatalogModel.Table table, int[] remap)
+        {
+            int tableId = tables.rows;
+            tables.add(id(table.name), id(table.annotation), columns.rows, table.columnCount,
+                pkColumns.rows, table.pkCount, foreignKeys.rows, table.foreignKeys.size(), schemaId);
+            tableNames.add(table.name);
+
+            for (int i = 0; i < table.columnCount; i++)
+            {
+                columns.add(symbol(remap, table.columnNames[i]), symbol(remap, table.columnTypes[i]),
+                    table.columnSizes[i], table.columnFlags[i],
+                    id(table.getColumnAnnotation(i)), id(table.getColumnDefault(i)));
+            }
+
+            for (int i = 0; i < table.pkCount; i++)
+            {
+                pkColumns.add(symbol(remap, table.pkColumns[i]), table.pkPositions[i]);
+            }
+
+            for (CatalogModel.ForeignKey fk : table.foreignKeys)
+            {
+                foreignKeys.add(id(fk.name), symbol(remap, fk.referencedSchema), symbol(remap, fk.referencedTable),
+                    fkColumns.rows, fk.columnCount);
+
+                for (int i = 0; i < fk.columnCount; i++)
+                {
+                    fkColumns.add(symbol(remap, fk.columns[i]), symbol(remap, fk.referencedColumns[i]), fk.positions[i]);
+                }
+            }
+
+            for (CatalogModel.Index index : table.indexes)
+            {
+                indexes.add(tableId, id(index.name), (index.unique ? UNIQUE : 0) | (index.constraint ? CONSTRAINT : 0),
+                    indexColumns.rows, index.columnCount);
+
+                for (int i = 0; i < index.columnCount; i++)
+                {
+                    indexColumns.add(symbol(remap, index.columns[i]), index.positions[i]);
+                }
+            }
+        }
+
+        private static int symbol(int[] remap, int symbolId)
+        {
+            return symbolId < 0 ? -1 : remap[symbolId];
+        }
+
+        private int id(String value)
+        {
+            if (value == null) return -1;
+
+            Integer id = stringIds.get(value);
+            if (id == null)
+            {
+                id = strings.size();
+                strings.add(value);
+                stringIds.put(value, id);
+            }
+            return id;
+        }
+
+        void write(Path file) throws IOException
+        {
+            // Table ids sorted by name for lookup
+            Integer[] order = new Integer[tableNames.size()];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, new Comparator<Integer>()
+            {
+                @Override
+                public int compare(Integer a, Integer b)
+                {
+                    return tableNames.get(a).compareTo(tableNames.get(b));
+                }
+            });
+            IntColumns tableIndex = new IntColumns(1);
+            for (Integer table : order) tableIndex.add(table);
+
+            try (CountingOutput counter = new CountingOutput(Files.newOutputStream(file));
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(counter, 1 << 16)))
+            {
+                long[] offsets = new long[SECTION_COUNT];
+
+                out.write(MAGIC);
+                out.writeShort(VERSION);
+
+                out.flush();
+                offsets[STRINGS] = counter.count;
+                writeStrings(out);
+
+                IntColumns[] sections = {null, catalogs, schemas, tables, columns, pkColumns,
+                    foreignKeys, fkColumns, associations, tableIndex, skipped, indexes, indexColumns};
+                for (int i = 1; i < SECTION_COUNT; i++)
+                {
+                    out.flush();
+                    offsets[i] = counter.count;
+                    sections[i].write(out);
+                }
+
+                out.flush();
+                long trailer = counter.count;
+                out.writeInt(SECTION_COUNT);
+                for (long offset : offsets)
+                {
+                    out.writeLong(offset);
+                }
+                out.writeLong(trailer);
+                out.write(MAGIC);
+            }
+        }
+
+        private void writeStrings(DataOutputStream out) throws IOException
+        {
+            byte[][] encoded = new byte[strings.size()][];
+            int offset = 0;
+
+            out.writeInt(strings.size());
+            for (int i = 0; i < encoded.length; i++)
+            {
+                encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(offset);
+                offset += encoded[i].length;
+            }
+            out.writeInt(offset);
+
+            for (byte[] bytes : encoded)
+            {
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Growable set of parallel int arrays (one per attribute)
+     */
+    private static class IntColumns
+    {
+        private final int[][] values;
+        int rows;
+
+        IntColumns(int attributes)
+        {
+            values = new int[attributes][64];
+        }
+
+        void add(int... row)
+        {
+            if (rows == values[0].length)
+            {
+                for (int a = 0; a < values.length; a++)
+                {
+                    values[a] = Arrays.copyOf(values[a], rows * 2);
+                }
+            }
+            for (int a = 0; a < values.length; a++)
+            {
+                values[a][rows] = row[a];
+            }
+            rows++;
+        }
+
+        void write(DataOutputStream out) throws IOException
+        {
+            out.writeInt(rows);
+            for (int[] attribute : values)
+            {
+                for (int i = 0; i < rows; i++)
+                {
+                    out.writeInt(attribute[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tracks the number of bytes written so section offsets can be recorded
+     */
+    private static class CountingOutput extends java.io.FilterOutputStream
+    {
+        long count;
+
+        CountingOutput(OutputStream out)
+        {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
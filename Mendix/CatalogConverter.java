@@ -0,0 +1,126 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts between the .jcatalog JSON format and the binary .bcatalog format.
+ *
+ * The direction is taken from the file extensions, so CaseTalk can keep using
+ * the JSON file while pipelines load the binary form.
+ *
+ * With --canonical the catalogs are written in canonical order, and a
+ * jcatalog output gets per-table and per-schema content hashes (see
+ * JCatalogWriter.setCanonical).
+ *
+ * Usage:
+ *   java CatalogConverter <inputFile> <outputFile> [--canonical]
+ *
+ * Examples:
+ *   java -cp ".;json-20231013.jar" CatalogConverter mendix.jcatalog mendix.bcatalog
+ *   java -cp ".;json-20231013.jar" CatalogConverter mendix.bcatalog mendix.jcatalog
+ *   java -cp ".;json-20231013.jar" CatalogConverter mendix.jcatalog mendix-canonical.jcatalog --canonical
+ *
+ * @author CaseTalk Integration
+ * @version 1.0
+ */
+public class CatalogConverter
+{
+    public static void main(String[] args)
+    {
+        List<String> files = new ArrayList<>();
+        boolean canonical = false;
+        for (String arg : args)
+        {
+            if ("--canonical".equals(arg))
+            {
+                canonical = true;
+            }
+            else
+            {
+                files.add(arg);
+            }
+        }
+
+        if (files.size() < 2)
+        {
+            System.err.println("Usage: java CatalogConverter <inputFile> <outputFile> [--canonical]");
+            System.err.println();
+            System.err.println("Examples:");
+            System.err.println("  JSON to binary: java CatalogConverter mendix.jcatalog mendix.bcatalog");
+            System.err.println("  Binary to JSON: java CatalogConverter mendix.bcatalog mendix.jcatalog");
+            System.err.println("  Canonical JSON: java CatalogConverter mendix.jcatalog mendix-canonical.jcatalog --canonical");
+            System.exit(1);
+        }
+
+        try
+        {
+            long start = System.nanoTime();
+            List<CatalogModel> catalogs = load(Paths.get(files.get(0)));
+            long loaded = System.nanoTime();
+            save(catalogs, Paths.get(files.get(1)), canonical);
+            long saved = System.nanoTime();
+
+            System.out.println(String.format("Converted %s to %s (load %d ms, write %d ms)",
+                files.get(0), files.get(1), (loaded - start) / 1000000, (saved - loaded) / 1000000));
+        }
+        catch (Exception e)
+        {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Load catalogs from either format
+     */
+    public static List<CatalogModel> load(Path file) throws IOException
+    {
+        if (BinaryCatalog.isBinaryCatalog(file))
+        {
+            return BinaryCatalog.open(file).toModels();
+        }
+        return JCatalogReader.read(file);
+    }
+
+    /**
+     * Save catalogs in the format given by the file extension
+     */
+    public static void save(List<CatalogModel> catalogs, Path file) throws IOException
+    {
+        save(catalogs, file, false);
+    }
+
+    /**
+     * Save catalogs, optionally in canonical form. The binary format has no
+     * hashes; it only gets the canonical order.
+     */
+    public static void save(List<CatalogModel> catalogs, Path file, boolean canonical) throws IOException
+    {
+        if (BinaryCatalog.isBinaryCatalog(file))
+        {
+            if (canonical)
+            {
+                for (CatalogModel catalog : catalogs)
+                {
+                    catalog.canonicalize();
+                }
+            }
+            BinaryCatalog.write(catalogs, file);
+            return;
+        }
+
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8)))
+        {
+            JCatalogWriter writer = new JCatalogWriter(out);
+            writer.setCanonical(canonical);
+            writer.write(catalogs);
+        }
+    }
+}
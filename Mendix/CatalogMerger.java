@@ -0,0 +1,394 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Merges several catalog exports into one multi-catalog jcatalog file and
+ * stores structurally identical tables once.
+ *
+ * Typical input is the same Mendix app exported from test, acceptance and
+ * production. Every table gets a content hash over its name, annotation,
+ * columns, keys and indexes (see CatalogModel.Table.contentHash). The first
+ * table with a hash is written in full together with its "hash"; later tables
+ * with the same hash are written as {"name": ..., "ref": hash}. JCatalogReader
+ * resolves the references, so the merged file loads in every tool that reads
+ * jcatalogs, and a merged file can be merged again.
+ *
+ * The merge streams: .jcatalog inputs are parsed one table at a time and each
+ * table is written out right away, so memory holds one table plus the set of
+ * hashes seen, however many and however large the inputs are. .bcatalog
+ * inputs are loaded one file at a time.
+ *
+ * Catalogs keep their names; a name that is already taken gets the input file
+ * name appended, e.g. "mendix (acceptance)".
+ *
+ * Usage:
+ *   java CatalogMerger <outputFile.jcatalog> <inputFile>...
+ *
+ * Examples:
+ *   java -cp ".;json-20231013.jar" CatalogMerger mendix-all.jcatalog test.jcatalog acceptance.jcatalog production.jcatalog
+ *   java -cp ".;json-20231013.jar" CatalogMerger mendix-all.jcatalog mendix-all.jcatalog hotfix.bcatalog
+ *
+ * @author CaseTalk Integration
+ * @version 1.0
+ */
+public class CatalogMerger
+{
+    private final JCatalogWriter writer;
+
+    // Content hashes of the tables written in full
+    private final Set<String> hashes = new HashSet<>();
+    private final Set<String> catalogNames = new HashSet<>();
+
+    private int catalogCount;
+    private int tableCount;
+    private int storedCount;
+
+    CatalogMerger(Writer out)
+    {
+        this.writer = new JCatalogWriter(out);
+    }
+
+    public static void main(String[] args)
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Usage: java CatalogMerger <outputFile.jcatalog> <inputFile>...");
+            System.err.println();
+            System.err.println("Example:");
+            System.err.println("  java CatalogMerger mendix-all.jcatalog test.jcatalog acceptance.jcatalog production.jcatalog");
+            System.exit(1);
+        }
+
+        try
+        {
+            List<Path> inputs = new ArrayList<>();
+            for (int i = 1; i < args.length; i++)
+            {
+                inputs.add(Paths.get(args[i]));
+            }
+            merge(inputs, Paths.get(args[0]));
+        }
+        catch (Exception e)
+        {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Merge the inputs (.jcatalog or .bcatalog) into one jcatalog file
+     */
+    public static void merge(List<Path> inputs, Path output) throws IOException
+    {
+        if (!JCatalogReader.isJCatalog(output))
+        {
+            throw new IllegalArgumentException("The merged catalog must be a .jcatalog file: " + output);
+        }
+
+        long start = System.nanoTime();
+        long inputBytes = 0;
+
+        // Write to a temporary file, so the output may also be one of the inputs
+        Path temp = output.resolveSibling(output.getFileName() + ".tmp");
+        CatalogMerger merger;
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8)))
+        {
+            merger = new CatalogMerger(out);
+            merger.writer.beginDocument();
+            for (Path input : inputs)
+            {
+                System.out.println("Merging: " + input);
+                inputBytes += Files.size(input);
+                merger.add(input);
+            }
+            merger.writer.endDocument();
+        }
+        Files.move(temp, output, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+
+        System.out.println(String.format("Merged %d catalog(s): %d tables, %d stored, %d references (%d ms)",
+            merger.catalogCount, merger.tableCount, merger.storedCount, merger.tableCount - merger.storedCount,
+            (System.nanoTime() - start) / 1000000));
+        System.out.println(String.format("Wrote %s: %d KB (inputs %d KB)",
+            output, Files.size(output) / 1024, inputBytes / 1024));
+    }
+
+    /**
+     * Add all catalogs of one input file
+     */
+    private void add(Path input) throws IOException
+    {
+        String fileName = input.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        if (dot > 0) fileName = fileName.substring(0, dot);
+
+        if (BinaryCatalog.isBinaryCatalog(input))
+        {
+            for (CatalogModel catalog : BinaryCatalog.open(input).toModels())
+            {
+                addCatalog(catalog, fileName);
+            }
+            return;
+        }
+
+        try (Reader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8))
+        {
+            readDocument(new JSONTokener(reader), fileName);
+        }
+    }
+
+    /**
+     * Add a catalog that is already in memory (binary input)
+     */
+    private void addCatalog(CatalogModel catalog, String fileName) throws IOException
+    {
+        catalogCount++;
+        writer.beginObject(null);
+        writer.value("name", catalogName(catalog.name, fileName));
+        if (catalog.isPartial())
+        {
+            writer.raw("partial", "true");
+        }
+
+        writer.beginArray("schemas");
+        for (CatalogModel.Schema schema : catalog.schemas)
+        {
+            writer.beginObject(null);
+            writer.value("name", schema.name);
+            writer.beginArray("tables");
+            for (CatalogModel.Table table : schema.tables)
+            {
+                addTable(table);
+            }
+            writer.endArray();
+            writer.writeSchemaDetails(schema);
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    /**
+     * Write a table in full the first time its content is seen, otherwise as a reference
+     */
+    private void addTable(CatalogModel.Table table) throws IOException
+    {
+        tableCount++;
+        String hash = table.contentHash();
+        if (hashes.add(hash))
+        {
+            storedCount++;
+            writer.writeTable(table, hash);
+        }
+        else
+        {
+            writer.writeTableReference(table.getName(), hash);
+        }
+    }
+
+    /**
+     * Unique catalog name: the catalog's own name, or with the file name appended
+     */
+    private String catalogName(String name, String fileName)
+    {
+        if (catalogNames.add(name))
+        {
+            return name;
+        }
+
+        String candidate = name + " (" + fileName + ")";
+        for (int n = 2; !catalogNames.add(candidate); n++)
+        {
+            candidate = name + " (" + fileName + " " + n + ")";
+        }
+        return candidate;
+    }
+
+    // --- Streaming jcatalog input ---
+    //
+    // Members are handled in file order and written in the same order, so the
+    // input needs no particular key order. Only single tables and the schema
+    // details (associations, skipped tables) are parsed into memory.
+
+    private void readDocument(JSONTokener in, String fileName) throws IOException
+    {
+        if (open(in, '{', '}')) do
+        {
+            String key = key(in);
+            if ("connection".equals(key))
+            {
+                if (open(in, '{', '}')) do
+                {
+                    if ("catalogs".equals(key(in)))
+                    {
+                        if (open(in, '[', ']')) do
+                        {
+                            readCatalog(in, fileName);
+                        }
+                        while (more(in, ']'));
+                    }
+                    else
+                    {
+                        in.nextValue();
+                    }
+                }
+                while (more(in, '}'));
+            }
+            else
+            {
+                in.nextValue();
+            }
+        }
+        while (more(in, '}'));
+    }
+
+    private void readCatalog(JSONTokener in, String fileName) throws IOException
+    {
+        catalogCount++;
+
+        // Scratch model: shares identifiers between the tables of this catalog
+        CatalogModel catalog = new CatalogModel(null);
+
+        writer.beginObject(null);
+        if (open(in, '{', '}')) do
+        {
+            String key = key(in);
+            if ("name".equals(key))
+            {
+                Object name = in.nextValue();
+                writer.value("name", catalogName(name instanceof String ? (String) name : null, fileName));
+            }
+            else if ("partial".equals(key))
+            {
+                if (Boolean.TRUE.equals(in.nextValue()))
+                {
+                    writer.raw("partial", "true");
+                }
+            }
+            else if ("schemas".equals(key))
+            {
+                writer.beginArray("schemas");
+                if (open(in, '[', ']')) do
+                {
+                    readSchema(in, catalog);
+                }
+                while (more(in, ']'));
+                writer.endArray();
+            }
+            else
+            {
+                in.nextValue();
+            }
+        }
+        while (more(in, '}'));
+        writer.endObject();
+    }
+
+    private void readSchema(JSONTokener in, CatalogModel catalog) throws IOException
+    {
+        CatalogModel.Schema schema = new CatalogModel.Schema(catalog, null);
+        JSONObject details = new JSONObject();
+
+        writer.beginObject(null);
+        if (open(in, '{', '}')) do
+        {
+            String key = key(in);
+            if ("name".equals(key))
+            {
+                Object name = in.nextValue();
+                writer.value("name", name instanceof String ? (String) name : null);
+            }
+            else if ("tables".equals(key))
+            {
+                writer.beginArray("tables");
+                if (open(in, '[', ']')) do
+                {
+                    readTable((JSONObject) in.nextValue(), schema);
+                }
+                while (more(in, ']'));
+                writer.endArray();
+            }
+            else
+            {
+                details.put(key, in.nextValue());
+            }
+        }
+        while (more(in, '}'));
+
+        JCatalogReader.readSchemaDetails(schema, details);
+        writer.writeSchemaDetails(schema);
+        writer.endObject();
+    }
+
+    private void readTable(JSONObject tableJson, CatalogModel.Schema schema) throws IOException
+    {
+        // A merged input refers to a table it stored before, which is written already
+        String ref = tableJson.optString("ref", null);
+        if (ref != null)
+        {
+            if (!hashes.contains(ref))
+            {
+                throw new IllegalArgumentException("Table " + tableJson.optString("name", null)
+                    + " refers to unknown table " + ref);
+            }
+            tableCount++;
+            writer.writeTableReference(tableJson.optString("name", null), ref);
+            return;
+        }
+
+        CatalogModel.Table table = JCatalogReader.readTable(schema, tableJson, null);
+        schema.tables.clear();
+        addTable(table);
+    }
+
+    /**
+     * Consume the opening character; returns false when the container is empty
+     */
+    private static boolean open(JSONTokener in, char open, char close)
+    {
+        if (in.nextClean() != open)
+        {
+            throw in.syntaxError("Expected '" + open + "'");
+        }
+        if (in.nextClean() == close)
+        {
+            return false;
+        }
+        in.back();
+        return true;
+    }
+
+    private static String key(JSONTokener in)
+    {
+        Object key = in.nextValue();
+        if (!(key instanceof String) || in.nextClean() != ':')
+        {
+            throw in.syntaxError("Expected a member name");
+        }
+        return (String) key;
+    }
+
+    /**
+     * After a member or element: true if another one follows
+     */
+    private static boolean more(JSONTokener in, char close)
+    {
+        char c = in.nextClean();
+        if (c == ',') return true;
+        if (c == close) return false;
+        throw in.syntaxError("Expected ',' or '" + close + "'");
+    }
+}
@@ -0,0 +1,769 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact in-memory model of a jcatalog.
+ *
+ * Tables keep their columns in flat parallel arrays instead of one JSONObject
+ * per column. Type names, column names and other identifiers that repeat across
+ * tables are interned through a per-catalog symbol table and stored as int ids;
+ * sizes and nullability are stored as primitives. The JSON view is only produced
+ * when the model is serialized (see JCatalogWriter).
+ *
+ * @author CaseTalk Integration
+ * @version 1.0
+ */
+public class CatalogModel
+{
+    final SymbolTable symbols;
+    final List<Schema> schemas = new ArrayList<>();
+    String name;
+
+    public CatalogModel(String name)
+    {
+        this.name = name;
+        this.symbols = new SymbolTable();
+    }
+
+    /**
+     * Create a catalog whose symbol table starts out with the given strings
+     * (ids are the array indexes), e.g. a binary catalog dictionary
+     */
+    CatalogModel(String name, String[] symbols)
+    {
+        this.name = name;
+        this.symbols = new SymbolTable(symbols);
+    }
+
+    /**
+     * Add a new, empty schema to the catalog
+     */
+    public Schema addSchema(String schemaName)
+    {
+        Schema schema = new Schema(this, schemaName);
+        schemas.add(schema);
+        return schema;
+    }
+
+    /**
+     * Total number of tables over all schemas
+     */
+    public int tableCount()
+    {
+        int count = 0;
+        for (Schema schema : schemas)
+        {
+            count += schema.tables.size();
+        }
+        return count;
+    }
+
+    /**
+     * Whether tables or schemas were skipped (e.g. timeouts), so the catalog is incomplete
+     */
+    public boolean isPartial()
+    {
+        for (Schema schema : schemas)
+        {
+            if (schema.skippedReason != null || !schema.skippedTables.isEmpty()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Put the catalog in canonical order: schemas, tables, foreign keys,
+     * indexes, associations and skipped tables by name, key columns by
+     * position. Columns keep their ordinal order. Two exports of an unchanged
+     * database then serialize byte for byte the same.
+     */
+    public void canonicalize()
+    {
+        Collections.sort(schemas, new Comparator<Schema>()
+        {
+            @Override
+            public int compare(Schema a, Schema b)
+            {
+                return compareNames(a.name, b.name);
+            }
+        });
+
+        for (Schema schema : schemas)
+        {
+            schema.canonicalize();
+        }
+    }
+
+    /**
+     * Name order with null first
+     */
+    static int compareNames(String a, String b)
+    {
+        if (a == null || b == null) return a == null ? (b == null ? 0 : -1) : 1;
+        return a.compareTo(b);
+    }
+
+    /**
+     * Sort key columns (parallel arrays) by position
+     */
+    static void sortByPosition(int count, int[] positions, int[]... columns)
+    {
+        for (int i = 1; i < count; i++)
+        {
+            for (int j = i; j > 0 && positions[j - 1] > positions[j]; j--)
+            {
+                swap(positions, j);
+                for (int[] values : columns)
+                {
+                    swap(values, j);
+                }
+            }
+        }
+    }
+
+    private static void swap(int[] values, int j)
+    {
+        int value = values[j];
+        values[j] = values[j - 1];
+        values[j - 1] = value;
+    }
+
+    static MessageDigest sha256()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Interns strings to small int ids. Id -1 stands for null.
+     */
+    static class SymbolTable
+    {
+        private Map<String, Integer> ids;
+        private String[] values;
+        private int size;
+
+        SymbolTable()
+        {
+            ids = new HashMap<>();
+            values = new String[256];
+        }
+
+        SymbolTable(String[] preloaded)
+        {
+            values = preloaded;
+            size = preloaded.length;
+        }
+
+        synchronized int intern(String value)
+        {
+            if (value == null) return -1;
+
+            if (ids == null)
+            {
+                // Preloaded tables build their lookup map on first use only
+                ids = new HashMap<>(size * 2);
+                for (int i = 0; i < size; i++)
+                {
+                    ids.put(values[i], i);
+                }
+            }
+
+            Integer id = ids.get(value);
+            if (id == null)
+            {
+                if (size == values.length)
+                {
+                    values = Arrays.copyOf(values, Math.max(256, size * 2));
+                }
+                id = size;
+                values[size++] = value;
+                ids.put(value, id);
+            }
+            return id;
+        }
+
+        synchronized String get(int id)
+        {
+            return id < 0 ? null : values[id];
+        }
+
+        synchronized int size()
+        {
+            return size;
+        }
+    }
+
+    /**
+     * A schema with its tables and the associations derived from junction tables
+     */
+    public static class Schema
+    {
+        final CatalogModel catalog;
+        final String name;
+        final List<Table> tables = new ArrayList<>();
+        final List<Association> associations = new ArrayList<>();
+
+        // Partial exports: tables (or the whole schema) that could not be read
+        final List<SkippedTable> skippedTables = new ArrayList<>(0);
+        String skippedReason;
+
+        Schema(CatalogModel catalog, String name)
+        {
+            this.catalog = catalog;
+            this.name = name;
+        }
+
+        public Table addTable(String tableName)
+        {
+            Table table = new Table(catalog.symbols, tableName);
+            tables.add(table);
+            return table;
+        }
+
+        public Association addAssociation(String junctionTable)
+        {
+            Association association = new Association(junctionTable);
+            associations.add(association);
+            return association;
+        }
+
+        public void addSkippedTable(String tableName, String reason)
+        {
+            skippedTables.add(new SkippedTable(tableName, reason));
+        }
+
+        /**
+         * Mark the whole schema as skipped (its table list could not be read)
+         */
+        public void setSkipped(String reason)
+        {
+            skippedReason = reason;
+        }
+
+        void canonicalize()
+        {
+            Collections.sort(tables, new Comparator<Table>()
+            {
+                @Override
+                public int compare(Table a, Table b)
+                {
+                    return compareNames(a.name, b.name);
+                }
+            });
+            for (Table table : tables)
+            {
+                table.canonicalize();
+            }
+
+            Collections.sort(associations, new Comparator<Association>()
+            {
+                @Override
+                public int compare(Association a, Association b)
+                {
+                    int c = compareNames(a.junctionTable, b.junctionTable);
+                    return c != 0 ? c : compareNames(a.name, b.name);
+                }
+            });
+
+            Collections.sort(skippedTables, new Comparator<SkippedTable>()
+            {
+                @Override
+                public int compare(SkippedTable a, SkippedTable b)
+                {
+                    return compareNames(a.name, b.name);
+                }
+            });
+        }
+
+        /**
+         * SHA-256 (hex) over the schema name, the content hashes of its tables
+         * (in table order), its associations and its skipped tables
+         */
+        public String contentHash(String[] tableHashes)
+        {
+            MessageDigest digest = sha256();
+            update(digest, name);
+
+            update(digest, tableHashes.length);
+            for (String tableHash : tableHashes)
+            {
+                update(digest, tableHash);
+            }
+
+            update(digest, associations.size());
+            for (Association association : associations)
+            {
+                update(digest, association.type);
+                update(digest, association.junctionTable);
+                update(digest, association.name);
+                update(digest, association.entity1);
+                update(digest, association.entity2);
+            }
+
+            update(digest, skippedReason);
+            update(digest, skippedTables.size());
+            for (SkippedTable skipped : skippedTables)
+            {
+                update(digest, skipped.name);
+                update(digest, skipped.reason);
+            }
+
+            return hex(digest.digest());
+        }
+    }
+
+    /**
+     * A table left out of a partial export, with the reason
+     */
+    public static class SkippedTable
+    {
+        final String name;
+        final String reason;
+
+        SkippedTable(String name, String reason)
+        {
+            this.name = name;
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * A table. Column attributes are stored column-wise in parallel arrays.
+     */
+    public static class Table
+    {
+        private static final byte NULLABLE = 1;
+
+        final SymbolTable symbols;
+        final String name;
+        String annotation;
+
+        int columnCount;
+        int[] columnNames = new int[8];
+        int[] columnTypes = new int[8];
+        int[] columnSizes = new int[8];
+        byte[] columnFlags = new byte[8];
+
+        // Sparse: only allocated once a column has an annotation or a default
+        String[] columnAnnotations;
+        String[] columnDefaults;
+
+        int pkCount;
+        int[] pkColumns;
+        int[] pkPositions;
+
+        final List<ForeignKey> foreignKeys = new ArrayList<>(2);
+        final List<Index> indexes = new ArrayList<>(0);
+
+        Table(SymbolTable symbols, String name)
+        {
+            this.symbols = symbols;
+            this.name = name;
+        }
+
+        public void addColumn(String columnName, String type, int size, boolean nullable,
+                              String annotation, String defaultValue)
+        {
+            if (columnCount == columnNames.length)
+            {
+                int capacity = Math.max(8, columnCount * 2);
+                columnNames = Arrays.copyOf(columnNames, capacity);
+                columnTypes = Arrays.copyOf(columnTypes, capacity);
+                columnSizes = Arrays.copyOf(columnSizes, capacity);
+                columnFlags = Arrays.copyOf(columnFlags, capacity);
+                if (columnAnnotations != null) columnAnnotations = Arrays.copyOf(columnAnnotations, capacity);
+                if (columnDefaults != null) columnDefaults = Arrays.copyOf(columnDefaults, capacity);
+            }
+
+            int i = columnCount++;
+            columnNames[i] = symbols.intern(columnName);
+            columnTypes[i] = symbols.intern(type);
+            columnSizes[i] = size;
+            columnFlags[i] = nullable ? NULLABLE : 0;
+
+            if (annotation != null && !annotation.isEmpty())
+            {
+                if (columnAnnotations == null) columnAnnotations = new String[columnNames.length];
+                columnAnnotations[i] = annotation;
+            }
+
+            if (defaultValue != null && !defaultValue.isEmpty())
+            {
+                if (columnDefaults == null) columnDefaults = new String[columnNames.length];
+                columnDefaults[i] = defaultValue;
+            }
+        }
+
+        public void addPrimaryKeyColumn(String column, int position)
+        {
+            if (pkColumns == null)
+            {
+                pkColumns = new int[2];
+                pkPositions = new int[2];
+            }
+            else if (pkCount == pkColumns.length)
+            {
+                pkColumns = Arrays.copyOf(pkColumns, pkCount * 2);
+                pkPositions = Arrays.copyOf(pkPositions, pkCount * 2);
+            }
+
+            pkColumns[pkCount] = symbols.intern(column);
+            pkPositions[pkCount] = position;
+            pkCount++;
+        }
+
+        /**
+         * Get the foreign key with the given name, creating it if necessary
+         */
+        public ForeignKey foreignKey(String fkName, String referencedSchema, String referencedTable)
+        {
+            for (ForeignKey fk : foreignKeys)
+            {
+                if (fk.name.equals(fkName)) return fk;
+            }
+
+            ForeignKey fk = new ForeignKey(symbols, fkName, referencedSchema, referencedTable);
+            foreignKeys.add(fk);
+            return fk;
+        }
+
+        /**
+         * Get the index with the given name, creating it if necessary
+         */
+        public Index index(String indexName, boolean unique, boolean constraint)
+        {
+            for (Index index : indexes)
+            {
+                if (index.name.equals(indexName)) return index;
+            }
+
+            Index index = new Index(symbols, indexName, unique, constraint);
+            indexes.add(index);
+            return index;
+        }
+
+        /**
+         * Remove unique indexes on exactly the primary key columns: they only
+         * implement the primary key, which is exported already
+         */
+        public void dropPrimaryKeyIndex()
+        {
+            if (pkCount == 0) return;
+
+            for (int i = indexes.size() - 1; i >= 0; i--)
+            {
+                Index index = indexes.get(i);
+                if (!index.unique || index.columnCount != pkCount) continue;
+
+                boolean same = true;
+                for (int c = 0; c < index.columnCount && same; c++)
+                {
+                    same = false;
+                    for (int k = 0; k < pkCount; k++)
+                    {
+                        if (pkColumns[k] == index.columns[c]) same = true;
+                    }
+                }
+                if (same) indexes.remove(i);
+            }
+        }
+
+        void canonicalize()
+        {
+            sortByPosition(pkCount, pkPositions, pkColumns);
+
+            Collections.sort(foreignKeys, new Comparator<ForeignKey>()
+            {
+                @Override
+                public int compare(ForeignKey a, ForeignKey b)
+                {
+                    return compareNames(a.name, b.name);
+                }
+            });
+            for (ForeignKey fk : foreignKeys)
+            {
+                sortByPosition(fk.columnCount, fk.positions, fk.columns, fk.referencedColumns);
+            }
+
+            Collections.sort(indexes, new Comparator<Index>()
+            {
+                @Override
+                public int compare(Index a, Index b)
+                {
+                    return compareNames(a.name, b.name);
+                }
+            });
+            for (Index index : indexes)
+            {
+                sortByPosition(index.columnCount, index.positions, index.columns);
+            }
+        }
+
+        /**
+         * Copy the annotation, columns and keys of another table (which may
+         * belong to another catalog) into this one
+         */
+        public void copyFrom(Table other)
+        {
+            annotation = other.annotation;
+            for (int i = 0; i < other.columnCount; i++)
+            {
+                addColumn(other.getColumnName(i), other.getColumnType(i), other.columnSizes[i],
+                    other.isColumnNullable(i), other.getColumnAnnotation(i), other.getColumnDefault(i));
+            }
+            for (int i = 0; i < other.pkCount; i++)
+            {
+                addPrimaryKeyColumn(other.getPrimaryKeyColumn(i), other.pkPositions[i]);
+            }
+            for (ForeignKey otherFk : other.foreignKeys)
+            {
+                ForeignKey fk = foreignKey(otherFk.name, otherFk.getReferencedSchema(), otherFk.getReferencedTable());
+                for (int i = 0; i < otherFk.columnCount; i++)
+                {
+                    fk.addColumn(otherFk.getColumn(i), otherFk.getReferencedColumn(i), otherFk.positions[i]);
+                }
+            }
+            for (Index otherIndex : other.indexes)
+            {
+                Index index = index(otherIndex.name, otherIndex.unique, otherIndex.constraint);
+                for (int i = 0; i < otherIndex.columnCount; i++)
+                {
+                    index.addColumn(otherIndex.getColumn(i), otherIndex.positions[i]);
+                }
+            }
+        }
+
+        /**
+         * SHA-256 (hex) over the name, annotation, columns, keys and indexes.
+         * Tables with the same hash are structurally identical, whichever
+         * catalog or schema they belong to.
+         */
+        public String contentHash()
+        {
+            MessageDigest digest = sha256();
+            update(digest, name);
+            update(digest, annotation);
+
+            update(digest, columnCount);
+            for (int i = 0; i < columnCount; i++)
+            {
+                update(digest, getColumnName(i));
+                update(digest, getColumnType(i));
+                update(digest, columnSizes[i]);
+                update(digest, columnFlags[i]);
+                update(digest, getColumnAnnotation(i));
+                update(digest, getColumnDefault(i));
+            }
+
+            update(digest, pkCount);
+            for (int i = 0; i < pkCount; i++)
+            {
+                update(digest, getPrimaryKeyColumn(i));
+                update(digest, pkPositions[i]);
+            }
+
+            update(digest, foreignKeys.size());
+            for (ForeignKey fk : foreignKeys)
+            {
+                update(digest, fk.name);
+                update(digest, fk.getReferencedSchema());
+                update(digest, fk.getReferencedTable());
+                update(digest, fk.columnCount);
+                for (int i = 0; i < fk.columnCount; i++)
+                {
+                    update(digest, fk.getColumn(i));
+                    update(digest, fk.getReferencedColumn(i));
+                    update(digest, fk.positions[i]);
+                }
+            }
+
+            update(digest, indexes.size());
+            for (Index index : indexes)
+            {
+                update(digest, index.name);
+                update(digest, (index.unique ? 1 : 0) | (index.constraint ? 2 : 0));
+                update(digest, index.columnCount);
+                for (int i = 0; i < index.columnCount; i++)
+                {
+                    update(digest, index.getColumn(i));
+                    update(digest, index.positions[i]);
+                }
+            }
+
+            return hex(digest.digest());
+        }
+
+        public String getName() { return name; }
+        public String getAnnotation() { return annotation; }
+        public void setAnnotation(String annotation) { this.annotation = annotation; }
+        public int getColumnCount() { return columnCount; }
+        public String getColumnName(int i) { return symbols.get(columnNames[i]); }
+        public String getColumnType(int i) { return symbols.get(columnTypes[i]); }
+        public int getColumnSize(int i) { return columnSizes[i]; }
+        public boolean isColumnNullable(int i) { return (columnFlags[i] & NULLABLE) != 0; }
+        public String getColumnAnnotation(int i) { return columnAnnotations == null ? null : columnAnnotations[i]; }
+        public String getColumnDefault(int i) { return columnDefaults == null ? null : columnDefaults[i]; }
+        public int getPrimaryKeyCount() { return pkCount; }
+        public String getPrimaryKeyColumn(int i) { return symbols.get(pkColumns[i]); }
+        public int getPrimaryKeyPosition(int i) { return pkPositions[i]; }
+        public List<ForeignKey> getForeignKeys() { return foreignKeys; }
+        public List<Index> getIndexes() { return indexes; }
+    }
+
+    /**
+     * Length-prefixed, so that null, "" and adjacent strings cannot collide
+     */
+    static void update(MessageDigest digest, String value)
+    {
+        if (value == null)
+        {
+            update(digest, -1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        update(digest, bytes.length);
+        digest.update(bytes);
+    }
+
+    static void update(MessageDigest digest, int value)
+    {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+    }
+
+    static String hex(byte[] bytes)
+    {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] result = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            result[i * 2] = digits[(bytes[i] >> 4) & 0xF];
+            result[i * 2 + 1] = digits[bytes[i] & 0xF];
+        }
+        return new String(result);
+    }
+
+    /**
+     * A foreign key with its column pairs
+     */
+    public static class ForeignKey
+    {
+        final SymbolTable symbols;
+        final String name;
+        final int referencedSchema;
+        final int referencedTable;
+
+        int columnCount;
+        int[] columns = new int[1];
+        int[] referencedColumns = new int[1];
+        int[] positions = new int[1];
+
+        ForeignKey(SymbolTable symbols, String name, String referencedSchema, String referencedTable)
+        {
+            this.symbols = symbols;
+            this.name = name;
+            this.referencedSchema = symbols.intern(referencedSchema);
+            this.referencedTable = symbols.intern(referencedTable);
+        }
+
+        public void addColumn(String column, String referencedColumn, int position)
+        {
+            if (columnCount == columns.length)
+            {
+                columns = Arrays.copyOf(columns, columnCount * 2);
+                referencedColumns = Arrays.copyOf(referencedColumns, columnCount * 2);
+                positions = Arrays.copyOf(positions, columnCount * 2);
+            }
+
+            columns[columnCount] = symbols.intern(column);
+            referencedColumns[columnCount] = symbols.intern(referencedColumn);
+            positions[columnCount] = position;
+            columnCount++;
+        }
+
+        public String getName() { return name; }
+        public String getReferencedSchema() { return symbols.get(referencedSchema); }
+        public String getReferencedTable() { return symbols.get(referencedTable); }
+        public int getColumnCount() { return columnCount; }
+        public String getColumn(int i) { return symbols.get(columns[i]); }
+        public String getReferencedColumn(int i) { return symbols.get(referencedColumns[i]); }
+        public int getPosition(int i) { return positions[i]; }
+    }
+
+    /**
+     * An index or unique constraint with its columns in key order
+     */
+    public static class Index
+    {
+        final SymbolTable symbols;
+        final String name;
+        final boolean unique;
+        final boolean constraint;
+
+        int columnCount;
+        int[] columns = new int[1];
+        int[] positions = new int[1];
+
+        Index(SymbolTable symbols, String name, boolean unique, boolean constraint)
+        {
+            this.symbols = symbols;
+            this.name = name;
+            this.unique = unique;
+            this.constraint = constraint;
+        }
+
+        public void addColumn(String column, int position)
+        {
+            if (columnCount == columns.length)
+            {
+                columns = Arrays.copyOf(columns, columnCount * 2);
+                positions = Arrays.copyOf(positions, columnCount * 2);
+            }
+
+            columns[columnCount] = symbols.intern(column);
+            positions[columnCount] = position;
+            columnCount++;
+        }
+
+        public String getName() { return name; }
+        public boolean isUnique() { return unique; }
+        public boolean isConstraint() { return constraint; }
+        public int getColumnCount() { return columnCount; }
+        public String getColumn(int i) { return symbols.get(columns[i]); }
+        public int getPosition(int i) { return positions[i]; }
+    }
+
+    /**
+     * A many-to-many association converted from a Mendix junction table
+     */
+    public static class Association
+    {
+        final String junctionTable;
+        String type = "many-to-many";
+        String name;
+        String entity1;
+        String entity2;
+
+        Association(String junctionTable)
+        {
+            this.junctionTable = junctionTable;
+        }
+    }
+}
@@ -0,0 +1,905 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Searches many jcatalog/bcatalog exports through an on-disk inverted index.
+ *
+ * The index directory holds one segment file per catalog file and a manifest
+ * with the size and modification time of each indexed catalog. Updating the
+ * index only re-indexes catalogs that changed and drops catalogs that no
+ * longer exist. Searches memory-map the segments and binary-search their
+ * sorted term tables, so they take milliseconds for dozens of exports.
+ *
+ * Indexed fields (all lowercase):
+ *   name:        table, column, foreign key or association name
+ *   table:       table name (also on its columns, foreign keys and associations)
+ *   column:      column name
+ *   type:        column type
+ *   references:  table referenced by a foreign key, entities of an association
+ *   annotation:  words of table and column annotations
+ * Mendix names are also indexed without their module prefix ("account" for
+ * "administration$account").
+ *
+ * Query terms are field:value (no field: name), a trailing * makes a prefix
+ * match, and all terms must match. Results are tables, unless the query has a
+ * column or type term (columns) or a references term (foreign keys and
+ * associations); queries with only name or annotation terms return all kinds.
+ *
+ * Usage:
+ *   java -cp ".;json-20231013.jar" CatalogSearch index <indexDir> <catalogFileOrDir>... [--threads=n]
+ *   java -cp ".;json-20231013.jar" CatalogSearch search <indexDir> <term>... [--limit=n]
+ *
+ * Examples:
+ *   java -cp ".;json-20231013.jar" CatalogSearch index exports.idx exports\
+ *   java -cp ".;json-20231013.jar" CatalogSearch search exports.idx column:iban
+ *   java -cp ".;json-20231013.jar" CatalogSearch search exports.idx references:administration$account
+ *   java -cp ".;json-20231013.jar" CatalogSearch search exports.idx table:sales$* type:decimal
+ *
+ * @author CaseTalk Integration
+ * @version 1.0
+ */
+public class CatalogSearch
+{
+    private static final byte[] MAGIC = "CTSIDX".getBytes(StandardCharsets.US_ASCII);
+    private static final short VERSION = 1;
+    private static final String MANIFEST = "index.manifest";
+    private static final String MANIFEST_HEADER = "# CatalogSearch index v1: segment, size, modified, catalog file";
+
+    // Hit kinds
+    static final int TABLE = 0;
+    static final int COLUMN = 1;
+    static final int FOREIGN_KEY = 2;
+    static final int ASSOCIATION = 3;
+    private static final String[] KIND_NAMES = {"table", "column", "foreign key", "association"};
+
+    // Hit row attributes (string ids, -1 for null)
+    private static final int HIT_KIND = 0, HIT_CATALOG = 1, HIT_SCHEMA = 2, HIT_TABLE = 3, HIT_NAME = 4, HIT_DETAIL = 5;
+    private static final int HIT_WIDTH = 6;
+    private static final int TERM_WIDTH = 3;
+
+    private static final List<String> FIELDS = Arrays.asList("name", "table", "column", "type", "references", "annotation");
+
+    public static void main(String[] args)
+    {
+        List<String> positional = new ArrayList<>();
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args)
+        {
+            if (arg.startsWith("--"))
+            {
+                int eq = arg.indexOf('=');
+                options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "" : arg.substring(eq + 1));
+            }
+            else
+            {
+                positional.add(arg);
+            }
+        }
+
+        if (positional.size() < 3 || !(positional.get(0).equals("index") || positional.get(0).equals("search")))
+        {
+            System.err.println("Usage: java CatalogSearch index <indexDir> <catalogFileOrDir>... [--threads=n]");
+            System.err.println("       java CatalogSearch search <indexDir> <term>... [--limit=n]");
+            System.err.println();
+            System.err.println("Terms: [field:]value[*] with field name (default), table, column, type, references, annotation");
+            System.err.println();
+            System.err.println("Examples:");
+            System.err.println("  java CatalogSearch index exports.idx exports");
+            System.err.println("  java CatalogSearch search exports.idx column:iban");
+            System.err.println("  java CatalogSearch search exports.idx references:administration$account");
+            System.err.println("  java CatalogSearch search exports.idx table:sales$* type:decimal");
+            System.exit(1);
+        }
+
+        try
+        {
+            Path indexDir = Paths.get(positional.get(1));
+            List<String> rest = positional.subList(2, positional.size());
+
+            if (positional.get(0).equals("index"))
+            {
+                List<Path> roots = new ArrayList<>();
+                for (String root : rest)
+                {
+                    roots.add(Paths.get(root));
+                }
+                int threads = options.containsKey("threads")
+                    ? Integer.parseInt(options.get("threads"))
+                    : Runtime.getRuntime().availableProcessors();
+                System.out.println(update(indexDir, roots, threads));
+            }
+            else
+            {
+                int limit = Integer.parseInt(options.containsKey("limit") ? options.get("limit") : "100");
+                long start = System.nanoTime();
+                List<Hit> hits = new ArrayList<>();
+                int total = search(indexDir, rest, limit, hits);
+
+                for (Hit hit : hits)
+                {
+                    System.out.println(hit);
+                }
+                if (total > hits.size())
+                {
+                    System.out.println("... " + (total - hits.size()) + " more (use --limit=n)");
+                }
+                System.out.println(String.format("%d hit(s) in %.1f ms", total, (System.nanoTime() - start) / 1e6));
+            }
+        }
+        catch (Exception e)
+        {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Index maintenance
+    // ------------------------------------------------------------------
+
+    /**
+     * One indexed catalog file
+     */
+    static final class Entry
+    {
+        final String segment;
+        final long size;
+        final long modified;
+        final String source;
+
+        Entry(String segment, long size, long modified, String source)
+        {
+            this.segment = segment;
+            this.size = size;
+            this.modified = modified;
+            this.source = source;
+        }
+    }
+
+    /**
+     * Bring the index up to date with the catalog files under the given roots.
+     * Catalogs indexed earlier from other roots are kept while their file exists.
+     */
+    public static String update(Path indexDir, List<Path> roots, int threads) throws IOException
+    {
+        long start = System.nanoTime();
+        Files.createDirectories(indexDir);
+        Map<String, Entry> manifest = readManifest(indexDir);
+
+        // Catalog files to index: everything under the roots plus what is already indexed
+        Set<Path> sources = new LinkedHashSet<>();
+        for (Path root : roots)
+        {
+            collectCatalogs(root, sources);
+        }
+        for (String source : manifest.keySet())
+        {
+            sources.add(Paths.get(source));
+        }
+
+        int sequence = 0;
+        for (Entry entry : manifest.values())
+        {
+            sequence = Math.max(sequence, segmentSequence(entry.segment));
+        }
+
+        Map<String, Entry> updated = new TreeMap<>();
+        List<Future<Entry>> changed = new ArrayList<>();
+        int unchanged = 0;
+        int removed = 0;
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try
+        {
+            for (Path source : sources)
+            {
+                final String key = source.toString();
+                Entry entry = manifest.get(key);
+
+                if (!Files.isRegularFile(source))
+                {
+                    removed++;
+                    continue;
+                }
+
+                final long size = Files.size(source);
+                final long modified = Files.getLastModifiedTime(source).toMillis();
+                if (entry != null && entry.size == size && entry.modified == modified
+                    && Files.isRegularFile(indexDir.resolve(entry.segment)))
+                {
+                    updated.put(key, entry);
+                    unchanged++;
+                    continue;
+                }
+
+                final Path file = source;
+                final Path segment = indexDir.resolve(String.format("seg-%06d.idx", ++sequence));
+                changed.add(pool.submit(new Callable<Entry>()
+                {
+                    @Override
+                    public Entry call() throws IOException
+                    {
+                        System.out.println("Indexing: " + file);
+                        SegmentBuilder builder = new SegmentBuilder();
+                        for (CatalogModel catalog : CatalogConverter.load(file))
+                        {
+                            builder.add(catalog);
+                        }
+                        builder.write(segment);
+                        return new Entry(segment.getFileName().toString(), size, modified, key);
+                    }
+                }));
+            }
+
+            for (Future<Entry> future : changed)
+            {
+                Entry entry = future.get();
+                updated.put(entry.source, entry);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while indexing", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new IOException("Indexing failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+
+        writeManifest(indexDir, updated.values());
+        deleteUnusedSegments(indexDir, updated.values());
+
+        return String.format("Index %s: %d catalog(s) re-indexed, %d unchanged, %d removed in %d ms",
+            indexDir, changed.size(), unchanged, removed, (System.nanoTime() - start) / 1000000);
+    }
+
+    private static void collectCatalogs(Path root, final Set<Path> sources) throws IOException
+    {
+        if (!Files.isDirectory(root))
+        {
+            sources.add(root.toAbsolutePath().normalize());
+            return;
+        }
+
+        final List<Path> found = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+            {
+                String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+                if (name.endsWith(".jcatalog") || name.endsWith(".bcatalog"))
+                {
+                    found.add(file.toAbsolutePath().normalize());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(found);
+        sources.addAll(found);
+    }
+
+    private static int segmentSequence(String segment)
+    {
+        try
+        {
+            return Integer.parseInt(segment.substring(4, segment.length() - 4));
+        }
+        catch (RuntimeException e)
+        {
+            return 0;
+        }
+    }
+
+    static Map<String, Entry> readManifest(Path indexDir) throws IOException
+    {
+        Map<String, Entry> manifest = new TreeMap<>();
+        Path file = indexDir.resolve(MANIFEST);
+        if (!Files.exists(file))
+        {
+            return manifest;
+        }
+
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8))
+        {
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            String[] fields = line.split("\t", 4);
+            if (fields.length < 4)
+            {
+                throw new IOException("Corrupt index manifest line: " + line);
+            }
+            manifest.put(fields[3], new Entry(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3]));
+        }
+        return manifest;
+    }
+
+    /**
+     * Replace the manifest atomically, so searches never see a half-written one
+     */
+    private static void writeManifest(Path indexDir, Iterable<Entry> entries) throws IOException
+    {
+        Path temp = indexDir.resolve(MANIFEST + ".tmp");
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8)))
+        {
+            out.write(MANIFEST_HEADER);
+            out.write('\n');
+            for (Entry entry : entries)
+            {
+                out.write(entry.segment + "\t" + entry.size + "\t" + entry.modified + "\t" + entry.source + "\n");
+            }
+        }
+        Files.move(temp, indexDir.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void deleteUnusedSegments(Path indexDir, Iterable<Entry> entries) throws IOException
+    {
+        Set<String> used = new HashSet<>();
+        for (Entry entry : entries)
+        {
+            used.add(entry.segment);
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(indexDir, "seg-*.idx"))
+        {
+            for (Path file : files)
+            {
+                if (used.contains(file.getFileName().toString())) continue;
+                try
+                {
+                    Files.delete(file);
+                }
+                catch (IOException e)
+                {
+                    // Still mapped by a search (Windows); removed by the next update
+                    System.err.println("Warning: Cannot delete old segment " + file + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Segment files
+    //
+    //   header    "CTSIDX" + int16 version
+    //   hits      int count, count x {kind, catalog, schema, table, name, detail}
+    //   terms     int count, count x {term, postings start, postings count},
+    //             sorted by the UTF-8 bytes of the term
+    //   postings  int count, hit ids (ascending per term)
+    //   strings   int count, (count + 1) offsets into the UTF-8 blob, blob
+    //
+    // Integers are big-endian; strings are referenced by id, -1 is null. A
+    // term is stored as "field:value".
+    // ------------------------------------------------------------------
+
+    /**
+     * Collects the hits and terms of one catalog file
+     */
+    static final class SegmentBuilder
+    {
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final IntList hits = new IntList();
+        private final Map<String, IntList> postings = new HashMap<>();
+        private final Set<String> hitTerms = new LinkedHashSet<>();
+        private int hitCount;
+
+        void add(CatalogModel catalog)
+        {
+            for (CatalogModel.Schema schema : catalog.schemas)
+            {
+                for (CatalogModel.Table table : schema.tables)
+                {
+                    addTable(catalog.name, schema.name, table);
+                }
+
+                for (CatalogModel.Association association : schema.associations)
+                {
+                    startHit(ASSOCIATION, catalog.name, schema.name, association.junctionTable, association.name,
+                        association.entity1 + " <-> " + association.entity2);
+                    name("name", association.name);
+                    name("table", association.junctionTable);
+                    name("references", association.entity1);
+                    name("references", association.entity2);
+                    endHit();
+                }
+            }
+        }
+
+        private void addTable(String catalog, String schema, CatalogModel.Table table)
+        {
+            String tableName = table.getName();
+
+            startHit(TABLE, catalog, schema, tableName, null, table.getAnnotation());
+            name("name", tableName);
+            name("table", tableName);
+            words(table.getAnnotation());
+            endHit();
+
+            for (int i = 0; i < table.getColumnCount(); i++)
+            {
+                String type = table.getColumnType(i);
+                int size = table.getColumnSize(i);
+                startHit(COLUMN, catalog, schema, tableName, table.getColumnName(i),
+                    size > 0 && size < Integer.MAX_VALUE ? type + "(" + size + ")" : type);
+                name("name", table.getColumnName(i));
+                name("column", table.getColumnName(i));
+                name("table", tableName);
+                if (type != null) term("type", type);
+                words(table.getColumnAnnotation(i));
+                endHit();
+            }
+
+            for (CatalogModel.ForeignKey fk : table.getForeignKeys())
+            {
+                startHit(FOREIGN_KEY, catalog, schema, tableName, fk.getName(),
+                    "-> " + fk.getReferencedSchema() + "." + fk.getReferencedTable());
+                name("name", fk.getName());
+                name("table", tableName);
+                name("references", fk.getReferencedTable());
+                endHit();
+            }
+        }
+
+        private void startHit(int kind, String catalog, String schema, String table, String name, String detail)
+        {
+            hits.add(kind);
+            hits.add(string(catalog));
+            hits.add(string(schema));
+            hits.add(string(table));
+            hits.add(string(name));
+            hits.add(string(detail));
+        }
+
+        /**
+         * A name term, plus the name without its Mendix module prefix
+         */
+        private void name(String field, String value)
+        {
+            if (value == null) return;
+            term(field, value);
+            int dollar = value.lastIndexOf('$');
+            if (dollar >= 0 && dollar < value.length() - 1)
+            {
+                term(field, value.substring(dollar + 1));
+            }
+        }
+
+        private void words(String text)
+        {
+            if (text == null) return;
+            for (String word : text.split("[^\\p{L}\\p{N}_$]+"))
+            {
+                if (word.length() > 1) term("annotation", word);
+            }
+        }
+
+        private void term(String field, String value)
+        {
+            hitTerms.add(field + ":" + value.toLowerCase(Locale.ROOT));
+        }
+
+        private void endHit()
+        {
+            // Terms are collected per hit first, so a posting list has each hit once
+            for (String term : hitTerms)
+            {
+                IntList list = postings.get(term);
+                if (list == null)
+                {
+                    list = new IntList();
+                    postings.put(term, list);
+                }
+                list.add(hitCount);
+            }
+            hitTerms.clear();
+            hitCount++;
+        }
+
+        private int string(String value)
+        {
+            if (value == null) return -1;
+            Integer id = stringIds.get(value);
+            if (id == null)
+            {
+                id = strings.size();
+                stringIds.put(value, id);
+                strings.add(value);
+            }
+            return id;
+        }
+
+        /**
+         * Write to a temporary file and move it in place
+         */
+        void write(Path file) throws IOException
+        {
+            // Terms sorted by UTF-8 bytes, the order the reader compares in
+            List<byte[]> terms = new ArrayList<>(postings.size());
+            final Map<byte[], String> termText = new HashMap<>();
+            for (String term : postings.keySet())
+            {
+                byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+                terms.add(bytes);
+                termText.put(bytes, term);
+            }
+            Collections.sort(terms, new Comparator<byte[]>()
+            {
+                @Override
+                public int compare(byte[] a, byte[] b)
+                {
+                    return compareBytes(a, b);
+                }
+            });
+
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16)))
+            {
+                out.write(MAGIC);
+                out.writeShort(VERSION);
+
+                out.writeInt(hitCount);
+                for (int i = 0; i < hits.size; i++)
+                {
+                    out.writeInt(hits.values[i]);
+                }
+
+                // Term rows; the term strings join the dictionary
+                int[] termIds = new int[terms.size()];
+                int postingCount = 0;
+                for (int i = 0; i < terms.size(); i++)
+                {
+                    termIds[i] = string(termText.get(terms.get(i)));
+                    postingCount += postings.get(termText.get(terms.get(i))).size;
+                }
+
+                out.writeInt(terms.size());
+                int start = 0;
+                for (int i = 0; i < terms.size(); i++)
+                {
+                    IntList list = postings.get(termText.get(terms.get(i)));
+                    out.writeInt(termIds[i]);
+                    out.writeInt(start);
+                    out.writeInt(list.size);
+                    start += list.size;
+                }
+
+                out.writeInt(postingCount);
+                for (byte[] term : terms)
+                {
+                    IntList list = postings.get(termText.get(term));
+                    for (int i = 0; i < list.size; i++)
+                    {
+                        out.writeInt(list.values[i]);
+                    }
+                }
+
+                byte[][] encoded = new byte[strings.size()][];
+                int offset = 0;
+                out.writeInt(strings.size());
+                for (int i = 0; i < encoded.length; i++)
+                {
+                    encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(offset);
+                    offset += encoded[i].length;
+                }
+                out.writeInt(offset);
+                for (byte[] bytes : encoded)
+                {
+                    out.write(bytes);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Growable int array
+     */
+    static final class IntList
+    {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value)
+        {
+            if (size == values.length)
+            {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    static int compareBytes(byte[] a, byte[] b)
+    {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++)
+        {
+            int c = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (c != 0) return c;
+        }
+        return a.length - b.length;
+    }
+
+    /**
+     * A memory-mapped segment
+     */
+    static final class Segment
+    {
+        private final ByteBuffer buffer;
+        final int hitCount;
+        private final int hitsOffset;
+        private final int termCount;
+        private final int termsOffset;
+        private final int postingsOffset;
+        private final int stringCount;
+        private final int stringOffsets;
+        private final int blobOffset;
+
+        Segment(Path file) throws IOException
+        {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+            {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+
+            for (int i = 0; i < MAGIC.length; i++)
+            {
+                if (buffer.limit() < MAGIC.length + 2 || buffer.get(i) != MAGIC[i])
+                {
+                    throw new IOException("Not a CatalogSearch segment: " + file);
+                }
+            }
+            if (buffer.getShort(MAGIC.length) != VERSION)
+            {
+                throw new IOException("Unsupported CatalogSearch segment version in " + file + "; rebuild the index");
+            }
+
+            int offset = MAGIC.length + 2;
+            hitCount = buffer.getInt(offset);
+            hitsOffset = offset + 4;
+            offset = hitsOffset + hitCount * HIT_WIDTH * 4;
+
+            termCount = buffer.getInt(offset);
+            termsOffset = offset + 4;
+            offset = termsOffset + termCount * TERM_WIDTH * 4;
+
+            int postingCount = buffer.getInt(offset);
+            postingsOffset = offset + 4;
+            offset = postingsOffset + postingCount * 4;
+
+            stringCount = buffer.getInt(offset);
+            stringOffsets = offset + 4;
+            blobOffset = stringOffsets + (stringCount + 1) * 4;
+        }
+
+        String string(int id)
+        {
+            if (id < 0) return null;
+            int start = buffer.getInt(stringOffsets + id * 4);
+            int end = buffer.getInt(stringOffsets + id * 4 + 4);
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++)
+            {
+                bytes[i] = buffer.get(blobOffset + start + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int hitAttribute(int hit, int attribute)
+        {
+            return buffer.getInt(hitsOffset + (hit * HIT_WIDTH + attribute) * 4);
+        }
+
+        /**
+         * Compare term i with key; with prefix, a term starting with key compares equal
+         */
+        private int compareTerm(int i, byte[] key, boolean prefix)
+        {
+            int id = buffer.getInt(termsOffset + i * TERM_WIDTH * 4);
+            int start = blobOffset + buffer.getInt(stringOffsets + id * 4);
+            int length = blobOffset + buffer.getInt(stringOffsets + id * 4 + 4) - start;
+
+            int n = Math.min(length, key.length);
+            for (int k = 0; k < n; k++)
+            {
+                int c = (buffer.get(start + k) & 0xFF) - (key[k] & 0xFF);
+                if (c != 0) return c;
+            }
+            if (prefix && length >= key.length) return 0;
+            return length - key.length;
+        }
+
+        /**
+         * Hits having the term (or a term starting with it, for a prefix)
+         */
+        BitSet lookup(byte[] key, boolean prefix)
+        {
+            // First term not below the key
+            int low = 0;
+            int high = termCount;
+            while (low < high)
+            {
+                int mid = (low + high) >>> 1;
+                if (compareTerm(mid, key, prefix) < 0) low = mid + 1; else high = mid;
+            }
+
+            BitSet result = new BitSet(hitCount);
+            for (int i = low; i < termCount && compareTerm(i, key, prefix) == 0; i++)
+            {
+                int row = termsOffset + i * TERM_WIDTH * 4;
+                int start = buffer.getInt(row + 4);
+                int count = buffer.getInt(row + 8);
+                for (int p = 0; p < count; p++)
+                {
+                    result.set(buffer.getInt(postingsOffset + (start + p) * 4));
+                }
+                if (!prefix) break;
+            }
+            return result;
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Search
+    // ------------------------------------------------------------------
+
+    /**
+     * A search result
+     */
+    public static final class Hit
+    {
+        final String source;
+        final int kind;
+        final String catalog;
+        final String schema;
+        final String table;
+        final String name;
+        final String detail;
+
+        Hit(String source, int kind, String catalog, String schema, String table, String name, String detail)
+        {
+            this.source = source;
+            this.kind = kind;
+            this.catalog = catalog;
+            this.schema = schema;
+            this.table = table;
+            this.name = name;
+            this.detail = detail;
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder text = new StringBuilder();
+            text.append(source).append(": ").append(KIND_NAMES[kind]).append(' ')
+                .append(catalog).append('.').append(schema).append('.').append(table);
+            if (name != null)
+            {
+                text.append(kind == COLUMN ? "." : " ").append(name);
+            }
+            if (detail != null)
+            {
+                text.append("  ").append(detail);
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Run a query; adds up to limit hits and returns the total number of hits
+     */
+    public static int search(Path indexDir, List<String> terms, int limit, List<Hit> result) throws IOException
+    {
+        List<byte[]> keys = new ArrayList<>();
+        List<Boolean> prefixes = new ArrayList<>();
+        Set<String> fields = new HashSet<>();
+
+        for (String term : terms)
+        {
+            String field = "name";
+            String value = term;
+            int colon = term.indexOf(':');
+            if (colon > 0 && FIELDS.contains(term.substring(0, colon).toLowerCase(Locale.ROOT)))
+            {
+                field = term.substring(0, colon).toLowerCase(Locale.ROOT);
+                value = term.substring(colon + 1);
+            }
+
+            boolean prefix = value.endsWith("*");
+            if (prefix) value = value.substring(0, value.length() - 1);
+
+            fields.add(field);
+            keys.add((field + ":" + value.toLowerCase(Locale.ROOT)).getBytes(StandardCharsets.UTF_8));
+            prefixes.add(prefix);
+        }
+
+        int kinds = kinds(fields);
+        int total = 0;
+
+        for (Entry entry : readManifest(indexDir).values())
+        {
+            Segment segment = new Segment(indexDir.resolve(entry.segment));
+
+            BitSet matches = null;
+            for (int i = 0; i < keys.size() && (matches == null || !matches.isEmpty()); i++)
+            {
+                BitSet found = segment.lookup(keys.get(i), prefixes.get(i));
+                if (matches == null) matches = found; else matches.and(found);
+            }
+            if (matches == null) continue;
+
+            for (int hit = matches.nextSetBit(0); hit >= 0; hit = matches.nextSetBit(hit + 1))
+            {
+                int kind = segment.hitAttribute(hit, HIT_KIND);
+                if ((kinds & (1 << kind)) == 0) continue;
+
+                total++;
+                if (result.size() < limit)
+                {
+                    result.add(new Hit(entry.source, kind,
+                        segment.string(segment.hitAttribute(hit, HIT_CATALOG)),
+                        segment.string(segment.hitAttribute(hit, HIT_SCHEMA)),
+                        segment.string(segment.hitAttribute(hit, HIT_TABLE)),
+                        segment.string(segment.hitAttribute(hit, HIT_NAME)),
+                        segment.string(segment.hitAttribute(hit, HIT_DETAIL))));
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Kinds of hit a query returns, as a bit mask
+     */
+    private static int kinds(Set<String> fields)
+    {
+        int kinds = 0;
+        if (fields.contains("column") || fields.contains("type")) kinds |= 1 << COLUMN;
+        if (fields.contains("references")) kinds |= (1 << FOREIGN_KEY) | (1 << ASSOCIATION);
+        if (kinds != 0) return kinds;
+
+        if (fields.contains("table")) return 1 << TABLE;
+        return (1 << TABLE) | (1 << COLUMN) | (1 << FOREIGN_KEY) | (1 << ASSOCIATION);
+    }
+}
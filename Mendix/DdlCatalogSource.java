@@ -0,0 +1,2315 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds a jcatalog from DDL scripts instead of a live database connection.
+ *
+ * Reads schema-only dumps such as pg_dump --schema-only output or SQL Server
+ * scripted DDL (GO batches, [bracketed] names, MS_Description properties). The
+ * scripts are split into statements while reading and the statements are
+ * parsed in parallel. Supported: CREATE TABLE (columns, inline and table
+ * constraints), ALTER TABLE ADD [CONSTRAINT] PRIMARY KEY / FOREIGN KEY / UNIQUE /
+ * COLUMN / DEFAULT, ALTER COLUMN SET DEFAULT / [SET|DROP] NOT NULL, CREATE
+ * [UNIQUE] INDEX, COMMENT ON TABLE / COLUMN and sp_addextendedproperty. Other
+ * statements are ignored.
+ *
+ * The parsed tables are offered to StandaloneMendixExporter as read-only
+ * DatabaseMetaData, so the output gets the same system table filters and
+ * junction table detection as an export from the database. Column types are
+ * reported with the type names and sizes the JDBC driver of the script's
+ * database returns (int8, varchar, timestamp(29) for PostgreSQL), and
+ * defaults as it reports them (no default for DEFAULT NULL, MySQL literals
+ * unquoted), so an offline jcatalog of a pg_dump, mysqldump or SSMS script
+ * has the same content hashes as one exported online.
+ *
+ * Usage:
+ *   java -cp ".;json-20231013.jar" DdlCatalogSource <ddlFile>... <outputFile> [options]
+ *
+ * Options:
+ *   --include-system-tables   Keep system schemas, system tables and Mendix system modules
+ *   --catalog=<name>          Catalog name (default: name of the first script)
+ *   --default-schema=<name>   Schema of unqualified table names (default: public)
+ *   --dialect=<name>          postgresql, sqlserver or mysql (default: detected from the scripts)
+ *   --threads=<n>             Parser threads (default: number of processors)
+ *   --expressions=<file>      Also write fact expression skeletons (see FactExpressionGenerator)
+ *   --canonical               Stable output order plus per-table and per-schema content hashes
+ *
+ * Examples:
+ *   pg_dump --schema-only mendix > mendix.sql
+ *   java -cp ".;json-20231013.jar" DdlCatalogSource mendix.sql mendix.jcatalog
+ *   java -cp ".;json-20231013.jar" DdlCatalogSource tables.sql keys.sql mendix.bcatalog --default-schema=dbo
+ *
+ * @author CaseTalk Integration
+ * @version 1.0
+ */
+public class DdlCatalogSource
+{
+    private static final int BATCH_SIZE = 256;
+
+    private final String catalogName;
+    private final String defaultSchema;
+
+    // schema -> table name -> table, sorted as JDBC metadata would be
+    private final Map<String, Map<String, Table>> schemas = new TreeMap<>();
+    private final Map<String, Table> tablesIgnoringCase = new HashMap<>();
+
+    private int statementCount;
+    private int warningCount;
+
+    // Dialect of the scripts; null until read() detects it from the CREATE TABLE statements
+    private Dialect dialect;
+    private final int[] dialectHints = new int[Dialect.values().length];
+
+    public DdlCatalogSource(String catalogName, String defaultSchema)
+    {
+        this.catalogName = catalogName;
+        this.defaultSchema = defaultSchema;
+    }
+
+    /**
+     * Report column types as the driver of this database does (null: detect from the scripts)
+     */
+    public void setDialect(Dialect dialect)
+    {
+        this.dialect = dialect;
+    }
+
+    public static void main(String[] args)
+    {
+        List<String> positional = new ArrayList<>();
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args)
+        {
+            if (arg.startsWith("--"))
+            {
+                int eq = arg.indexOf('=');
+                options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "" : arg.substring(eq + 1));
+            }
+            else
+            {
+                positional.add(arg);
+            }
+        }
+
+        if (positional.size() < 2)
+        {
+            System.err.println("Usage: java DdlCatalogSource <ddlFile>... <outputFile> [options]");
+            System.err.println();
+            System.err.println("Options:");
+            System.err.println("  --include-system-tables   Keep system schemas, system tables and Mendix system modules");
+            System.err.println("  --catalog=<name>          Catalog name (default: name of the first script)");
+            System.err.println("  --default-schema=<name>   Schema of unqualified table names (default: public)");
+            System.err.println("  --dialect=<name>          postgresql, sqlserver or mysql (default: detected from the scripts)");
+            System.err.println("  --threads=<n>             Parser threads (default: number of processors)");
+            System.err.println("  --expressions=<file>      Also write fact expression skeletons");
+            System.err.println("  --canonical               Stable output order plus per-table and per-schema content hashes");
+            System.err.println();
+            System.err.println("Examples:");
+            System.err.println("  PostgreSQL: java DdlCatalogSource mendix.sql mendix.jcatalog");
+            System.err.println("  SQL Server: java DdlCatalogSource script.sql mendix.jcatalog --default-schema=dbo");
+            System.exit(1);
+        }
+
+        try
+        {
+            List<Path> files = new ArrayList<>();
+            for (String file : positional.subList(0, positional.size() - 1))
+            {
+                files.add(Paths.get(file));
+            }
+            Path output = Paths.get(positional.get(positional.size() - 1));
+
+            String catalogName = options.get("catalog");
+            if (catalogName == null)
+            {
+                catalogName = files.get(0).getFileName().toString().replaceFirst("\\.[^.]*$", "");
+            }
+            int threads = options.containsKey("threads")
+                ? Integer.parseInt(options.get("threads"))
+                : Runtime.getRuntime().availableProcessors();
+
+            long start = System.nanoTime();
+            DdlCatalogSource source = new DdlCatalogSource(catalogName,
+                options.containsKey("default-schema") ? options.get("default-schema") : "public");
+            if (options.containsKey("dialect"))
+            {
+                source.setDialect(Dialect.of(options.get("dialect")));
+            }
+            source.read(files, threads);
+
+            System.out.println(String.format("Parsed %d statements from %d script(s) in %d ms",
+                source.statementCount, files.size(), (System.nanoTime() - start) / 1000000));
+            if (source.warningCount > 0)
+            {
+                System.out.println("Warnings: " + source.warningCount);
+            }
+            System.out.println("Column types as reported by the " + source.dialect.displayName + " driver");
+
+            StandaloneMendixExporter exporter = new StandaloneMendixExporter();
+            exporter.setIncludeSystemTables(options.containsKey("include-system-tables"));
+
+            System.out.println("Extracting metadata...");
+            CatalogModel catalog = exporter.generateJCatalog(source.connection());
+
+            System.out.println("Writing to file: " + output);
+            CatalogConverter.save(Collections.singletonList(catalog), output, options.containsKey("canonical"));
+
+            if (options.containsKey("expressions"))
+            {
+                System.out.println("Writing fact expressions to: " + options.get("expressions"));
+                FactExpressionGenerator.generate(Collections.singletonList(catalog),
+                    Paths.get(options.get("expressions")), threads);
+            }
+
+            System.out.println("Successfully exported metadata to: " + output);
+        }
+        catch (Exception e)
+        {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Read the scripts in order; statements are parsed in parallel and applied in script order
+     */
+    public void read(List<Path> files, int threads) throws IOException
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try
+        {
+            final Deque<Future<List<Change>>> pending = new ArrayDeque<>();
+            final int maxPending = Math.max(1, threads) * 4;
+
+            for (Path file : files)
+            {
+                System.out.println("Reading: " + file);
+                final ExecutorService executor = pool;
+                final List<String> batch = new ArrayList<>(BATCH_SIZE);
+
+                DdlScriptSplitter.StatementHandler handler = new DdlScriptSplitter.StatementHandler()
+                {
+                    @Override
+                    public void statement(String sql) throws IOException
+                    {
+                        batch.add(sql);
+                        if (batch.size() == BATCH_SIZE)
+                        {
+                            submit(executor, batch, pending);
+                            batch.clear();
+
+                            // Keep memory bounded: apply finished batches while reading
+                            while (pending.size() > maxPending)
+                            {
+                                apply(pending.removeFirst());
+                            }
+                        }
+                    }
+                };
+
+                try (Reader reader = open(file))
+                {
+                    DdlScriptSplitter.split(reader, handler);
+                }
+                if (!batch.isEmpty())
+                {
+                    submit(pool, batch, pending);
+                }
+            }
+
+            while (!pending.isEmpty())
+            {
+                apply(pending.removeFirst());
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+
+        resolveForeignKeys();
+        resolveTypes();
+    }
+
+    private void submit(ExecutorService pool, List<String> batch, Deque<Future<List<Change>>> pending)
+    {
+        final String[] statements = batch.toArray(new String[batch.size()]);
+        statementCount += statements.length;
+
+        pending.addLast(pool.submit(new Callable<List<Change>>()
+        {
+            @Override
+            public List<Change> call()
+            {
+                List<Change> changes = new ArrayList<>();
+                for (String sql : statements)
+                {
+                    try
+                    {
+                        new StatementParser(sql, defaultSchema, changes).parse();
+                    }
+                    catch (RuntimeException e)
+                    {
+                        changes.add(new Warning("Cannot parse (" + e.getMessage() + "): " + abbreviate(sql)));
+                    }
+                }
+                return changes;
+            }
+        }));
+    }
+
+    private void apply(Future<List<Change>> future) throws IOException
+    {
+        try
+        {
+            for (Change change : future.get())
+            {
+                change.apply(this);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new IOException("Parsing failed: " + e.getCause(), e.getCause());
+        }
+    }
+
+    /**
+     * Open a script, honouring a UTF-8 or UTF-16 byte order mark (SQL Server
+     * Management Studio scripts are UTF-16 by default)
+     */
+    private static Reader open(Path file) throws IOException
+    {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16);
+        in.mark(3);
+        int b0 = in.read();
+        int b1 = in.read();
+        int b2 = in.read();
+
+        Charset charset = StandardCharsets.UTF_8;
+        int skip = 0;
+        if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF)
+        {
+            skip = 3;
+        }
+        else if (b0 == 0xFF && b1 == 0xFE)
+        {
+            charset = StandardCharsets.UTF_16LE;
+            skip = 2;
+        }
+        else if (b0 == 0xFE && b1 == 0xFF)
+        {
+            charset = StandardCharsets.UTF_16BE;
+            skip = 2;
+        }
+
+        in.reset();
+        for (int i = 0; i < skip; i++)
+        {
+            in.read();
+        }
+        return new InputStreamReader(in, charset);
+    }
+
+    private static String abbreviate(String sql)
+    {
+        String flat = sql.replaceAll("\\s+", " ");
+        return flat.length() > 100 ? flat.substring(0, 100) + "..." : flat;
+    }
+
+    private void warn(String message)
+    {
+        warningCount++;
+        System.err.println("Warning: " + message);
+    }
+
+    // ------------------------------------------------------------------
+    // Parsed model
+    // ------------------------------------------------------------------
+
+    static final class Table
+    {
+        final String schema;
+        final String name;
+        String remarks;
+        final List<Column> columns = new ArrayList<>();
+        final List<String> primaryKey = new ArrayList<>();
+        String primaryKeyName;
+        final List<ForeignKey> foreignKeys = new ArrayList<>();
+        final List<Index> indexes = new ArrayList<>();
+        Dialect dialectHint;
+
+        Table(String schema, String name)
+        {
+            this.schema = schema;
+            this.name = name;
+        }
+
+        Column column(String columnName)
+        {
+            for (Column column : columns)
+            {
+                if (column.name.equals(columnName)) return column;
+            }
+            for (Column column : columns)
+            {
+                if (column.name.equalsIgnoreCase(columnName)) return column;
+            }
+            return null;
+        }
+
+        void setPrimaryKey(String pkName, List<String> pkColumns)
+        {
+            primaryKeyName = pkName != null ? pkName : name + "_pkey";
+            primaryKey.clear();
+            primaryKey.addAll(pkColumns);
+            for (String pkColumn : pkColumns)
+            {
+                Column column = column(pkColumn);
+                if (column != null) column.nullable = false;
+            }
+        }
+    }
+
+    static final class Column
+    {
+        final String name;
+        final String type;
+        final int size;
+        boolean nullable = true;
+        boolean identity;
+        String remarks;
+        String defaultValue;
+
+        // TYPE_NAME and COLUMN_SIZE as the driver of the dialect reports them
+        String typeName;
+        int columnSize;
+
+        Column(String name, String type, int size)
+        {
+            this.name = name;
+            this.type = type;
+            this.size = size;
+        }
+    }
+
+    static final class ForeignKey
+    {
+        final String name;
+        final List<String> columns;
+        String targetSchema;
+        String targetTable;
+        final List<String> targetColumns;
+
+        ForeignKey(String name, List<String> columns, String targetSchema, String targetTable, List<String> targetColumns)
+        {
+            this.name = name;
+            this.columns = columns;
+            this.targetSchema = targetSchema;
+            this.targetTable = targetTable;
+            this.targetColumns = targetColumns;
+        }
+    }
+
+    static final class Index
+    {
+        final String name;
+        final boolean unique;
+        final boolean constraint;
+        final List<String> columns;
+
+        Index(String name, boolean unique, boolean constraint, List<String> columns)
+        {
+            this.name = name;
+            this.unique = unique;
+            this.constraint = constraint;
+            this.columns = columns;
+        }
+    }
+
+    private static String key(String schema, String table)
+    {
+        return (schema + "." + table).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Find a table; unquoted names may differ in case between statements
+     */
+    Table table(String schema, String name)
+    {
+        Map<String, Table> tables = schemas.get(schema);
+        Table table = tables != null ? tables.get(name) : null;
+        return table != null ? table : tablesIgnoringCase.get(key(schema, name));
+    }
+
+    void addTable(Table table)
+    {
+        if (table(table.schema, table.name) != null)
+        {
+            warn("Table " + table.schema + "." + table.name + " is created twice; keeping the first definition");
+            return;
+        }
+
+        Map<String, Table> tables = schemas.get(table.schema);
+        if (tables == null)
+        {
+            tables = new TreeMap<>();
+            schemas.put(table.schema, tables);
+        }
+        tables.put(table.name, table);
+        tablesIgnoringCase.put(key(table.schema, table.name), table);
+        if (table.dialectHint != null) dialectHints[table.dialectHint.ordinal()]++;
+    }
+
+    /**
+     * Point foreign keys at the names tables were created with and fill in
+     * referenced columns that default to the primary key
+     */
+    private void resolveForeignKeys()
+    {
+        for (Map<String, Table> tables : schemas.values())
+        {
+            for (Table table : tables.values())
+            {
+                for (ForeignKey fk : table.foreignKeys)
+                {
+                    Table target = table(fk.targetSchema, fk.targetTable);
+                    if (target == null)
+                    {
+                        warn("Foreign key " + fk.name + " on " + table.schema + "." + table.name
+                            + " refers to unknown table " + fk.targetSchema + "." + fk.targetTable);
+                        continue;
+                    }
+
+                    fk.targetSchema = target.schema;
+                    fk.targetTable = target.name;
+                    if (fk.targetColumns.isEmpty())
+                    {
+                        fk.targetColumns.addAll(target.primaryKey);
+                    }
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Changes produced by the parser, applied in script order
+    // ------------------------------------------------------------------
+
+    abstract static class Change
+    {
+        abstract void apply(DdlCatalogSource source);
+    }
+
+    /**
+     * A change to an existing table
+     */
+    abstract static class TableChange extends Change
+    {
+        final String schema;
+        final String table;
+
+        TableChange(String schema, String table)
+        {
+            this.schema = schema;
+            this.table = table;
+        }
+
+        @Override
+        final void apply(DdlCatalogSource source)
+        {
+            Table target = source.table(schema, table);
+            if (target == null)
+            {
+                source.warn("ALTER TABLE or COMMENT on unknown table " + schema + "." + table);
+                return;
+            }
+            apply(source, target);
+        }
+
+        abstract void apply(DdlCatalogSource source, Table target);
+    }
+
+    static final class Warning extends Change
+    {
+        final String message;
+
+        Warning(String message)
+        {
+            this.message = message;
+        }
+
+        @Override
+        void apply(DdlCatalogSource source)
+        {
+            source.warn(message);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Statement parsing
+    // ------------------------------------------------------------------
+
+    private static final int WORD = 0;
+    private static final int QUOTED = 1;
+    private static final int STRING = 2;
+    private static final int NUMBER = 3;
+    private static final int SYMBOL = 4;
+
+    static final class Token
+    {
+        final int type;
+        final String text;
+        final int start;
+        final int end;
+
+        Token(int type, String text, int start, int end)
+        {
+            this.type = type;
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Split a statement into words, quoted identifiers (text without quotes),
+     * string literals (text unescaped), numbers and single-character symbols
+     */
+    static List<Token> tokenize(String sql)
+    {
+        List<Token> tokens = new ArrayList<>();
+        int length = sql.length();
+        int i = 0;
+
+        while (i < length)
+        {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c))
+            {
+                i++;
+                continue;
+            }
+
+            int start = i;
+            char next = i + 1 < length ? sql.charAt(i + 1) : 0;
+
+            if (c == '\'' || ((c == 'N' || c == 'n' || c == 'E' || c == 'e') && next == '\''))
+            {
+                if (c != '\'') i++;
+                i = quoted(sql, i, '\'', STRING, start, tokens);
+            }
+            else if (c == '"')
+            {
+                i = quoted(sql, i, '"', QUOTED, start, tokens);
+            }
+            else if (c == '`')
+            {
+                i = quoted(sql, i, '`', QUOTED, start, tokens);
+            }
+            else if (c == '[' && next == ']')
+            {
+                tokens.add(new Token(SYMBOL, "[]", start, i + 2));
+                i += 2;
+            }
+            else if (c == '[')
+            {
+                i = quoted(sql, i, ']', QUOTED, start, tokens);
+            }
+            else if (c == '$' && isDollarQuote(sql, i))
+            {
+                // Dollar-quoted literal (PostgreSQL)
+                int tagEnd = sql.indexOf('$', i + 1) + 1;
+                String tag = sql.substring(i, tagEnd);
+                int close = sql.indexOf(tag, tagEnd);
+                int end = close < 0 ? length : close + tag.length();
+                tokens.add(new Token(STRING, sql.substring(tagEnd, close < 0 ? length : close), start, end));
+                i = end;
+            }
+            else if (Character.isDigit(c) || (c == '.' && Character.isDigit(next)))
+            {
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) i++;
+                tokens.add(new Token(NUMBER, sql.substring(start, i), start, i));
+            }
+            else if (isWordPart(c))
+            {
+                while (i < length && isWordPart(sql.charAt(i))) i++;
+                tokens.add(new Token(WORD, sql.substring(start, i), start, i));
+            }
+            else
+            {
+                tokens.add(new Token(SYMBOL, String.valueOf(c), start, i + 1));
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static int quoted(String sql, int i, char close, int type, int start, List<Token> tokens)
+    {
+        StringBuilder text = new StringBuilder();
+        int length = sql.length();
+        i++;
+        while (i < length)
+        {
+            char c = sql.charAt(i++);
+            if (c == close)
+            {
+                // A doubled closing quote is an escaped quote
+                if (i < length && sql.charAt(i) == close)
+                {
+                    text.append(c);
+                    i++;
+                    continue;
+                }
+                break;
+            }
+            text.append(c);
+        }
+        tokens.add(new Token(type, text.toString(), start, i));
+        return i;
+    }
+
+    private static boolean isDollarQuote(String sql, int i)
+    {
+        if (i > 0 && isWordPart(sql.charAt(i - 1))) return false;
+        int j = i + 1;
+        while (j < sql.length() && sql.charAt(j) != '$' && (Character.isLetterOrDigit(sql.charAt(j)) || sql.charAt(j) == '_')) j++;
+        return j < sql.length() && sql.charAt(j) == '$' && (j == i + 1 || !Character.isDigit(sql.charAt(i + 1)));
+    }
+
+    private static boolean isWordPart(char c)
+    {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#' || c == '@';
+    }
+
+    // Words that end a column type and start a column constraint or option
+    private static final Set<String> COLUMN_OPTIONS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static
+    {
+        COLUMN_OPTIONS.addAll(Arrays.asList(
+            "NOT", "NULL", "DEFAULT", "PRIMARY", "REFERENCES", "UNIQUE", "CHECK", "COLLATE", "CONSTRAINT",
+            "IDENTITY", "GENERATED", "COMMENT", "AUTO_INCREMENT", "ON", "ROWGUIDCOL", "SPARSE", "FILESTREAM",
+            "MASKED", "COMPRESSION", "STORAGE", "CHARACTER", "CHARSET"));
+    }
+
+    // Words only one dialect uses in a CREATE TABLE statement
+    private static final Map<String, Dialect> DIALECT_WORDS = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    static
+    {
+        for (String word : new String[] {"VARYING", "BYTEA", "SERIAL", "BIGSERIAL", "SMALLSERIAL", "JSONB",
+            "TIMESTAMPTZ", "ZONE", "INT2", "INT4", "INT8", "FLOAT8", "INHERITS"})
+        {
+            DIALECT_WORDS.put(word, Dialect.POSTGRESQL);
+        }
+        for (String word : new String[] {"NVARCHAR", "NCHAR", "NTEXT", "DATETIME2", "DATETIMEOFFSET", "SMALLDATETIME",
+            "UNIQUEIDENTIFIER", "CLUSTERED", "NONCLUSTERED", "ROWGUIDCOL", "TEXTIMAGE_ON"})
+        {
+            DIALECT_WORDS.put(word, Dialect.SQLSERVER);
+        }
+        for (String word : new String[] {"AUTO_INCREMENT", "UNSIGNED", "ZEROFILL", "ENGINE", "MEDIUMINT", "TINYTEXT",
+            "MEDIUMTEXT", "LONGTEXT", "TINYBLOB", "MEDIUMBLOB", "LONGBLOB"})
+        {
+            DIALECT_WORDS.put(word, Dialect.MYSQL);
+        }
+    }
+
+    /**
+     * Parses one statement into changes. Tokens are read from pos up to limit,
+     * so clauses and table elements can be parsed as sub-ranges.
+     */
+    static final class StatementParser
+    {
+        private final String sql;
+        private final List<Token> tokens;
+        private final String defaultSchema;
+        private final List<Change> changes;
+        private int pos;
+        private int limit;
+
+        StatementParser(String sql, String defaultSchema, List<Change> changes)
+        {
+            this.sql = sql;
+            this.tokens = tokenize(sql);
+            this.defaultSchema = defaultSchema;
+            this.changes = changes;
+            this.limit = tokens.size();
+        }
+
+        void parse()
+        {
+            if (acceptWord("CREATE"))
+            {
+                if (isIndexStart())
+                {
+                    createIndex();
+                    return;
+                }
+
+                for (int i = 0; i < 3 && !isWord("TABLE") && pos < limit; i++) pos++;
+                if (!acceptWord("TABLE")) return;
+                if (acceptWord("IF")) { expectWord("NOT"); expectWord("EXISTS"); }
+
+                String[] name = tableName();
+                if (isSymbol("(")) createTable(name);
+            }
+            else if (acceptWord("ALTER"))
+            {
+                expectWord("TABLE");
+                if (acceptWord("IF")) expectWord("EXISTS");
+                acceptWord("ONLY");
+
+                String[] name = tableName();
+                acceptSymbol("*");
+                alterTable(name);
+            }
+            else if (acceptWord("COMMENT"))
+            {
+                expectWord("ON");
+                comment();
+            }
+            else if (acceptWord("EXEC") || acceptWord("EXECUTE"))
+            {
+                extendedProperty();
+            }
+        }
+
+        // --- CREATE TABLE ---
+
+        private void createTable(String[] name)
+        {
+            Table table = new Table(name[0], name[1]);
+            table.dialectHint = dialectHint();
+            int open = pos;
+            int close = matching(open);
+
+            for (int[] element : split(open + 1, close))
+            {
+                pos = element[0];
+                limit = element[1];
+                if (pos < limit) tableElement(table);
+            }
+
+            // Table options after the element list (MySQL COMMENT='...')
+            pos = close + 1;
+            limit = tokens.size();
+            while (pos < limit)
+            {
+                if (acceptWord("COMMENT"))
+                {
+                    acceptSymbol("=");
+                    if (peek().type == STRING) table.remarks = next().text;
+                }
+                else
+                {
+                    pos++;
+                }
+            }
+
+            final Table created = table;
+            changes.add(new Change()
+            {
+                @Override
+                void apply(DdlCatalogSource source)
+                {
+                    source.addTable(created);
+                }
+            });
+        }
+
+        /**
+         * The dialect the statement is written in, judged from its identifier
+         * quotes and dialect-only words (null: no telling)
+         */
+        private Dialect dialectHint()
+        {
+            for (Token token : tokens)
+            {
+                if (token.type == QUOTED)
+                {
+                    char quote = sql.charAt(token.start);
+                    if (quote == '[') return Dialect.SQLSERVER;
+                    if (quote == '`') return Dialect.MYSQL;
+                }
+                else if (token.type == WORD)
+                {
+                    Dialect dialect = DIALECT_WORDS.get(token.text);
+                    if (dialect != null) return dialect;
+                }
+            }
+            return null;
+        }
+
+        private void tableElement(Table table)
+        {
+            if (isConstraintStart())
+            {
+                Object constraint = constraint(table.schema, table.name);
+                if (constraint instanceof ForeignKey)
+                {
+                    table.foreignKeys.add((ForeignKey) constraint);
+                }
+                else if (constraint instanceof PrimaryKey)
+                {
+                    PrimaryKey pk = (PrimaryKey) constraint;
+                    table.setPrimaryKey(pk.name, pk.columns);
+                }
+                else if (constraint instanceof Index)
+                {
+                    table.indexes.add((Index) constraint);
+                }
+                return;
+            }
+
+            if (isWord("LIKE") || isWord("PERIOD")) return;
+
+            column(table);
+        }
+
+        private boolean isConstraintStart()
+        {
+            if (isWord("CONSTRAINT") || isWord("UNIQUE") || isWord("CHECK") || isWord("EXCLUDE")) return true;
+            if ((isWord("PRIMARY") || isWord("FOREIGN")) && isWordAt(pos + 1, "KEY")) return true;
+
+            // MySQL index definitions: KEY `name` (...), INDEX (...)
+            if (isWord("KEY") || isWord("INDEX") || isWord("FULLTEXT") || isWord("SPATIAL"))
+            {
+                return isSymbolAt(pos + 1, "(") || (pos + 1 < limit && tokens.get(pos + 1).type == QUOTED);
+            }
+            return false;
+        }
+
+        /**
+         * Column definition; adds the column and any inline keys to the table
+         */
+        private Column column(Table table)
+        {
+            String columnName = identifier();
+
+            // Type: everything up to the first column option
+            StringBuilder type = new StringBuilder();
+            int size = -1;
+            while (pos < limit && !isColumnOption(pos))
+            {
+                Token token = next();
+                if (token.type == SYMBOL && token.text.equals("("))
+                {
+                    int close = matching(pos - 1);
+                    if (size < 0 && isMySqlValueList(type.toString())) size = valueListSize(type.toString(), pos, close);
+                    else if (size < 0) size = parseSize(pos, close);
+                    pos = close + 1;
+                }
+                else if (token.type == SYMBOL && token.text.equals("[]"))
+                {
+                    type.append("[]");
+                }
+                else if (token.type == WORD || token.type == QUOTED)
+                {
+                    if (type.length() > 0) type.append(' ');
+                    type.append(token.text);
+                }
+            }
+
+            // Size -1: none declared; the dialect supplies what its driver reports
+            Column column = new Column(columnName, type.toString(), size);
+            table.columns.add(column);
+            columnOptions(table, column);
+            return column;
+        }
+
+        private int parseSize(int from, int to)
+        {
+            for (int i = from; i < to; i++)
+            {
+                Token token = tokens.get(i);
+                if (token.type == NUMBER)
+                {
+                    try
+                    {
+                        return Integer.parseInt(token.text);
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        return 0;
+                    }
+                }
+                if (token.type == WORD && token.text.equalsIgnoreCase("max"))
+                {
+                    return Integer.MAX_VALUE;
+                }
+            }
+            return 0;
+        }
+
+        private static boolean isMySqlValueList(String type)
+        {
+            return type.equalsIgnoreCase("enum") || type.equalsIgnoreCase("set");
+        }
+
+        /**
+         * Size MySQL reports for ENUM (longest value) and SET (all values and separators)
+         */
+        private int valueListSize(String type, int from, int to)
+        {
+            int longest = 0;
+            int total = -1;
+            for (int i = from; i < to; i++)
+            {
+                Token token = tokens.get(i);
+                if (token.type != STRING) continue;
+                longest = Math.max(longest, token.text.length());
+                total += token.text.length() + 1;
+            }
+            return type.equalsIgnoreCase("set") ? Math.max(0, total) : longest;
+        }
+
+        private void columnOptions(Table table, Column column)
+        {
+            String constraintName = null;
+            while (pos < limit)
+            {
+                if (acceptWord("CONSTRAINT"))
+                {
+                    constraintName = identifier();
+                }
+                else if (acceptWord("NOT"))
+                {
+                    expectWord("NULL");
+                    column.nullable = false;
+                }
+                else if (acceptWord("NULL"))
+                {
+                    column.nullable = true;
+                }
+                else if (acceptWord("DEFAULT"))
+                {
+                    column.defaultValue = expression();
+                }
+                else if (acceptWord("PRIMARY"))
+                {
+                    expectWord("KEY");
+                    acceptWord("CLUSTERED");
+                    acceptWord("NONCLUSTERED");
+                    table.setPrimaryKey(constraintName, Collections.singletonList(column.name));
+                    column.nullable = false;
+                }
+                else if (acceptWord("REFERENCES"))
+                {
+                    String[] target = tableName();
+                    List<String> targetColumns = isSymbol("(") ? columnList() : new ArrayList<String>();
+                    referenceOptions();
+                    table.foreignKeys.add(new ForeignKey(
+                        constraintName != null ? constraintName : table.name + "_" + column.name + "_fkey",
+                        Collections.singletonList(column.name), target[0], target[1], targetColumns));
+                }
+                else if (acceptWord("UNIQUE"))
+                {
+                    acceptWord("KEY");
+                    acceptWord("CLUSTERED");
+                    acceptWord("NONCLUSTERED");
+                    table.indexes.add(new Index(constraintName != null ? constraintName : table.name + "_" + column.name + "_key",
+                        true, true, Collections.singletonList(column.name)));
+                }
+                else if (acceptWord("COMMENT"))
+                {
+                    if (peek().type == STRING) column.remarks = next().text;
+                }
+                else if (acceptWord("COLLATE"))
+                {
+                    qualifiedName();
+                }
+                else if (acceptWord("GENERATED"))
+                {
+                    // GENERATED {ALWAYS | BY DEFAULT} AS {IDENTITY [(...)] | (expr) [STORED]}
+                    if (acceptWord("BY")) expectWord("DEFAULT"); else acceptWord("ALWAYS");
+                    expectWord("AS");
+                    acceptWord("IDENTITY");
+                    skipParentheses();
+                    acceptWord("STORED");
+                    acceptWord("VIRTUAL");
+                }
+                else if (acceptWord("ON"))
+                {
+                    // MySQL ON UPDATE CURRENT_TIMESTAMP[(n)]
+                    acceptWord("UPDATE");
+                    pos++;
+                    skipParentheses();
+                }
+                else if (acceptWord("CHARACTER"))
+                {
+                    acceptWord("SET");
+                    pos++;
+                }
+                else if (acceptWord("CHARSET"))
+                {
+                    pos++;
+                }
+                else if (acceptWord("IDENTITY"))
+                {
+                    // SQL Server IDENTITY[(seed, increment)]
+                    skipParentheses();
+                    column.identity = true;
+                }
+                else
+                {
+                    // CHECK (...), AUTO_INCREMENT and other options without catalog meaning
+                    pos++;
+                    skipParentheses();
+                }
+            }
+        }
+
+        /**
+         * Skip ON DELETE / ON UPDATE actions, MATCH and deferrability after REFERENCES
+         */
+        private void referenceOptions()
+        {
+            while (pos < limit)
+            {
+                if (acceptWord("ON"))
+                {
+                    pos++; // DELETE or UPDATE
+                    if (acceptWord("SET")) pos++; // NULL or DEFAULT
+                    else if (acceptWord("NO")) expectWord("ACTION");
+                    else pos++; // CASCADE or RESTRICT
+                }
+                else if (acceptWord("MATCH") || acceptWord("INITIALLY"))
+                {
+                    pos++;
+                }
+                else if (acceptWord("DEFERRABLE") || acceptWord("VALID"))
+                {
+                    continue;
+                }
+                else if (isWord("NOT") && (isWordAt(pos + 1, "DEFERRABLE") || isWordAt(pos + 1, "VALID")
+                    || isWordAt(pos + 1, "FOR")))
+                {
+                    pos += 2;
+                    acceptWord("REPLICATION");
+                }
+                else
+                {
+                    return;
+                }
+            }
+        }
+
+        static final class PrimaryKey
+        {
+            final String name;
+            final List<String> columns;
+
+            PrimaryKey(String name, List<String> columns)
+            {
+                this.name = name;
+                this.columns = columns;
+            }
+        }
+
+        static final class DefaultValue
+        {
+            final String column;
+            final String value;
+
+            DefaultValue(String column, String value)
+            {
+                this.column = column;
+                this.value = value;
+            }
+        }
+
+        /**
+         * Table constraint: returns a PrimaryKey, ForeignKey, Index (UNIQUE, or a
+         * MySQL KEY / INDEX), DefaultValue (SQL Server ADD DEFAULT ... FOR) or
+         * null for constraints without catalog meaning
+         */
+        private Object constraint(String schema, String tableName)
+        {
+            String name = null;
+            if (acceptWord("CONSTRAINT"))
+            {
+                name = identifier();
+            }
+
+            if (acceptWord("PRIMARY"))
+            {
+                expectWord("KEY");
+                acceptWord("CLUSTERED");
+                acceptWord("NONCLUSTERED");
+                return new PrimaryKey(name, columnList());
+            }
+
+            if (acceptWord("FOREIGN"))
+            {
+                expectWord("KEY");
+                List<String> columns = columnList();
+                expectWord("REFERENCES");
+                String[] target = tableName();
+                List<String> targetColumns = isSymbol("(") ? columnList() : new ArrayList<String>();
+                referenceOptions();
+                return new ForeignKey(name != null ? name : tableName + "_" + columns.get(0) + "_fkey",
+                    columns, target[0], target[1], targetColumns);
+            }
+
+            if (acceptWord("UNIQUE"))
+            {
+                // MySQL: UNIQUE [KEY|INDEX] [name]; PostgreSQL 15: NULLS [NOT] DISTINCT
+                boolean mysqlKey = acceptWord("KEY") || acceptWord("INDEX");
+                if (mysqlKey && !isSymbol("(")) name = identifier();
+                acceptWord("CLUSTERED");
+                acceptWord("NONCLUSTERED");
+                if (acceptWord("NULLS"))
+                {
+                    acceptWord("NOT");
+                    expectWord("DISTINCT");
+                }
+                List<String> columns = indexColumns();
+                if (columns == null) return null;
+                return new Index(name != null ? name : tableName + "_" + columns.get(0) + "_key", true, true, columns);
+            }
+
+            if (name == null && (acceptWord("KEY") || acceptWord("INDEX")))
+            {
+                String indexName = isSymbol("(") ? null : identifier();
+                List<String> columns = indexColumns();
+                if (columns == null) return null;
+                return new Index(indexName != null ? indexName : tableName + "_" + columns.get(0) + "_idx", false, false, columns);
+            }
+
+            if (acceptWord("DEFAULT"))
+            {
+                String value = expression();
+                if (acceptWord("FOR"))
+                {
+                    return new DefaultValue(identifier(), value);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Index key list: plain columns with optional ASC/DESC, collation or
+         * operator class. Returns null for an expression or prefix key, which
+         * does not make the columns themselves unique.
+         */
+        private List<String> indexColumns()
+        {
+            int open = pos;
+            if (!isSymbol("(")) throw new IllegalArgumentException("expected ( at " + describe());
+            int close = matching(open);
+
+            List<String> columns = new ArrayList<>();
+            boolean plain = true;
+            for (int[] item : split(open + 1, close))
+            {
+                if (item[0] >= item[1]) continue;
+                Token token = tokens.get(item[0]);
+                if (token.type != WORD && token.type != QUOTED) plain = false;
+                for (int i = item[0] + 1; i < item[1] && plain; i++)
+                {
+                    if (tokens.get(i).type == SYMBOL) plain = false;
+                }
+                columns.add(token.text);
+            }
+            pos = close + 1;
+            return plain && !columns.isEmpty() ? columns : null;
+        }
+
+        // --- CREATE INDEX ---
+
+        /**
+         * At [UNIQUE] [CLUSTERED|NONCLUSTERED] INDEX after CREATE
+         */
+        private boolean isIndexStart()
+        {
+            int i = pos;
+            if (isWordAt(i, "UNIQUE")) i++;
+            if (isWordAt(i, "CLUSTERED") || isWordAt(i, "NONCLUSTERED")) i++;
+            return isWordAt(i, "INDEX");
+        }
+
+        /**
+         * CREATE [UNIQUE] [CLUSTERED|NONCLUSTERED] INDEX [CONCURRENTLY] [IF NOT EXISTS]
+         * name ON [ONLY] table [USING method] (columns) [INCLUDE (...)] [WHERE ...]
+         */
+        private void createIndex()
+        {
+            boolean unique = acceptWord("UNIQUE");
+            acceptWord("CLUSTERED");
+            acceptWord("NONCLUSTERED");
+            expectWord("INDEX");
+            acceptWord("CONCURRENTLY");
+            if (acceptWord("IF"))
+            {
+                expectWord("NOT");
+                expectWord("EXISTS");
+            }
+
+            List<String> indexName = qualifiedName();
+            expectWord("ON");
+            acceptWord("ONLY");
+            String[] name = tableName();
+            if (acceptWord("USING")) pos++;
+
+            final List<String> columns = indexColumns();
+            if (columns == null) return;
+
+            // A partial (filtered) index does not constrain the whole table
+            while (pos < limit)
+            {
+                if (isWord("WHERE")) return;
+                pos++;
+            }
+
+            final Index index = new Index(indexName.get(indexName.size() - 1), unique, false, columns);
+            changes.add(new TableChange(name[0], name[1])
+            {
+                @Override
+                void apply(DdlCatalogSource source, Table target)
+                {
+                    target.indexes.add(index);
+                }
+            });
+        }
+
+        /**
+         * ( col [ASC|DESC], ... )
+         */
+        private List<String> columnList()
+        {
+            int open = pos;
+            if (!isSymbol("(")) throw new IllegalArgumentException("expected ( at " + describe());
+            int close = matching(open);
+
+            List<String> columns = new ArrayList<>();
+            for (int[] item : split(open + 1, close))
+            {
+                if (item[0] < item[1])
+                {
+                    Token token = tokens.get(item[0]);
+                    if (token.type == WORD || token.type == QUOTED) columns.add(token.text);
+                }
+            }
+            pos = close + 1;
+            return columns;
+        }
+
+        /**
+         * Source text of an expression, up to the next column option
+         */
+        private String expression()
+        {
+            int start = pos;
+            while (pos < limit)
+            {
+                Token token = peek();
+                if ((isColumnOption(pos) && !isWord("NULL") && !isWord("DEFAULT")) || isWord("FOR"))
+                {
+                    break;
+                }
+                if (token.type == SYMBOL && token.text.equals("("))
+                {
+                    pos = matching(pos) + 1;
+                }
+                else
+                {
+                    pos++;
+                }
+            }
+
+            // NULL right after DEFAULT is the value, a later NOT NULL / NULL is an option
+            while (pos > start + 1 && isWordAt(pos - 1, "NULL"))
+            {
+                pos--;
+                if (pos > start + 1 && isWordAt(pos - 1, "NOT")) pos--;
+            }
+            if (start == pos) return null;
+            return sql.substring(tokens.get(start).start, tokens.get(pos - 1).end).trim();
+        }
+
+        // --- ALTER TABLE ---
+
+        private void alterTable(String[] name)
+        {
+            String verb = null;
+            int end = tokens.size();
+            for (int[] clause : split(pos, end))
+            {
+                pos = clause[0];
+                limit = clause[1];
+
+                while (acceptWord("WITH"))
+                {
+                    pos++; // CHECK or NOCHECK
+                }
+
+                if (acceptWord("ADD"))
+                {
+                    verb = "ADD";
+                }
+                else if (acceptWord("ALTER"))
+                {
+                    verb = "ALTER";
+                }
+                else if (isWord("DROP") || isWord("OWNER") || isWord("SET") || isWord("RENAME")
+                    || isWord("ENABLE") || isWord("DISABLE") || isWord("REPLICA") || isWord("ATTACH")
+                    || isWord("CLUSTER") || isWord("INHERIT") || isWord("VALIDATE"))
+                {
+                    verb = null;
+                }
+
+                if ("ADD".equals(verb) && pos < limit)
+                {
+                    addClause(name);
+                }
+                else if ("ALTER".equals(verb) && pos < limit)
+                {
+                    alterColumnClause(name);
+                }
+            }
+        }
+
+        private void addClause(final String[] name)
+        {
+            if (isConstraintStart() || isWord("DEFAULT"))
+            {
+                final Object constraint = constraint(name[0], name[1]);
+                if (constraint == null) return;
+
+                changes.add(new TableChange(name[0], name[1])
+                {
+                    @Override
+                    void apply(DdlCatalogSource source, Table target)
+                    {
+                        if (constraint instanceof PrimaryKey)
+                        {
+                            PrimaryKey pk = (PrimaryKey) constraint;
+                            target.setPrimaryKey(pk.name, pk.columns);
+                        }
+                        else if (constraint instanceof ForeignKey)
+                        {
+                            target.foreignKeys.add((ForeignKey) constraint);
+                        }
+                        else if (constraint instanceof Index)
+                        {
+                            target.indexes.add((Index) constraint);
+                        }
+                        else
+                        {
+                            DefaultValue value = (DefaultValue) constraint;
+                            Column column = target.column(value.column);
+                            if (column != null) column.defaultValue = value.value;
+                        }
+                    }
+                });
+                return;
+            }
+
+            if (acceptWord("GENERATED")) return;
+
+            acceptWord("COLUMN");
+            if (acceptWord("IF"))
+            {
+                expectWord("NOT");
+                expectWord("EXISTS");
+            }
+
+            // Parse into a scratch table and move the column and its inline keys over
+            final Table scratch = new Table(name[0], name[1]);
+            column(scratch);
+            changes.add(new TableChange(name[0], name[1])
+            {
+                @Override
+                void apply(DdlCatalogSource source, Table target)
+                {
+                    Column column = scratch.columns.get(0);
+                    if (target.column(column.name) != null)
+                    {
+                        source.warn("Column " + column.name + " is added twice to " + target.schema + "." + target.name);
+                        return;
+                    }
+                    target.columns.add(column);
+                    if (!scratch.primaryKey.isEmpty()) target.setPrimaryKey(scratch.primaryKeyName, scratch.primaryKey);
+                    target.foreignKeys.addAll(scratch.foreignKeys);
+                    target.indexes.addAll(scratch.indexes);
+                }
+            });
+        }
+
+        private void alterColumnClause(String[] name)
+        {
+            acceptWord("COLUMN");
+            final String columnName = identifier();
+
+            final String defaultValue;
+            final Boolean nullable;
+            if (acceptWord("SET"))
+            {
+                if (acceptWord("DEFAULT"))
+                {
+                    defaultValue = expression();
+                    nullable = null;
+                }
+                else if (acceptWord("NOT"))
+                {
+                    expectWord("NULL");
+                    defaultValue = null;
+                    nullable = Boolean.FALSE;
+                }
+                else
+                {
+                    return;
+                }
+            }
+            else if (acceptWord("DROP"))
+            {
+                if (acceptWord("DEFAULT"))
+                {
+                    defaultValue = "";
+                    nullable = null;
+                }
+                else if (acceptWord("NOT"))
+                {
+                    expectWord("NULL");
+                    defaultValue = null;
+                    nullable = Boolean.TRUE;
+                }
+                else
+                {
+                    return;
+                }
+            }
+            else
+            {
+                return;
+            }
+
+            changes.add(new TableChange(name[0], name[1])
+            {
+                @Override
+                void apply(DdlCatalogSource source, Table target)
+                {
+                    Column column = target.column(columnName);
+                    if (column == null)
+                    {
+                        source.warn("ALTER COLUMN on unknown column " + target.name + "." + columnName);
+                        return;
+                    }
+                    if (defaultValue != null) column.defaultValue = defaultValue.isEmpty() ? null : defaultValue;
+                    if (nullable != null) column.nullable = nullable;
+                }
+            });
+        }
+
+        // --- COMMENT ON / sp_addextendedproperty ---
+
+        private void comment()
+        {
+            boolean isColumn;
+            if (acceptWord("TABLE"))
+            {
+                isColumn = false;
+            }
+            else if (acceptWord("COLUMN"))
+            {
+                isColumn = true;
+            }
+            else
+            {
+                return;
+            }
+
+            List<String> parts = qualifiedName();
+            expectWord("IS");
+            Token value = next();
+            String text = value.type == STRING ? value.text : null;
+
+            if (isColumn)
+            {
+                if (parts.size() < 2) throw new IllegalArgumentException("column name without table");
+                String column = parts.remove(parts.size() - 1);
+                addComment(schemaOf(parts), parts.get(parts.size() - 1), column, text);
+            }
+            else
+            {
+                addComment(schemaOf(parts), parts.get(parts.size() - 1), null, text);
+            }
+        }
+
+        private static final String[] PROPERTY_PARAMETERS = {"@name", "@value", "@level0type", "@level0name",
+            "@level1type", "@level1name", "@level2type", "@level2name"};
+
+        /**
+         * EXEC sys.sp_addextendedproperty @name=N'MS_Description', @value=N'...',
+         * @level0type=N'SCHEMA', @level0name=N'dbo', @level1type=N'TABLE', @level1name=N'x'
+         * [, @level2type=N'COLUMN', @level2name=N'y']
+         */
+        private void extendedProperty()
+        {
+            List<String> procedure = qualifiedName();
+            if (!procedure.get(procedure.size() - 1).equalsIgnoreCase("sp_addextendedproperty")) return;
+
+            Map<String, String> arguments = new HashMap<>();
+            int index = 0;
+            for (int[] argument : split(pos, tokens.size()))
+            {
+                pos = argument[0];
+                limit = argument[1];
+                String parameter = index < PROPERTY_PARAMETERS.length ? PROPERTY_PARAMETERS[index] : null;
+                if (pos + 1 < limit && peek().type == WORD && peek().text.startsWith("@") && isSymbolAt(pos + 1, "="))
+                {
+                    parameter = next().text.toLowerCase(Locale.ROOT);
+                    pos++;
+                }
+                if (pos < limit && parameter != null)
+                {
+                    Token value = next();
+                    arguments.put(parameter, value.type == WORD && value.text.equalsIgnoreCase("NULL") ? null : value.text);
+                }
+                index++;
+            }
+
+            if (!"MS_Description".equalsIgnoreCase(arguments.get("@name"))
+                || !"TABLE".equalsIgnoreCase(arguments.get("@level1type"))
+                || arguments.get("@level1name") == null)
+            {
+                return;
+            }
+
+            String schema = arguments.get("@level0name") != null ? arguments.get("@level0name") : defaultSchema;
+            String column = "COLUMN".equalsIgnoreCase(arguments.get("@level2type")) ? arguments.get("@level2name") : null;
+            if (arguments.get("@level2type") != null && column == null) return;
+
+            addComment(schema, arguments.get("@level1name"), column, arguments.get("@value"));
+        }
+
+        private void addComment(String schema, String table, final String column, final String text)
+        {
+            changes.add(new TableChange(schema, table)
+            {
+                @Override
+                void apply(DdlCatalogSource source, Table target)
+                {
+                    if (column == null)
+                    {
+                        target.remarks = text;
+                        return;
+                    }
+
+                    Column targetColumn = target.column(column);
+                    if (targetColumn == null)
+                    {
+                        source.warn("Comment on unknown column " + target.name + "." + column);
+                        return;
+                    }
+                    targetColumn.remarks = text;
+                }
+            });
+        }
+
+        // --- Names ---
+
+        /**
+         * [catalog.][schema.]table as {schema, table}
+         */
+        private String[] tableName()
+        {
+            List<String> parts = qualifiedName();
+            return new String[] {schemaOf(parts), parts.get(parts.size() - 1)};
+        }
+
+        private String schemaOf(List<String> parts)
+        {
+            return parts.size() > 1 ? parts.get(parts.size() - 2) : defaultSchema;
+        }
+
+        private List<String> qualifiedName()
+        {
+            List<String> parts = new ArrayList<>();
+            parts.add(identifier());
+            while (isSymbol("."))
+            {
+                pos++;
+                parts.add(identifier());
+            }
+            return parts;
+        }
+
+        private String identifier()
+        {
+            Token token = next();
+            if (token.type != WORD && token.type != QUOTED && token.type != STRING)
+            {
+                throw new IllegalArgumentException("expected a name at '" + token.text + "'");
+            }
+            return token.text;
+        }
+
+        // --- Token helpers ---
+
+        private Token peek()
+        {
+            if (pos >= limit) throw new IllegalArgumentException("unexpected end of statement");
+            return tokens.get(pos);
+        }
+
+        private Token next()
+        {
+            Token token = peek();
+            pos++;
+            return token;
+        }
+
+        /**
+         * Whether the token at index starts a column option; CHARACTER only
+         * does as MySQL CHARACTER SET, otherwise it is a type ("character varying")
+         */
+        private boolean isColumnOption(int index)
+        {
+            if (index >= limit || tokens.get(index).type != WORD) return false;
+            String word = tokens.get(index).text;
+            if (word.equalsIgnoreCase("CHARACTER")) return isWordAt(index + 1, "SET");
+            return COLUMN_OPTIONS.contains(word);
+        }
+
+        private boolean isWord(String word)
+        {
+            return isWordAt(pos, word);
+        }
+
+        private boolean isWordAt(int index, String word)
+        {
+            return index < limit && tokens.get(index).type == WORD && tokens.get(index).text.equalsIgnoreCase(word);
+        }
+
+        private boolean acceptWord(String word)
+        {
+            if (!isWord(word)) return false;
+            pos++;
+            return true;
+        }
+
+        private void expectWord(String word)
+        {
+            if (!acceptWord(word)) throw new IllegalArgumentException("expected " + word + " at " + describe());
+        }
+
+        private boolean isSymbol(String symbol)
+        {
+            return isSymbolAt(pos, symbol);
+        }
+
+        private boolean isSymbolAt(int index, String symbol)
+        {
+            return index < limit && tokens.get(index).type == SYMBOL && tokens.get(index).text.equals(symbol);
+        }
+
+        private boolean acceptSymbol(String symbol)
+        {
+            if (!isSymbol(symbol)) return false;
+            pos++;
+            return true;
+        }
+
+        private void skipParentheses()
+        {
+            if (isSymbol("(")) pos = matching(pos) + 1;
+        }
+
+        private String describe()
+        {
+            return pos < limit ? "'" + tokens.get(pos).text + "'" : "end of statement";
+        }
+
+        /**
+         * Index of the parenthesis closing the one at open
+         */
+        private int matching(int open)
+        {
+            int depth = 0;
+            for (int i = open; i < tokens.size(); i++)
+            {
+                Token token = tokens.get(i);
+                if (token.type != SYMBOL) continue;
+                if (token.text.equals("(")) depth++;
+                else if (token.text.equals(")") && --depth == 0) return i;
+            }
+            throw new IllegalArgumentException("unbalanced parentheses");
+        }
+
+        /**
+         * Ranges between top-level commas in [from, to)
+         */
+        private List<int[]> split(int from, int to)
+        {
+            List<int[]> ranges = new ArrayList<>();
+            int depth = 0;
+            int start = from;
+            for (int i = from; i < to; i++)
+            {
+                Token token = tokens.get(i);
+                if (token.type != SYMBOL) continue;
+                if (token.text.equals("(")) depth++;
+                else if (token.text.equals(")")) depth--;
+                else if (token.text.equals(",") && depth == 0)
+                {
+                    ranges.add(new int[] {start, i});
+                    start = i + 1;
+                }
+            }
+            ranges.add(new int[] {start, to});
+            return ranges;
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Column types as the JDBC drivers report them
+    // ------------------------------------------------------------------
+
+    /**
+     * The database a script is written for
+     */
+    public enum Dialect
+    {
+        POSTGRESQL("PostgreSQL", 6, Integer.MAX_VALUE),
+        SQLSERVER("SQL Server", 7, 0),
+        MYSQL("MySQL", 0, 0);
+
+        final String displayName;
+        // Fractional second digits of time types declared without a precision
+        final int fractionDigits;
+        // Size reported for types the driver knows nothing more about
+        final int unknownSize;
+
+        Dialect(String displayName, int fractionDigits, int unknownSize)
+        {
+            this.displayName = displayName;
+            this.fractionDigits = fractionDigits;
+            this.unknownSize = unknownSize;
+        }
+
+        public static Dialect of(String name)
+        {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (lower.equals("postgresql") || lower.equals("postgres") || lower.equals("pg")) return POSTGRESQL;
+            if (lower.equals("sqlserver") || lower.equals("mssql")) return SQLSERVER;
+            if (lower.equals("mysql") || lower.equals("mariadb")) return MYSQL;
+            throw new IllegalArgumentException("Unknown dialect: " + name + " (use postgresql, sqlserver or mysql)");
+        }
+    }
+
+    /**
+     * TYPE_NAME and COLUMN_SIZE a driver reports for a declared type
+     */
+    static final class DriverType
+    {
+        static final int FIXED = 0;     // always the same size
+        static final int DECLARED = 1;  // the declared length or precision, else the default size
+        static final int FRACTION = 2;  // length of a time value text with the declared second fraction digits
+
+        final String name;
+        final int kind;
+        final int size;
+        final int maxSize;
+
+        DriverType(String name, int kind, int size, int maxSize)
+        {
+            this.name = name;
+            this.kind = kind;
+            this.size = size;
+            this.maxSize = maxSize;
+        }
+    }
+
+    private static final Map<String, DriverType> POSTGRESQL_TYPES = new HashMap<>();
+    private static final Map<String, DriverType> SQLSERVER_TYPES = new HashMap<>();
+    private static final Map<String, DriverType> MYSQL_TYPES = new HashMap<>();
+
+    static
+    {
+        // pg_dump writes SQL standard names; pgJDBC reports pg_type names and display sizes
+        Map<String, DriverType> pg = POSTGRESQL_TYPES;
+        type(pg, "smallint|int2", "int2", DriverType.FIXED, 5);
+        type(pg, "integer|int|int4", "int4", DriverType.FIXED, 10);
+        type(pg, "bigint|int8", "int8", DriverType.FIXED, 19);
+        type(pg, "smallserial|serial2", "smallserial", DriverType.FIXED, 5);
+        type(pg, "serial|serial4", "serial", DriverType.FIXED, 10);
+        type(pg, "bigserial|serial8", "bigserial", DriverType.FIXED, 19);
+        type(pg, "real|float4", "float4", DriverType.FIXED, 8);
+        type(pg, "double precision|float|float8", "float8", DriverType.FIXED, 17);
+        type(pg, "numeric|decimal", "numeric", DriverType.DECLARED, 0);
+        type(pg, "boolean|bool", "bool", DriverType.FIXED, 1);
+        type(pg, "character varying|varchar", "varchar", DriverType.DECLARED, Integer.MAX_VALUE);
+        type(pg, "character|char|bpchar", "bpchar", DriverType.DECLARED, 1);
+        type(pg, "text", "text", DriverType.FIXED, Integer.MAX_VALUE);
+        type(pg, "date", "date", DriverType.FIXED, 13);
+        type(pg, "time|time without time zone", "time", DriverType.FRACTION, 8);
+        type(pg, "time with time zone|timetz", "timetz", DriverType.FRACTION, 14);
+        type(pg, "timestamp|timestamp without time zone", "timestamp", DriverType.FRACTION, 22);
+        type(pg, "timestamp with time zone|timestamptz", "timestamptz", DriverType.FRACTION, 28);
+        type(pg, "interval", "interval", DriverType.FIXED, 49);
+        type(pg, "oid", "oid", DriverType.FIXED, 10);
+
+        // mssql-jdbc reports the sp_columns type names and precisions
+        Map<String, DriverType> ms = SQLSERVER_TYPES;
+        type(ms, "bigint", "bigint", DriverType.FIXED, 19);
+        type(ms, "int|integer", "int", DriverType.FIXED, 10);
+        type(ms, "smallint", "smallint", DriverType.FIXED, 5);
+        type(ms, "tinyint", "tinyint", DriverType.FIXED, 3);
+        type(ms, "bit", "bit", DriverType.FIXED, 1);
+        type(ms, "decimal|dec", "decimal", DriverType.DECLARED, 18);
+        type(ms, "numeric", "numeric", DriverType.DECLARED, 18);
+        type(ms, "money", "money", DriverType.FIXED, 19);
+        type(ms, "smallmoney", "smallmoney", DriverType.FIXED, 10);
+        type(ms, "float|double precision", "float", DriverType.FIXED, 53);
+        type(ms, "real", "real", DriverType.FIXED, 24);
+        type(ms, "date", "date", DriverType.FIXED, 10);
+        type(ms, "datetime", "datetime", DriverType.FIXED, 23);
+        type(ms, "smalldatetime", "smalldatetime", DriverType.FIXED, 16);
+        type(ms, "datetime2", "datetime2", DriverType.FRACTION, 19);
+        type(ms, "time", "time", DriverType.FRACTION, 8);
+        type(ms, "datetimeoffset", "datetimeoffset", DriverType.FRACTION, 26);
+        type(ms, "char|character", "char", DriverType.DECLARED, 1);
+        type(ms, "varchar|character varying", "varchar", DriverType.DECLARED, 1);
+        type(ms, "nchar", "nchar", DriverType.DECLARED, 1, 1073741823);
+        type(ms, "nvarchar", "nvarchar", DriverType.DECLARED, 1, 1073741823);
+        type(ms, "binary", "binary", DriverType.DECLARED, 1);
+        type(ms, "varbinary", "varbinary", DriverType.DECLARED, 1);
+        type(ms, "text", "text", DriverType.FIXED, Integer.MAX_VALUE);
+        type(ms, "ntext", "ntext", DriverType.FIXED, 1073741823);
+        type(ms, "image", "image", DriverType.FIXED, Integer.MAX_VALUE);
+        type(ms, "xml", "xml", DriverType.FIXED, 1073741823);
+        type(ms, "uniqueidentifier", "uniqueidentifier", DriverType.FIXED, 36);
+        type(ms, "sysname", "sysname", DriverType.FIXED, 128);
+        type(ms, "timestamp|rowversion", "timestamp", DriverType.FIXED, 8);
+
+        // MySQL Connector/J reports upper case names; TINYINT(1) is BIT
+        Map<String, DriverType> my = MYSQL_TYPES;
+        type(my, "tinyint", "TINYINT", DriverType.FIXED, 3);
+        type(my, "boolean|bool", "BIT", DriverType.FIXED, 1);
+        type(my, "bit", "BIT", DriverType.DECLARED, 1);
+        type(my, "smallint", "SMALLINT", DriverType.FIXED, 5);
+        type(my, "mediumint", "MEDIUMINT", DriverType.FIXED, 7);
+        type(my, "int|integer", "INT", DriverType.FIXED, 10);
+        type(my, "bigint", "BIGINT", DriverType.FIXED, 19);
+        type(my, "decimal|dec|numeric|fixed", "DECIMAL", DriverType.DECLARED, 10);
+        type(my, "float", "FLOAT", DriverType.FIXED, 12);
+        type(my, "double|double precision|real", "DOUBLE", DriverType.FIXED, 22);
+        type(my, "date", "DATE", DriverType.FIXED, 10);
+        type(my, "datetime", "DATETIME", DriverType.FRACTION, 19);
+        type(my, "timestamp", "TIMESTAMP", DriverType.FRACTION, 19);
+        type(my, "time", "TIME", DriverType.FRACTION, 8);
+        type(my, "year", "YEAR", DriverType.FIXED, 4);
+        type(my, "char", "CHAR", DriverType.DECLARED, 1);
+        type(my, "varchar", "VARCHAR", DriverType.DECLARED, 0);
+        type(my, "binary", "BINARY", DriverType.DECLARED, 1);
+        type(my, "varbinary", "VARBINARY", DriverType.DECLARED, 0);
+        type(my, "tinytext", "TINYTEXT", DriverType.FIXED, 255);
+        type(my, "text", "TEXT", DriverType.FIXED, 65535);
+        type(my, "mediumtext", "MEDIUMTEXT", DriverType.FIXED, 16777215);
+        type(my, "longtext", "LONGTEXT", DriverType.FIXED, Integer.MAX_VALUE);
+        type(my, "tinyblob", "TINYBLOB", DriverType.FIXED, 255);
+        type(my, "blob", "BLOB", DriverType.FIXED, 65535);
+        type(my, "mediumblob", "MEDIUMBLOB", DriverType.FIXED, 16777215);
+        type(my, "longblob", "LONGBLOB", DriverType.FIXED, Integer.MAX_VALUE);
+        type(my, "json", "JSON", DriverType.FIXED, 1073741824);
+        type(my, "enum", "ENUM", DriverType.DECLARED, 0);
+        type(my, "set", "SET", DriverType.DECLARED, 0);
+    }
+
+    private static void type(Map<String, DriverType> types, String declared, String name, int kind, int size)
+    {
+        type(types, declared, name, kind, size, Integer.MAX_VALUE);
+    }
+
+    private static void type(Map<String, DriverType> types, String declared, String name, int kind, int size, int maxSize)
+    {
+        DriverType type = new DriverType(name, kind, size, maxSize);
+        for (String alias : declared.split("\\|"))
+        {
+            types.put(alias, type);
+        }
+    }
+
+    /**
+     * Settle the dialect (most CREATE TABLE hints, PostgreSQL if none) and
+     * give every column the type name and size its driver would report
+     */
+    private void resolveTypes()
+    {
+        if (dialect == null)
+        {
+            dialect = Dialect.POSTGRESQL;
+            for (Dialect candidate : Dialect.values())
+            {
+                if (dialectHints[candidate.ordinal()] > dialectHints[dialect.ordinal()]) dialect = candidate;
+            }
+        }
+
+        Map<String, DriverType> types = dialect == Dialect.SQLSERVER ? SQLSERVER_TYPES
+            : dialect == Dialect.MYSQL ? MYSQL_TYPES : POSTGRESQL_TYPES;
+        for (Map<String, Table> tables : schemas.values())
+        {
+            for (Table table : tables.values())
+            {
+                for (Column column : table.columns)
+                {
+                    describe(column, types);
+                }
+            }
+        }
+    }
+
+    private void describe(Column column, Map<String, DriverType> types)
+    {
+        if (column.defaultValue != null && dialect != Dialect.SQLSERVER)
+        {
+            column.defaultValue = driverDefault(column.defaultValue);
+        }
+
+        String declared = column.type.toLowerCase(Locale.ROOT);
+        int declaredSize = column.size;
+
+        boolean array = dialect == Dialect.POSTGRESQL && declared.endsWith("[]");
+        if (array) declared = declared.substring(0, declared.indexOf("[]")).trim();
+
+        boolean unsigned = dialect == Dialect.MYSQL && declared.matches(".* (unsigned|zerofill).*");
+        if (dialect == Dialect.MYSQL) declared = declared.replaceAll(" (signed|unsigned|zerofill)", "");
+
+        // FLOAT(1..24) is single precision; MySQL TINYINT(1) is a boolean
+        if (dialect != Dialect.MYSQL && declared.equals("float") && declaredSize > 0 && declaredSize <= 24)
+        {
+            declared = "real";
+        }
+        if (dialect == Dialect.MYSQL && declared.equals("tinyint") && declaredSize == 1 && !unsigned)
+        {
+            declared = "boolean";
+        }
+
+        DriverType type = types.get(declared);
+        String name;
+        int size;
+        if (type == null)
+        {
+            name = dialect == Dialect.MYSQL ? declared.toUpperCase(Locale.ROOT) : column.type;
+            size = declaredSize >= 0 ? declaredSize : dialect.unknownSize;
+        }
+        else if (type.kind == DriverType.DECLARED)
+        {
+            name = type.name;
+            size = declaredSize == Integer.MAX_VALUE ? type.maxSize : declaredSize >= 0 ? declaredSize : type.size;
+        }
+        else if (type.kind == DriverType.FRACTION)
+        {
+            name = type.name;
+            int digits = declaredSize >= 0 ? declaredSize : dialect.fractionDigits;
+            size = digits == 0 ? type.size : type.size + 1 + digits;
+            // pgJDBC counts two digits for a precision of one
+            if (dialect == Dialect.POSTGRESQL && digits == 1) size++;
+        }
+        else
+        {
+            name = type.name;
+            size = type.size;
+        }
+
+        if (dialect == Dialect.POSTGRESQL)
+        {
+            // pgJDBC reports integer columns drawing from a sequence as serial types
+            if (column.defaultValue != null && column.defaultValue.contains("nextval("))
+            {
+                if (name.equals("int4")) name = "serial";
+                else if (name.equals("int8")) name = "bigserial";
+                else if (name.equals("int2")) name = "smallserial";
+            }
+            if (array)
+            {
+                name = "_" + name;
+                size = Integer.MAX_VALUE;
+            }
+        }
+        else if (dialect == Dialect.SQLSERVER && column.identity)
+        {
+            name += " identity";
+        }
+        else if (unsigned)
+        {
+            name += " UNSIGNED";
+            if (name.startsWith("BIGINT")) size = 20;
+            else if (name.startsWith("MEDIUMINT")) size = 8;
+        }
+
+        column.typeName = name;
+        column.columnSize = size;
+    }
+
+    /**
+     * The default as the driver reports it. PostgreSQL and MySQL keep no
+     * default for DEFAULT NULL; MySQL reports a literal without its quotes
+     * (DEFAULT '0' -> 0, 'it''s' -> it's).
+     */
+    private String driverDefault(String value)
+    {
+        if (value.equalsIgnoreCase("NULL")) return null;
+        if (dialect != Dialect.MYSQL || value.length() < 2 || value.charAt(0) != '\''
+            || value.charAt(value.length() - 1) != '\'')
+        {
+            return value;
+        }
+
+        StringBuilder literal = new StringBuilder(value.length());
+        for (int i = 1; i < value.length() - 1; i++)
+        {
+            char c = value.charAt(i);
+            if (c == '\'')
+            {
+                // a quote inside must be doubled, else this is not one literal ('a' 'b')
+                if (value.charAt(i + 1) != '\'' || i + 1 == value.length() - 1) return value;
+                i++;
+            }
+            else if (c == '\\' && i + 1 < value.length() - 1)
+            {
+                c = value.charAt(++i);
+                if (c == 'n') c = '\n';
+                else if (c == 'r') c = '\r';
+                else if (c == 't') c = '\t';
+                else if (c == '0') c = '\0';
+            }
+            literal.append(c);
+        }
+        return literal.toString();
+    }
+
+    // ------------------------------------------------------------------
+    // Read-only JDBC view for StandaloneMendixExporter
+    // ------------------------------------------------------------------
+
+    /**
+     * A connection whose DatabaseMetaData answers from the parsed scripts
+     */
+    public Connection connection()
+    {
+        final DatabaseMetaData metaData = (DatabaseMetaData) Proxy.newProxyInstance(
+            DatabaseMetaData.class.getClassLoader(), new Class<?>[] {DatabaseMetaData.class}, new InvocationHandler()
+            {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws SQLException
+                {
+                    return answer(method.getName(), args);
+                }
+            });
+
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(), new Class<?>[] {Connection.class}, new InvocationHandler()
+            {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args)
+                {
+                    String name = method.getName();
+                    if ("getCatalog".equals(name)) return catalogName;
+                    if ("getMetaData".equals(name)) return metaData;
+                    if ("isClosed".equals(name)) return Boolean.FALSE;
+                    if ("isReadOnly".equals(name)) return Boolean.TRUE;
+                    if ("close".equals(name)) return null;
+                    throw new UnsupportedOperationException("Connection." + name + " is not available for DDL scripts");
+                }
+            });
+    }
+
+    private Object answer(String method, Object[] args) throws SQLException
+    {
+        if ("getDatabaseProductName".equals(method)) return "DDL script";
+        if ("getSearchStringEscape".equals(method)) return "\\";
+        if ("getIdentifierQuoteString".equals(method)) return "\"";
+
+        if ("getSchemas".equals(method))
+        {
+            List<Object[]> rows = new ArrayList<>();
+            for (String schema : schemas.keySet())
+            {
+                rows.add(new Object[] {schema, catalogName});
+            }
+            return MetadataRows.resultSet(MetadataRows.SCHEMA_LABELS, rows);
+        }
+
+        if ("getTables".equals(method))
+        {
+            List<Object[]> rows = new ArrayList<>();
+            for (Table table : matching((String) args[1], (String) args[2]))
+            {
+                rows.add(new Object[] {catalogName, table.schema, table.name, "TABLE", table.remarks});
+            }
+            return MetadataRows.resultSet(MetadataRows.TABLE_LABELS, rows);
+        }
+
+        if ("getColumns".equals(method))
+        {
+            List<Object[]> rows = new ArrayList<>();
+            for (Table table : matching((String) args[1], (String) args[2]))
+            {
+                int position = 0;
+                for (Column column : table.columns)
+                {
+                    position++;
+                    if (!MetadataRows.like(column.name, (String) args[3])) continue;
+                    rows.add(new Object[] {table.schema, table.name, column.name, column.typeName, column.columnSize,
+                        column.nullable ? "YES" : "NO", column.remarks, column.defaultValue, position});
+                }
+            }
+            return MetadataRows.resultSet(MetadataRows.COLUMN_LABELS, rows);
+        }
+
+        if ("getPrimaryKeys".equals(method))
+        {
+            List<Object[]> rows = new ArrayList<>();
+            Table table = table((String) args[1], (String) args[2]);
+            if (table != null)
+            {
+                for (int i = 0; i < table.primaryKey.size(); i++)
+                {
+                    rows.add(new Object[] {table.schema, table.name, table.primaryKey.get(i), i + 1, table.primaryKeyName});
+                }
+            }
+            return MetadataRows.resultSet(MetadataRows.PK_LABELS, rows);
+        }
+
+        if ("getImportedKeys".equals(method))
+        {
+            List<Object[]> rows = new ArrayList<>();
+            Table table = table((String) args[1], (String) args[2]);
+            if (table != null)
+            {
+                for (ForeignKey fk : table.foreignKeys)
+                {
+                    for (int i = 0; i < fk.columns.size(); i++)
+                    {
+                        String targetColumn = i < fk.targetColumns.size() ? fk.targetColumns.get(i) : null;
+                        rows.add(new Object[] {fk.targetSchema, fk.targetTable, targetColumn,
+                            table.schema, table.name, fk.columns.get(i), i + 1, fk.name});
+                    }
+                }
+
+                // JDBC orders imported keys by the referenced table and key sequence
+                Collections.sort(rows, new Comparator<Object[]>()
+                {
+                    @Override
+                    public int compare(Object[] a, Object[] b)
+                    {
+                        int c = String.valueOf(a[0]).compareTo(String.valueOf(b[0]));
+                        if (c == 0) c = String.valueOf(a[1]).compareTo(String.valueOf(b[1]));
+                        if (c == 0) c = (Integer) a[6] - (Integer) b[6];
+                        return c;
+                    }
+                });
+            }
+            return MetadataRows.resultSet(MetadataRows.FK_LABELS, rows);
+        }
+
+        if ("getIndexInfo".equals(method))
+        {
+            List<Object[]> rows = new ArrayList<>();
+            Table table = table((String) args[1], (String) args[2]);
+            boolean uniqueOnly = Boolean.TRUE.equals(args[3]);
+            if (table != null)
+            {
+                for (Index index : table.indexes)
+                {
+                    if (uniqueOnly && !index.unique) continue;
+                    for (int i = 0; i < index.columns.size(); i++)
+                    {
+                        rows.add(new Object[] {table.schema, table.name, !index.unique, index.name,
+                            (int) DatabaseMetaData.tableIndexOther, i + 1, index.columns.get(i), null});
+                    }
+                }
+            }
+            return MetadataRows.resultSet(MetadataRows.INDEX_LABELS, rows);
+        }
+
+        throw new SQLException("DatabaseMetaData." + method + " is not available for DDL scripts");
+    }
+
+    /**
+     * Tables whose schema and name match the given JDBC search patterns (null matches all)
+     */
+    private List<Table> matching(String schemaPattern, String tablePattern)
+    {
+        List<Table> result = new ArrayList<>();
+
+        // The exporter asks for one table at a time: look it up directly
+        if (schemaPattern != null && tablePattern != null && !hasWildcard(schemaPattern) && !hasWildcard(tablePattern))
+        {
+            Map<String, Table> tables = schemas.get(unescape(schemaPattern));
+            Table table = tables != null ? tables.get(unescape(tablePattern)) : null;
+            if (table != null) result.add(table);
+            return result;
+        }
+        for (Map.Entry<String, Map<String, Table>> schema : schemas.entrySet())
+        {
+            if (!MetadataRows.like(schema.getKey(), schemaPattern)) continue;
+
+            for (Table table : schema.getValue().values())
+            {
+                if (MetadataRows.like(table.name, tablePattern))
+                {
+                    result.add(table);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean hasWildcard(String pattern)
+    {
+        for (int i = 0; i < pattern.length(); i++)
+        {
+            char c = pattern.charAt(i);
+            if (c == '\\') i++;
+            else if (c == '%' || c == '_') return true;
+        }
+        return false;
+    }
+
+    private static String unescape(String pattern)
+    {
+        return pattern.indexOf('\\') < 0 ? pattern : pattern.replaceAll("\\\\(.)", "$1");
+    }
+}
@@ -0,0 +1,306 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a SQL script into statements while reading it, without loading the
+ * whole file.
+ *
+ * Statements end at ';' or at a SQL Server batch separator (GO on its own line).
+ * Semicolons inside string literals, quoted identifiers ("x", [x], `x`),
+ * comments (--, nested block comments) and PostgreSQL dollar quotes ($$...$$,
+ * $tag$...$tag$) are ignored. Comments are replaced by a space.
+ *
+ * Only statements that can contribute to a catalog are passed on (CREATE TABLE,
+ * ALTER TABLE, CREATE INDEX, COMMENT ON, sp_addextendedproperty); the text of
+ * other statements, e.g. function bodies, is not kept.
+ *
+ * @author CaseTalk Integration
+ * @version 1.0
+ */
+public class DdlScriptSplitter
+{
+    private static final int PREFIX_LENGTH = 96;
+
+    private static final Pattern RELEVANT = Pattern.compile(
+        "(?i)\\s*(CREATE\\s+(\\w+\\s+){0,3}TABLE\\b|ALTER\\s+TABLE\\b"
+        + "|CREATE\\s+(UNIQUE\\s+)?((NON)?CLUSTERED\\s+)?INDEX\\b|COMMENT\\s+ON\\b"
+        + "|EXEC(UTE)?\\s+(\\[?\\w+\\]?\\.)*\\[?sp_addextendedproperty\\b)");
+
+    /**
+     * Receives the statements in script order
+     */
+    public interface StatementHandler
+    {
+        void statement(String sql) throws IOException;
+    }
+
+    private static final int NORMAL = 0;
+    private static final int STRING = 1;
+    private static final int QUOTED = 2;
+    private static final int BRACKET = 3;
+    private static final int BACKTICK = 4;
+    private static final int LINE_COMMENT = 5;
+    private static final int BLOCK_COMMENT = 6;
+    private static final int DOLLAR = 7;
+
+    private final StatementHandler handler;
+    private final StringBuilder statement = new StringBuilder(1024);
+    private boolean discard;
+
+    // Current line in NORMAL state, to detect GO (only a few characters are needed)
+    private final StringBuilder line = new StringBuilder(8);
+    private boolean lineOther;
+
+    private int state = NORMAL;
+    private int commentDepth;
+    private String dollarTag;
+    private int dollarMatch;
+    private char previous;
+
+    public DdlScriptSplitter(StatementHandler handler)
+    {
+        this.handler = handler;
+    }
+
+    /**
+     * Split a complete script
+     */
+    public static void split(Reader reader, StatementHandler handler) throws IOException
+    {
+        DdlScriptSplitter splitter = new DdlScriptSplitter(handler);
+        char[] buffer = new char[1 << 16];
+        int n;
+        while ((n = reader.read(buffer)) > 0)
+        {
+            splitter.feed(buffer, n);
+        }
+        splitter.finish();
+    }
+
+    /**
+     * Process the next part of the script
+     */
+    public void feed(char[] chars, int length) throws IOException
+    {
+        for (int i = 0; i < length; i++)
+        {
+            char c = chars[i];
+            char next = i + 1 < length ? chars[i + 1] : 0;
+
+            switch (state)
+            {
+                case NORMAL:
+                    i += normal(c, next, chars, i, length);
+                    break;
+
+                case STRING:
+                    append(c);
+                    if (c == '\'') state = NORMAL; // '' is read as two adjacent literals, which is fine for splitting
+                    break;
+
+                case QUOTED:
+                    append(c);
+                    if (c == '"') state = NORMAL;
+                    break;
+
+                case BRACKET:
+                    append(c);
+                    if (c == ']') state = NORMAL;
+                    break;
+
+                case BACKTICK:
+                    append(c);
+                    if (c == '`') state = NORMAL;
+                    break;
+
+                case LINE_COMMENT:
+                    if (c == '\n')
+                    {
+                        state = NORMAL;
+                        newline();
+                    }
+                    break;
+
+                case BLOCK_COMMENT:
+                    if (c == '/' && next == '*')
+                    {
+                        commentDepth++;
+                        i++;
+                    }
+                    else if (c == '*' && next == '/')
+                    {
+                        i++;
+                        if (--commentDepth == 0) state = NORMAL;
+                    }
+                    break;
+
+                case DOLLAR:
+                    append(c);
+                    // The tag has no inner '$', so a mismatch can only restart at a '$'
+                    if (c == dollarTag.charAt(dollarMatch))
+                    {
+                        if (++dollarMatch == dollarTag.length()) state = NORMAL;
+                    }
+                    else
+                    {
+                        dollarMatch = c == '$' ? 1 : 0;
+                    }
+                    break;
+
+                default:
+                    break;
+            }
+
+            previous = c;
+        }
+    }
+
+    /**
+     * Handle a character outside quotes and comments; returns the number of
+     * extra characters consumed
+     */
+    private int normal(char c, char next, char[] chars, int i, int length) throws IOException
+    {
+        switch (c)
+        {
+            case ';':
+                end();
+                return 0;
+
+            case '\'':
+                state = STRING;
+                break;
+
+            case '"':
+                state = QUOTED;
+                break;
+
+            case '[':
+                // PostgreSQL array types ("integer[]") are not SQL Server identifiers
+                if (next != ']') state = BRACKET;
+                break;
+
+            case '`':
+                state = BACKTICK;
+                break;
+
+            case '-':
+                if (next == '-')
+                {
+                    state = LINE_COMMENT;
+                    append(' ');
+                    return 1;
+                }
+                break;
+
+            case '/':
+                if (next == '*')
+                {
+                    state = BLOCK_COMMENT;
+                    commentDepth = 1;
+                    append(' ');
+                    return 1;
+                }
+                break;
+
+            case '$':
+            {
+                // A dollar quote cannot follow an identifier character (Mendix names contain '$')
+                if (isIdentifierPart(previous)) break;
+
+                int end = i + 1;
+                while (end < length && isIdentifierPart(chars[end]) && chars[end] != '$') end++;
+                if (end < length && chars[end] == '$' && (end == i + 1 || !Character.isDigit(chars[i + 1])))
+                {
+                    dollarTag = new String(chars, i, end - i + 1);
+                    dollarMatch = 0;
+                    state = DOLLAR;
+                    statement(dollarTag);
+                    return end - i;
+                }
+                break;
+            }
+
+            case '\n':
+                newline();
+                append(c);
+                return 0;
+
+            default:
+                break;
+        }
+
+        if (!Character.isWhitespace(c))
+        {
+            if (line.length() < 4) line.append(c); else lineOther = true;
+        }
+        append(c);
+        return 0;
+    }
+
+    /**
+     * End of a line in NORMAL state: a line with only GO ends the statement (batch)
+     */
+    private void newline() throws IOException
+    {
+        if (!lineOther && line.length() == 2 && (line.charAt(0) == 'G' || line.charAt(0) == 'g')
+            && (line.charAt(1) == 'O' || line.charAt(1) == 'o'))
+        {
+            // Drop the GO itself from the statement text
+            int trim = statement.length();
+            while (trim > 0 && Character.isWhitespace(statement.charAt(trim - 1))) trim--;
+            if (!discard && trim >= 2) statement.setLength(trim - 2);
+            end();
+        }
+        line.setLength(0);
+        lineOther = false;
+    }
+
+    private static boolean isIdentifierPart(char c)
+    {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private void statement(String text)
+    {
+        for (int k = 0; k < text.length(); k++) append(text.charAt(k));
+    }
+
+    private void append(char c)
+    {
+        if (discard) return;
+
+        // Leading blank lines and comments must not use up the prefix
+        if (statement.length() == 0 && Character.isWhitespace(c)) return;
+
+        statement.append(c);
+        if (statement.length() == PREFIX_LENGTH && !RELEVANT.matcher(statement).lookingAt())
+        {
+            // Not a statement we parse: stop collecting its text
+            discard = true;
+        }
+    }
+
+    private void end() throws IOException
+    {
+        // Statements of PREFIX_LENGTH or more were already checked by append()
+        if (!discard && (statement.length() >= PREFIX_LENGTH || RELEVANT.matcher(statement).lookingAt()))
+        {
+            handler.statement(statement.toString().trim());
+        }
+        statement.setLength(0);
+        discard = false;
+        line.setLength(0);
+        lineOther = false;
+    }
+
+    /**
+     * End of the script: pass on a last statement without terminator
+     */
+    public void finish() throws IOException
+    {
+        if (state == NORMAL) newline();
+        end();
+    }
+}
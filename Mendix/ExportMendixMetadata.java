@@ -1,22 +1,31 @@
 // BEGIN EXTRA CODE
 package mendix.actions;
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import com.mendix.core.Core;
 import com.mendix.systemwideinterfaces.core.IContext;
 import com.mendix.webui.CustomJavaAction;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
 
 /**
@@ -29,6 +38,55 @@ import org.json.JSONObject;
  */
 public class ExportMendixMetadata extends CustomJavaAction<String>
 {
+    // Set-based index queries per dialect: schema parameter; returns
+    // table, index, unique (0/1), constraint (0/1), column, position.
+    // Primary key, partial and expression indexes are left out.
+    // Copies of the IndexExtractor queries; MetadataBudgetCheck compares them.
+    private static final String INDEXES_POSTGRESQL =
+        "SELECT t.relname, i.relname, CASE WHEN x.indisunique THEN 1 ELSE 0 END,"
+        + " CASE WHEN c.conname IS NULL THEN 0 ELSE 1 END, a.attname, k.n"
+        + " FROM pg_catalog.pg_index x"
+        + " JOIN pg_catalog.pg_class t ON t.oid = x.indrelid"
+        + " JOIN pg_catalog.pg_class i ON i.oid = x.indexrelid"
+        + " JOIN pg_catalog.pg_namespace ns ON ns.oid = t.relnamespace"
+        + " CROSS JOIN LATERAL generate_series(1, x.indnkeyatts) AS k(n)"
+        + " JOIN pg_catalog.pg_attribute a ON a.attrelid = t.oid AND a.attnum = x.indkey[k.n - 1]"
+        + " LEFT JOIN pg_catalog.pg_constraint c ON c.conindid = x.indexrelid AND c.contype = 'u'"
+        + " WHERE ns.nspname = ? AND t.relkind IN ('r', 'p') AND NOT x.indisprimary"
+        + " AND x.indpred IS NULL AND x.indexprs IS NULL"
+        + " ORDER BY 1, 2, 6";
+
+    private static final String INDEXES_SQLSERVER =
+        "SELECT t.name, i.name, CAST(i.is_unique AS int), CAST(i.is_unique_constraint AS int), c.name, ic.key_ordinal"
+        + " FROM sys.indexes i"
+        + " JOIN sys.tables t ON t.object_id = i.object_id"
+        + " JOIN sys.index_columns ic ON ic.object_id = i.object_id AND ic.index_id = i.index_id"
+        + " JOIN sys.columns c ON c.object_id = ic.object_id AND c.column_id = ic.column_id"
+        + " WHERE SCHEMA_NAME(t.schema_id) = ? AND i.is_primary_key = 0 AND i.type > 0"
+        + " AND i.is_hypothetical = 0 AND i.has_filter = 0 AND ic.key_ordinal > 0"
+        + " ORDER BY 1, 2, 6";
+
+    private static final String INDEXES_MYSQL =
+        "SELECT s.TABLE_NAME, s.INDEX_NAME, CASE WHEN s.NON_UNIQUE = 0 THEN 1 ELSE 0 END,"
+        + " CASE WHEN s.NON_UNIQUE = 0 THEN 1 ELSE 0 END,"
+        + " CASE WHEN s.SUB_PART IS NULL THEN s.COLUMN_NAME END, s.SEQ_IN_INDEX"
+        + " FROM information_schema.STATISTICS s"
+        + " WHERE s.TABLE_SCHEMA = COALESCE((SELECT SCHEMA_NAME FROM information_schema.SCHEMATA"
+        + " WHERE SCHEMA_NAME = ?), DATABASE())"
+        + " AND s.INDEX_NAME <> 'PRIMARY'"
+        + " ORDER BY 1, 2, 6";
+
+    private static final String INDEXES_ORACLE =
+        "SELECT i.TABLE_NAME, i.INDEX_NAME, CASE WHEN i.UNIQUENESS = 'UNIQUE' THEN 1 ELSE 0 END,"
+        + " CASE WHEN c.CONSTRAINT_TYPE = 'U' THEN 1 ELSE 0 END, ic.COLUMN_NAME, ic.COLUMN_POSITION"
+        + " FROM ALL_INDEXES i"
+        + " JOIN ALL_IND_COLUMNS ic ON ic.INDEX_OWNER = i.OWNER AND ic.INDEX_NAME = i.INDEX_NAME"
+        + " LEFT JOIN ALL_CONSTRAINTS c ON c.OWNER = i.TABLE_OWNER AND c.TABLE_NAME = i.TABLE_NAME"
+        + " AND c.INDEX_NAME = i.INDEX_NAME AND c.CONSTRAINT_TYPE IN ('P', 'U')"
+        + " WHERE i.TABLE_OWNER = ? AND i.INDEX_TYPE IN ('NORMAL', 'BITMAP')"
+        + " AND (c.CONSTRAINT_TYPE IS NULL OR c.CONSTRAINT_TYPE = 'U')"
+        + " ORDER BY 1, 2, 6";
+
     private String outputPath;
     private Boolean includeSystemTables;
 
@@ -46,7 +104,7 @@ public class ExportMendixMetadata extends CustomJavaAction<String>
         {
             // ✅ FIXED: Use Core.dataStorage().executeWithConnection() - the CORRECT Mendix API
             // Source: https://apidocs.rnd.mendix.com/7/runtime/com/mendix/datastorage/DataStorage.html
-            JSONObject jcatalog = Core.dataStorage().executeWithConnection(getContext(), connection -> {
+            CatalogData jcatalog = Core.dataStorage().executeWithConnection(getContext(), connection -> {
                 try {
                     return generateJCatalog(connection);
                 } catch (SQLException e) {
@@ -60,10 +118,9 @@ public class ExportMendixMetadata extends CustomJavaAction<String>
                 filePath = "mendix_metadata.jcatalog";
             }
 
-            try (FileWriter file = new FileWriter(filePath))
+            try (Writer file = new BufferedWriter(new FileWriter(filePath)))
             {
-                file.write(jcatalog.toString(4)); // Pretty print with 4-space indent
-                file.flush();
+                writeJCatalog(file, jcatalog); // Pretty print with 4-space indent
             }
 
             return "Successfully exported metadata to: " + filePath;
@@ -77,30 +134,23 @@ public class ExportMendixMetadata extends CustomJavaAction<String>
     }
 
     /**
-     * Generate the jcatalog JSON structure from database metadata
+     * Generate the compact catalog model from database metadata
      */
-    private JSONObject generateJCatalog(Connection conn) throws SQLException
+    private CatalogData generateJCatalog(Connection conn) throws SQLException
     {
         DatabaseMetaData metaData = conn.getMetaData();
 
-        JSONObject root = new JSONObject();
-        JSONObject connection = new JSONObject();
-        JSONArray catalogs = new JSONArray();
-
         // Get catalog name
         String catalogName = conn.getCatalog();
         if (catalogName == null || catalogName.isEmpty()) {
             catalogName = "mendix";
         }
 
-        JSONObject catalog = new JSONObject();
-        catalog.put("name", catalogName);
-
-        JSONArray schemas = new JSONArray();
+        CatalogData catalog = new CatalogData(catalogName);
 
         // Get all schemas
         ResultSet schemaRs = metaData.getSchemas();
-        Map<String, List<String>> schemaTableMap = new HashMap<>();
+        Map<String, List<String>> schemaTableMap = new TreeMap<>(); // Sorted: stable schema order
 
         try
         {
@@ -129,10 +179,10 @@ public class ExportMendixMetadata extends CustomJavaAction<String>
         // Get all tables for each schema
         for (String schemaName : schemaTableMap.keySet())
         {
-            JSONObject schema = new JSONObject();
-            schema.put("name", schemaName);
+            List<TableData> tables = new ArrayList<>();
 
-            JSONArray tables = new JSONArray();
+            // Indexes of the whole schema in one query; null means read them per table
+            Map<String, List<KeyData>> schemaIndexes = getSchemaIndexes(catalog.symbols, conn, schemaName);
 
             // Get tables in this schema
             ResultSet tableRs = metaData.getTables(catalogName, schemaName, "%", new String[] {"TABLE"});
@@ -148,32 +198,27 @@ public class ExportMendixMetadata extends CustomJavaAction<String>
                         continue;
                     }
 
-                    JSONObject table = new JSONObject();
-                    table.put("name", tableName);
-
-                    // Get columns for this table
-                    JSONArray columns = getTableColumns(metaData, catalogName, schemaName, tableName);
-                    table.put("columns", columns);
-
-                    // Get primary key for this table
-                    JSONObject primaryKey = getTablePrimaryKey(metaData, catalogName, schemaName, tableName);
-                    if (primaryKey != null && primaryKey.has("columns")) {
-                        table.put("primarykey", primaryKey);
-                    }
-
-                    // Get foreign keys (optional - as annotations)
-                    JSONArray foreignKeys = getTableForeignKeys(metaData, catalogName, schemaName, tableName);
-                    if (foreignKeys.length() > 0) {
-                        table.put("foreignkeys", foreignKeys);
+                    TableData table = new TableData(tableName);
+
+                    // Get columns, primary key and foreign keys for this table
+                    getTableColumns(catalog.symbols, table, metaData, catalogName, schemaName);
+                    getTablePrimaryKey(catalog.symbols, table, metaData, catalogName, schemaName);
+                    getTableForeignKeys(catalog.symbols, table, metaData, catalogName, schemaName);
+                    if (schemaIndexes != null) {
+                        List<KeyData> indexes = schemaIndexes.get(tableName);
+                        if (indexes != null) table.indexes.addAll(indexes);
+                    } else {
+                        getTableIndexes(catalog.symbols, table, metaData, catalogName, schemaName);
                     }
+                    table.dropPrimaryKeyIndex();
 
                     // Get table comment/annotation if available
                     String remarks = tableRs.getString("REMARKS");
                     if (remarks != null && !remarks.isEmpty()) {
-                        table.put("annotation", remarks);
+                        table.annotation = remarks;
                     }
 
-                    tables.put(table);
+                    tables.add(table);
                 }
             }
             finally
@@ -182,121 +227,85 @@ public class ExportMendixMetadata extends CustomJavaAction<String>
             }
 
             // Only add schema if it has tables
-            if (tables.length() > 0) {
-                schema.put("tables", tables);
-                schemas.put(schema);
+            if (!tables.isEmpty()) {
+                catalog.schemaNames.add(schemaName);
+                catalog.schemaTables.add(tables);
             }
         }
 
-        catalog.put("schemas", schemas);
-        catalogs.put(catalog);
-
-        connection.put("catalogs", catalogs);
-        root.put("connection", connection);
-
-        return root;
+        return catalog;
     }
 
     /**
      * Get all columns for a table
      */
-    private JSONArray getTableColumns(DatabaseMetaData metaData, String catalog,
-                                      String schema, String tableName) throws SQLException
+    private void getTableColumns(SymbolTable symbols, TableData table, DatabaseMetaData metaData,
+                                 String catalog, String schema) throws SQLException
     {
-        JSONArray columns = new JSONArray();
-
-        ResultSet columnRs = metaData.getColumns(catalog, schema, tableName, "%");
+        ResultSet columnRs = metaData.getColumns(catalog, schema, table.name, "%");
 
         try
         {
             while (columnRs.next())
             {
-                JSONObject column = new JSONObject();
-                String columnName = columnRs.getString("COLUMN_NAME");
-                column.put("name", columnName);
+                int i = table.addColumn();
+                table.columnNames[i] = symbols.intern(columnRs.getString("COLUMN_NAME"));
 
                 // Optional: Add data type information as annotation
-                String dataType = columnRs.getString("TYPE_NAME");
-                int columnSize = columnRs.getInt("COLUMN_SIZE");
-                String nullable = columnRs.getString("IS_NULLABLE");
-                String remarks = columnRs.getString("REMARKS");
-
-                JSONObject metadata = new JSONObject();
-                metadata.put("type", dataType);
-                metadata.put("size", columnSize);
-                metadata.put("nullable", "YES".equalsIgnoreCase(nullable));
+                table.columnTypes[i] = symbols.intern(columnRs.getString("TYPE_NAME"));
+                table.columnSizes[i] = columnRs.getInt("COLUMN_SIZE");
+                table.columnNullable[i] = "YES".equalsIgnoreCase(columnRs.getString("IS_NULLABLE"));
 
+                String remarks = columnRs.getString("REMARKS");
                 if (remarks != null && !remarks.isEmpty()) {
-                    metadata.put("annotation", remarks);
+                    table.columnExtras(i)[0] = remarks;
                 }
 
                 // Add default value if exists
                 String defaultValue = columnRs.getString("COLUMN_DEF");
                 if (defaultValue != null && !defaultValue.isEmpty()) {
-                    metadata.put("default", defaultValue);
+                    table.columnExtras(i)[1] = defaultValue;
                 }
-
-                column.put("metadata", metadata);
-
-                columns.put(column);
             }
         }
         finally
         {
             columnRs.close();
         }
-
-        return columns;
     }
 
     /**
      * Get primary key for a table
      */
-    private JSONObject getTablePrimaryKey(DatabaseMetaData metaData, String catalog,
-                                          String schema, String tableName) throws SQLException
+    private void getTablePrimaryKey(SymbolTable symbols, TableData table, DatabaseMetaData metaData,
+                                    String catalog, String schema) throws SQLException
     {
-        JSONObject primaryKey = null;
-        JSONArray pkColumns = new JSONArray();
-
-        ResultSet pkRs = metaData.getPrimaryKeys(catalog, schema, tableName);
+        ResultSet pkRs = metaData.getPrimaryKeys(catalog, schema, table.name);
 
         try
         {
             while (pkRs.next())
             {
-                JSONObject pkColumn = new JSONObject();
-                pkColumn.put("column", pkRs.getString("COLUMN_NAME"));
-                pkColumn.put("position", String.valueOf(pkRs.getInt("KEY_SEQ")));
-                pkColumns.put(pkColumn);
+                table.primaryKey = KeyData.append(table.primaryKey, null,
+                    symbols.intern(pkRs.getString("COLUMN_NAME")), -1, pkRs.getInt("KEY_SEQ"));
             }
         }
         finally
         {
             pkRs.close();
         }
-
-        if (pkColumns.length() > 0) {
-            primaryKey = new JSONObject();
-            primaryKey.put("columns", pkColumns);
-        }
-
-        return primaryKey;
     }
 
     /**
      * Get foreign keys for a table
      */
-    private JSONArray getTableForeignKeys(DatabaseMetaData metaData, String catalog,
-                                          String schema, String tableName) throws SQLException
+    private void getTableForeignKeys(SymbolTable symbols, TableData table, DatabaseMetaData metaData,
+                                     String catalog, String schema) throws SQLException
     {
-        JSONArray foreignKeys = new JSONArray();
-
-        ResultSet fkRs = metaData.getImportedKeys(catalog, schema, tableName);
+        ResultSet fkRs = metaData.getImportedKeys(catalog, schema, table.name);
 
         try
         {
-            Map<String, JSONObject> fkMap = new HashMap<>();
-
             while (fkRs.next())
             {
                 String fkName = fkRs.getString("FK_NAME");
@@ -305,34 +314,461 @@ public class ExportMendixMetadata extends CustomJavaAction<String>
                     fkName = "FK_" + fkRs.getString("FKCOLUMN_NAME");
                 }
 
-                JSONObject fk = fkMap.get(fkName);
+                KeyData fk = null;
+                for (KeyData candidate : table.foreignKeys) {
+                    if (candidate.name.equals(fkName)) {
+                        fk = candidate;
+                        break;
+                    }
+                }
+
                 if (fk == null) {
-                    fk = new JSONObject();
-                    fk.put("name", fkName);
-                    fk.put("referencedTable", fkRs.getString("PKTABLE_NAME"));
-                    fk.put("referencedSchema", fkRs.getString("PKTABLE_SCHEM"));
-                    fk.put("columns", new JSONArray());
-                    fkMap.put(fkName, fk);
+                    fk = new KeyData(fkName);
+                    fk.referencedTable = symbols.intern(fkRs.getString("PKTABLE_NAME"));
+                    fk.referencedSchema = symbols.intern(fkRs.getString("PKTABLE_SCHEM"));
+                    table.foreignKeys.add(fk);
                 }
 
-                JSONObject fkColumn = new JSONObject();
-                fkColumn.put("column", fkRs.getString("FKCOLUMN_NAME"));
-                fkColumn.put("referencedColumn", fkRs.getString("PKCOLUMN_NAME"));
-                fkColumn.put("position", String.valueOf(fkRs.getInt("KEY_SEQ")));
+                KeyData.append(fk, fkName,
+                    symbols.intern(fkRs.getString("FKCOLUMN_NAME")),
+                    symbols.intern(fkRs.getString("PKCOLUMN_NAME")),
+                    fkRs.getInt("KEY_SEQ"));
+            }
+        }
+        finally
+        {
+            fkRs.close();
+        }
+    }
+
+    /**
+     * Get the indexes of all tables in a schema with one set-based query on the
+     * system catalog. Returns null when the database has no such query or it
+     * fails; the indexes are then read per table.
+     */
+    private Map<String, List<KeyData>> getSchemaIndexes(SymbolTable symbols, Connection conn, String schema)
+    {
+        try
+        {
+            String product = conn.getMetaData().getDatabaseProductName();
+            product = product == null ? "" : product.toLowerCase(Locale.ROOT);
+
+            String sql = null;
+            if (product.contains("postgresql")) sql = INDEXES_POSTGRESQL;
+            else if (product.contains("microsoft sql server")) sql = INDEXES_SQLSERVER;
+            else if (product.contains("mysql") || product.contains("mariadb")) sql = INDEXES_MYSQL;
+            else if (product.contains("oracle")) sql = INDEXES_ORACLE;
+            if (sql == null) {
+                return null;
+            }
+
+            // The action runs inside the Mendix transaction: a failed query must not abort it
+            Savepoint savepoint = conn.getAutoCommit() ? null : conn.setSavepoint();
+            try
+            {
+                Map<String, List<KeyData>> result = new HashMap<>();
+                try (PreparedStatement statement = conn.prepareStatement(sql))
+                {
+                    statement.setFetchSize(1000);
+                    statement.setString(1, schema);
+
+                    try (ResultSet rs = statement.executeQuery())
+                    {
+                        while (rs.next())
+                        {
+                            List<KeyData> indexes = result.get(rs.getString(1));
+                            if (indexes == null) {
+                                indexes = new ArrayList<>(2);
+                                result.put(rs.getString(1), indexes);
+                            }
+
+                            String indexName = rs.getString(2);
+                            KeyData index = indexes.isEmpty() ? null : indexes.get(indexes.size() - 1);
+                            if (index == null || !index.name.equals(indexName)) {
+                                index = new KeyData(indexName);
+                                index.unique = rs.getInt(3) != 0;
+                                index.constraint = rs.getInt(4) != 0;
+                                indexes.add(index);
+                            }
+                            KeyData.append(index, indexName, symbols.intern(rs.getString(5)), -1, rs.getInt(6));
+                        }
+                    }
+                }
+
+                // A key part without a column (prefix or expression) makes the whole index partial
+                for (List<KeyData> indexes : result.values()) {
+                    for (Iterator<KeyData> it = indexes.iterator(); it.hasNext(); ) {
+                        if (it.next().hasMissingColumn()) it.remove();
+                    }
+                }
 
-                ((JSONArray) fk.get("columns")).put(fkColumn);
+                if (savepoint != null) conn.releaseSavepoint(savepoint);
+                return result;
+            }
+            catch (SQLException e)
+            {
+                if (savepoint != null) conn.rollback(savepoint);
+                throw e;
             }
+        }
+        catch (SQLException e)
+        {
+            // e.g. missing privileges on the system catalog or an old server version
+            return null;
+        }
+    }
+
+    /**
+     * Get indexes for a table; approximate=true lets the driver use cached
+     * statistics instead of recomputing them
+     */
+    private void getTableIndexes(SymbolTable symbols, TableData table, DatabaseMetaData metaData,
+                                 String catalog, String schema) throws SQLException
+    {
+        ResultSet indexRs = metaData.getIndexInfo(catalog, schema, table.name, false, true);
+        Set<String> partial = new HashSet<>();
+
+        try
+        {
+            while (indexRs.next())
+            {
+                String indexName = indexRs.getString("INDEX_NAME");
+                if (indexName == null || indexRs.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic) {
+                    continue;
+                }
+
+                // Partial and expression indexes do not constrain the columns themselves
+                String column = indexRs.getString("COLUMN_NAME");
+                if (column == null || indexRs.getString("FILTER_CONDITION") != null) {
+                    partial.add(indexName);
+                    continue;
+                }
+
+                KeyData index = null;
+                for (KeyData candidate : table.indexes) {
+                    if (candidate.name.equals(indexName)) {
+                        index = candidate;
+                        break;
+                    }
+                }
 
-            for (JSONObject fk : fkMap.values()) {
-                foreignKeys.put(fk);
+                if (index == null) {
+                    index = new KeyData(indexName);
+                    index.unique = !indexRs.getBoolean("NON_UNIQUE");
+                    table.indexes.add(index);
+                }
+
+                KeyData.append(index, indexName, symbols.intern(column), -1, indexRs.getInt("ORDINAL_POSITION"));
             }
         }
         finally
         {
-            fkRs.close();
+            indexRs.close();
+        }
+
+        for (Iterator<KeyData> it = table.indexes.iterator(); it.hasNext(); ) {
+            if (partial.contains(it.next().name)) it.remove();
         }
+    }
+
+    /**
+     * Stream the catalog as pretty-printed jcatalog JSON (4-space indent).
+     * The JSON view is only produced here; no JSONObject tree is built.
+     */
+    private void writeJCatalog(Writer out, CatalogData catalog) throws IOException
+    {
+        SymbolTable symbols = catalog.symbols;
+
+        out.write("{\n    \"connection\": {\n        \"catalogs\": [\n            {\n");
+        out.write("                \"name\": " + JSONObject.quote(catalog.name) + ",\n");
+        out.write("                \"schemas\": [");
+
+        for (int s = 0; s < catalog.schemaNames.size(); s++)
+        {
+            out.write(s == 0 ? "\n" : ",\n");
+            out.write("                    {\n");
+            out.write("                        \"name\": " + JSONObject.quote(catalog.schemaNames.get(s)) + ",\n");
+            out.write("                        \"tables\": [");
 
-        return foreignKeys;
+            List<TableData> tables = catalog.schemaTables.get(s);
+            for (int t = 0; t < tables.size(); t++)
+            {
+                out.write(t == 0 ? "\n" : ",\n");
+                writeTable(out, symbols, tables.get(t), "                            ");
+            }
+
+            out.write("\n                        ]\n                    }");
+        }
+
+        out.write("\n                ]\n            }\n        ]\n    }\n}");
+        out.flush();
+    }
+
+    private void writeTable(Writer out, SymbolTable symbols, TableData table, String indent) throws IOException
+    {
+        String in1 = indent + "    ";
+        String in2 = in1 + "    ";
+        String in3 = in2 + "    ";
+        String in4 = in3 + "    ";
+
+        out.write(indent + "{\n");
+        out.write(in1 + "\"name\": " + JSONObject.quote(table.name) + ",\n");
+        if (table.annotation != null) {
+            out.write(in1 + "\"annotation\": " + JSONObject.quote(table.annotation) + ",\n");
+        }
+
+        out.write(in1 + "\"columns\": [");
+        for (int i = 0; i < table.columnCount; i++)
+        {
+            out.write(i == 0 ? "\n" : ",\n");
+            out.write(in2 + "{\n");
+            out.write(in3 + "\"name\": " + JSONObject.quote(symbols.get(table.columnNames[i])) + ",\n");
+            out.write(in3 + "\"metadata\": {\n");
+            if (table.columnTypes[i] >= 0) {
+                out.write(in4 + "\"type\": " + JSONObject.quote(symbols.get(table.columnTypes[i])) + ",\n");
+            }
+            out.write(in4 + "\"size\": " + table.columnSizes[i] + ",\n");
+            out.write(in4 + "\"nullable\": " + table.columnNullable[i]);
+
+            String[] extras = table.columnExtras == null ? null : table.columnExtras[i];
+            if (extras != null && extras[0] != null) {
+                out.write(",\n" + in4 + "\"annotation\": " + JSONObject.quote(extras[0]));
+            }
+            if (extras != null && extras[1] != null) {
+                out.write(",\n" + in4 + "\"default\": " + JSONObject.quote(extras[1]));
+            }
+
+            out.write("\n" + in3 + "}\n" + in2 + "}");
+        }
+        out.write(table.columnCount > 0 ? "\n" + in1 + "]" : "]");
+
+        if (table.primaryKey != null) {
+            out.write(",\n" + in1 + "\"primarykey\": {\n" + in2 + "\"columns\": [");
+            writeKeyColumns(out, symbols, table.primaryKey, in3);
+            out.write("\n" + in2 + "]\n" + in1 + "}");
+        }
+
+        if (!table.foreignKeys.isEmpty()) {
+            out.write(",\n" + in1 + "\"foreignkeys\": [");
+            for (int f = 0; f < table.foreignKeys.size(); f++)
+            {
+                KeyData fk = table.foreignKeys.get(f);
+                out.write(f == 0 ? "\n" : ",\n");
+                out.write(in2 + "{\n");
+                out.write(in3 + "\"name\": " + JSONObject.quote(fk.name) + ",\n");
+                if (fk.referencedTable >= 0) {
+                    out.write(in3 + "\"referencedTable\": " + JSONObject.quote(symbols.get(fk.referencedTable)) + ",\n");
+                }
+                if (fk.referencedSchema >= 0) {
+                    out.write(in3 + "\"referencedSchema\": " + JSONObject.quote(symbols.get(fk.referencedSchema)) + ",\n");
+                }
+                out.write(in3 + "\"columns\": [");
+                writeKeyColumns(out, symbols, fk, in4);
+                out.write("\n" + in3 + "]\n" + in2 + "}");
+            }
+            out.write("\n" + in1 + "]");
+        }
+
+        if (!table.indexes.isEmpty()) {
+            out.write(",\n" + in1 + "\"indexes\": [");
+            for (int x = 0; x < table.indexes.size(); x++)
+            {
+                KeyData index = table.indexes.get(x);
+                out.write(x == 0 ? "\n" : ",\n");
+                out.write(in2 + "{\n");
+                out.write(in3 + "\"name\": " + JSONObject.quote(index.name) + ",\n");
+                out.write(in3 + "\"unique\": " + index.unique + ",\n");
+                if (index.constraint) {
+                    out.write(in3 + "\"constraint\": true,\n");
+                }
+                out.write(in3 + "\"columns\": [");
+                writeKeyColumns(out, symbols, index, in4);
+                out.write("\n" + in3 + "]\n" + in2 + "}");
+            }
+            out.write("\n" + in1 + "]");
+        }
+
+        out.write("\n" + indent + "}");
+    }
+
+    private void writeKeyColumns(Writer out, SymbolTable symbols, KeyData key, String indent) throws IOException
+    {
+        String in1 = indent + "    ";
+
+        for (int i = 0; i < key.count; i++)
+        {
+            out.write(i == 0 ? "\n" : ",\n");
+            out.write(indent + "{\n");
+            out.write(in1 + "\"column\": " + JSONObject.quote(symbols.get(key.columns[i])) + ",\n");
+            if (key.referencedColumns[i] >= 0) {
+                out.write(in1 + "\"referencedColumn\": " + JSONObject.quote(symbols.get(key.referencedColumns[i])) + ",\n");
+            }
+            out.write(in1 + "\"position\": \"" + key.positions[i] + "\"\n");
+            out.write(indent + "}");
+        }
+    }
+
+    /**
+     * Interns repeated identifiers (type names, column names) to int ids
+     */
+    private static class SymbolTable
+    {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int intern(String value)
+        {
+            if (value == null) return -1;
+
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                values.add(value);
+                ids.put(value, id);
+            }
+            return id;
+        }
+
+        String get(int id)
+        {
+            return id < 0 ? null : values.get(id);
+        }
+    }
+
+    /**
+     * Compact catalog: schemas with their tables, sharing one symbol table
+     */
+    private static class CatalogData
+    {
+        final String name;
+        final SymbolTable symbols = new SymbolTable();
+        final List<String> schemaNames = new ArrayList<>();
+        final List<List<TableData>> schemaTables = new ArrayList<>();
+
+        CatalogData(String name)
+        {
+            this.name = name;
+        }
+    }
+
+    /**
+     * A table with its columns in flat parallel arrays
+     */
+    private static class TableData
+    {
+        final String name;
+        String annotation;
+
+        int columnCount;
+        int[] columnNames = new int[8];
+        int[] columnTypes = new int[8];
+        int[] columnSizes = new int[8];
+        boolean[] columnNullable = new boolean[8];
+        String[][] columnExtras; // {annotation, default}, only allocated when present
+
+        KeyData primaryKey;
+        final List<KeyData> foreignKeys = new ArrayList<>(2);
+        final List<KeyData> indexes = new ArrayList<>(0);
+
+        TableData(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * Remove unique indexes on exactly the primary key columns: they only
+         * back the primary key, which is exported already
+         */
+        void dropPrimaryKeyIndex()
+        {
+            if (primaryKey == null || indexes.isEmpty()) return;
+
+            for (Iterator<KeyData> it = indexes.iterator(); it.hasNext(); ) {
+                KeyData index = it.next();
+                if (index.unique && index.count == primaryKey.count && sameColumns(index, primaryKey)) {
+                    it.remove();
+                }
+            }
+        }
+
+        private static boolean sameColumns(KeyData a, KeyData b)
+        {
+            for (int i = 0; i < a.count; i++) {
+                boolean found = false;
+                for (int j = 0; j < b.count && !found; j++) {
+                    found = a.columns[i] == b.columns[j];
+                }
+                if (!found) return false;
+            }
+            return true;
+        }
+
+        int addColumn()
+        {
+            if (columnCount == columnNames.length) {
+                int capacity = columnCount * 2;
+                columnNames = Arrays.copyOf(columnNames, capacity);
+                columnTypes = Arrays.copyOf(columnTypes, capacity);
+                columnSizes = Arrays.copyOf(columnSizes, capacity);
+                columnNullable = Arrays.copyOf(columnNullable, capacity);
+                if (columnExtras != null) columnExtras = Arrays.copyOf(columnExtras, capacity);
+            }
+            return columnCount++;
+        }
+
+        String[] columnExtras(int i)
+        {
+            if (columnExtras == null) columnExtras = new String[columnNames.length][];
+            if (columnExtras[i] == null) columnExtras[i] = new String[2];
+            return columnExtras[i];
+        }
+    }
+
+    /**
+     * Primary key, foreign key or index columns as flat arrays of symbol ids
+     */
+    private static class KeyData
+    {
+        final String name;
+        int referencedTable = -1;
+        int referencedSchema = -1;
+        boolean unique;
+        boolean constraint;
+
+        int count;
+        int[] columns = new int[2];
+        int[] referencedColumns = new int[2];
+        int[] positions = new int[2];
+
+        KeyData(String name)
+        {
+            this.name = name;
+        }
+
+        boolean hasMissingColumn()
+        {
+            for (int i = 0; i < count; i++) {
+                if (columns[i] < 0) return true;
+            }
+            return false;
+        }
+
+        static KeyData append(KeyData key, String name, int column, int referencedColumn, int position)
+        {
+            if (key == null) key = new KeyData(name);
+
+            if (key.count == key.columns.length) {
+                key.columns = Arrays.copyOf(key.columns, key.count * 2);
+                key.referencedColumns = Arrays.copyOf(key.referencedColumns, key.count * 2);
+                key.positions = Arrays.copyOf(key.positions, key.count * 2);
+            }
+
+            key.columns[key.count] = column;
+            key.referencedColumns[key.count] = referencedColumn;
+            key.positions[key.count] = position;
+            key.count++;
+            return key;
+        }
     }
 
     /**
@@ -0,0 +1,589 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates CaseTalk fact expression skeletons from a catalog, in the layout
+ * of the CaseTalk Notepad++ UDL: a [Fact Type] header followed by quoted
+ * expressions, with ; comments.
+ *
+ * For every table:
+ *   - an entity fact type:     "Customer <id> exists."
+ *   - one per column:          "Customer <id> has email <email>."
+ *   - one per foreign key:     "Order <id> refers to Customer <customer_id>."
+ * and for every association (Mendix junction table):
+ *                              "Customer <id> is related to Order <id>."
+ *
+ * The <placeholders> are to be replaced by example values. Column types and
+ * nullability are written as comments after the headers.
+ *
+ * Schemas are written in parallel, each to its own part file; the parts are
+ * concatenated in schema order, so the output is the same for any number of threads.
+ *
+ * Usage:
+ *   java FactExpressionGenerator <catalogFile> <outputFile> [--threads=<n>]
+ *
+ * Example:
+ *   java -cp ".;json-20231013.jar" FactExpressionGenerator mendix.jcatalog mendix.exp
+ *
+ * @author CaseTalk Integration
+ * @version 1.0
+ */
+public class FactExpressionGenerator
+{
+    private static final String NEWLINE = "\n";
+    private static final String RULE = ";------------------------------------------------------------------------";
+
+    private final List<CatalogModel> catalogs;
+
+    // Fact type names per table and per association, unique over all catalogs
+    // as long as the catalog names differ ("catalog/schema/table" -> name)
+    private final Map<String, String> entityNames = new HashMap<>();
+    private final Map<String, String> associationNames = new HashMap<>();
+
+    public static void main(String[] args)
+    {
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> positional = new ArrayList<>();
+        for (String arg : args)
+        {
+            if (arg.startsWith("--threads="))
+            {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            }
+            else
+            {
+                positional.add(arg);
+            }
+        }
+
+        if (positional.size() < 2)
+        {
+            System.err.println("Usage: java FactExpressionGenerator <catalogFile> <outputFile> [--threads=<n>]");
+            System.err.println();
+            System.err.println("Example:");
+            System.err.println("  java FactExpressionGenerator mendix.jcatalog mendix.exp");
+            System.exit(1);
+        }
+
+        try
+        {
+            long start = System.nanoTime();
+            List<CatalogModel> catalogs = CatalogConverter.load(Paths.get(positional.get(0)));
+            long count = generate(catalogs, Paths.get(positional.get(1)), threads);
+
+            System.out.println(String.format("Generated %d fact types to %s in %d ms",
+                count, positional.get(1), (System.nanoTime() - start) / 1000000));
+        }
+        catch (Exception e)
+        {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Write the expression file for the catalogs
+     *
+     * @return the number of fact types written
+     */
+    public static long generate(List<CatalogModel> catalogs, Path outputFile, int threads) throws Exception
+    {
+        return new FactExpressionGenerator(catalogs).write(outputFile, threads);
+    }
+
+    private FactExpressionGenerator(List<CatalogModel> catalogs)
+    {
+        this.catalogs = catalogs;
+        assignEntityNames();
+    }
+
+    /**
+     * Derive entity names from the table names. Within a catalog the module
+     * prefix is dropped unless two tables would end up with the same name;
+     * tables that are still ambiguous (same table in several schemas) get the
+     * schema name as well. Association names are made unique the same way.
+     * Names that several catalogs share (e.g. a merged test, acceptance and
+     * production export) are then qualified with the catalog name.
+     */
+    private void assignEntityNames()
+    {
+        for (CatalogModel catalog : catalogs)
+        {
+            assignEntityNames(catalog);
+        }
+
+        // Number of catalogs that use each name
+        Map<String, Integer> entityCatalogs = new HashMap<>();
+        Map<String, Integer> associationCatalogs = new HashMap<>();
+
+        for (CatalogModel catalog : catalogs)
+        {
+            Set<String> entities = new HashSet<>();
+            Set<String> associations = new HashSet<>();
+
+            for (CatalogModel.Schema schema : catalog.schemas)
+            {
+                for (CatalogModel.Table table : schema.tables)
+                {
+                    entities.add(entityNames.get(key(catalog, schema.name, table.name)));
+                }
+                for (CatalogModel.Association association : schema.associations)
+                {
+                    associations.add(associationNames.get(key(catalog, schema.name, association.junctionTable)));
+                }
+            }
+
+            for (String name : entities)
+            {
+                increment(entityCatalogs, name);
+            }
+            for (String name : associations)
+            {
+                increment(associationCatalogs, name);
+            }
+        }
+
+        for (CatalogModel catalog : catalogs)
+        {
+            String catalogWords = capitalize(words(catalogWords(catalog.name)));
+
+            for (CatalogModel.Schema schema : catalog.schemas)
+            {
+                for (CatalogModel.Table table : schema.tables)
+                {
+                    qualify(entityNames, entityCatalogs, key(catalog, schema.name, table.name), catalogWords);
+                }
+                for (CatalogModel.Association association : schema.associations)
+                {
+                    qualify(associationNames, associationCatalogs,
+                        key(catalog, schema.name, association.junctionTable), catalogWords);
+                }
+            }
+        }
+    }
+
+    /**
+     * Names of one catalog, counting collisions within that catalog only
+     */
+    private void assignEntityNames(CatalogModel catalog)
+    {
+        Map<String, Integer> entities = new HashMap<>();
+        Map<String, Integer> moduleEntities = new HashMap<>();
+        Map<String, Integer> associations = new HashMap<>();
+
+        for (CatalogModel.Schema schema : catalog.schemas)
+        {
+            for (CatalogModel.Table table : schema.tables)
+            {
+                increment(entities, entityName(table.name, false));
+                increment(moduleEntities, entityName(table.name, true));
+            }
+            for (CatalogModel.Association association : schema.associations)
+            {
+                increment(associations, associationName(association));
+            }
+        }
+
+        for (CatalogModel.Schema schema : catalog.schemas)
+        {
+            String schemaWords = capitalize(words(String.valueOf(schema.name)));
+
+            for (CatalogModel.Table table : schema.tables)
+            {
+                String name = entityName(table.name, false);
+                if (entities.get(name) > 1)
+                {
+                    name = entityName(table.name, true);
+                    if (moduleEntities.get(name) > 1)
+                    {
+                        name = schemaWords + " " + name;
+                    }
+                }
+                entityNames.put(key(catalog, schema.name, table.name), name);
+            }
+
+            for (CatalogModel.Association association : schema.associations)
+            {
+                String name = associationName(association);
+                if (associations.get(name) > 1)
+                {
+                    name = schemaWords + " " + name;
+                }
+                associationNames.put(key(catalog, schema.name, association.junctionTable), name);
+            }
+        }
+    }
+
+    private static void qualify(Map<String, String> names, Map<String, Integer> catalogCounts, String key,
+        String catalogWords)
+    {
+        String name = names.get(key);
+        if (catalogCounts.get(name) > 1)
+        {
+            names.put(key, catalogWords + " " + name);
+        }
+    }
+
+    /**
+     * Catalog name as plain words: "mendix (acceptance)" -> "mendix acceptance"
+     */
+    private static String catalogWords(String catalogName)
+    {
+        return String.valueOf(catalogName).replaceAll("[^\\p{L}\\p{N}]+", " ");
+    }
+
+    private static void increment(Map<String, Integer> counts, String name)
+    {
+        Integer count = counts.get(name);
+        counts.put(name, count == null ? 1 : count + 1);
+    }
+
+    private static String associationName(CatalogModel.Association association)
+    {
+        return association.name != null ? association.name : entityName(association.junctionTable, false);
+    }
+
+    private static String key(CatalogModel catalog, String schema, String table)
+    {
+        return catalog.name + "/" + schema + "/" + table;
+    }
+
+    private long write(Path outputFile, int threads) throws Exception
+    {
+        Path directory = outputFile.toAbsolutePath().getParent();
+        List<Path> parts = new ArrayList<>();
+        List<Future<Long>> futures = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+
+        try
+        {
+            for (final CatalogModel catalog : catalogs)
+            {
+                for (final CatalogModel.Schema schema : catalog.schemas)
+                {
+                    final Path part = Files.createTempFile(directory, outputFile.getFileName().toString(), ".part");
+                    parts.add(part);
+                    futures.add(executor.submit(() -> writeSchema(catalog, schema, part)));
+                }
+            }
+
+            long count = 0;
+            for (Future<Long> future : futures)
+            {
+                count += future.get();
+            }
+
+            // Header, then the schema parts in order
+            try (FileChannel out = FileChannel.open(outputFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+            {
+                out.write(StandardCharsets.UTF_8.encode(fileHeader()));
+                for (Path part : parts)
+                {
+                    try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ))
+                    {
+                        long position = 0;
+                        long size = in.size();
+                        while (position < size)
+                        {
+                            position += in.transferTo(position, size - position, out);
+                        }
+                    }
+                }
+            }
+
+            return count;
+        }
+        finally
+        {
+            executor.shutdownNow();
+            for (Path part : parts)
+            {
+                Files.deleteIfExists(part);
+            }
+        }
+    }
+
+    private String fileHeader()
+    {
+        StringBuilder header = new StringBuilder();
+        header.append("[EXPFILE]").append(NEWLINE);
+        header.append(RULE).append(NEWLINE);
+        for (CatalogModel catalog : catalogs)
+        {
+            header.append("; Fact expressions generated from catalog: ").append(comment(catalog.name)).append(NEWLINE);
+        }
+        header.append("; Replace the <placeholders> by example values before importing.").append(NEWLINE);
+        header.append(RULE).append(NEWLINE);
+        return header.toString();
+    }
+
+    /**
+     * Write the fact types of one schema to its part file
+     */
+    private long writeSchema(CatalogModel catalog, CatalogModel.Schema schema, Path part) throws IOException
+    {
+        long count = 0;
+
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(part, StandardCharsets.UTF_8), 1 << 16))
+        {
+            out.write(NEWLINE);
+            out.write("; Schema: " + comment(schema.name) + NEWLINE);
+
+            for (CatalogModel.Table table : schema.tables)
+            {
+                count += writeTable(out, catalog, schema, table);
+            }
+
+            for (CatalogModel.Association association : schema.associations)
+            {
+                count += writeAssociation(out, catalog, schema, association);
+            }
+        }
+
+        return count;
+    }
+
+    private long writeTable(Writer out, CatalogModel catalog, CatalogModel.Schema schema,
+                            CatalogModel.Table table) throws IOException
+    {
+        String entity = entityNames.get(key(catalog, schema.name, table.name));
+        String identifier = identifier(table);
+        Set<String> headers = new HashSet<>();
+        Set<String> keyColumns = new HashSet<>();
+        long count = 0;
+
+        for (int i = 0; i < table.pkCount; i++)
+        {
+            keyColumns.add(table.getPrimaryKeyColumn(i));
+        }
+        for (CatalogModel.ForeignKey fk : table.foreignKeys)
+        {
+            for (int i = 0; i < fk.columnCount; i++)
+            {
+                keyColumns.add(fk.getColumn(i));
+            }
+        }
+
+        out.write(NEWLINE);
+        out.write("; Table: " + comment(table.name) + NEWLINE);
+        if (table.annotation != null)
+        {
+            out.write("; " + comment(table.annotation) + NEWLINE);
+        }
+
+        // Entity
+        header(out, headers, entity, null);
+        out.write(expression(entity + " " + identifier + " exists."));
+        count++;
+
+        // Attributes (columns that are not part of a key)
+        for (int i = 0; i < table.columnCount; i++)
+        {
+            String column = table.getColumnName(i);
+            if (keyColumns.contains(column)) continue;
+
+            String words = words(column);
+            String info = table.getColumnType(i) + (table.getColumnSize(i) > 0 ? "(" + table.getColumnSize(i) + ")" : "")
+                + (table.isColumnNullable(i) ? ", optional" : ", mandatory");
+
+            out.write(NEWLINE);
+            header(out, headers, entity + " " + capitalize(words), info);
+            out.write(expression(entity + " " + identifier + " has " + words + " " + placeholder(column) + "."));
+            count++;
+        }
+
+        // References
+        for (CatalogModel.ForeignKey fk : table.foreignKeys)
+        {
+            String target = entityNames.get(key(catalog,
+                fk.getReferencedSchema() == null ? schema.name : fk.getReferencedSchema(), fk.getReferencedTable()));
+            if (target == null)
+            {
+                target = entityName(fk.getReferencedTable(), false);
+            }
+
+            StringBuilder columns = new StringBuilder();
+            for (int i = 0; i < fk.columnCount; i++)
+            {
+                if (i > 0) columns.append(' ');
+                columns.append(placeholder(fk.getColumn(i)));
+            }
+
+            out.write(NEWLINE);
+            header(out, headers, entity + " " + target, comment(fk.name));
+            out.write(expression(entity + " " + identifier + " refers to " + target + " " + columns + "."));
+            count++;
+        }
+
+        return count;
+    }
+
+    private long writeAssociation(Writer out, CatalogModel catalog, CatalogModel.Schema schema,
+                                  CatalogModel.Association association) throws IOException
+    {
+        if (association.entity1 == null || association.entity2 == null)
+        {
+            return 0;
+        }
+
+        String entity1 = entityName(catalog, schema, association.entity1);
+        String entity2 = entityName(catalog, schema, association.entity2);
+        String name = associationNames.get(key(catalog, schema.name, association.junctionTable));
+
+        out.write(NEWLINE);
+        out.write("; Association: " + comment(association.junctionTable) + " (" + association.type + ")" + NEWLINE);
+        out.write("[" + header(name) + "]" + NEWLINE);
+        out.write(expression(entity1 + " " + placeholder(words(entity1) + " id") + " is related to "
+            + entity2 + " " + placeholder(words(entity2) + " id") + "."));
+        return 1;
+    }
+
+    private String entityName(CatalogModel catalog, CatalogModel.Schema schema, String table)
+    {
+        String name = entityNames.get(key(catalog, schema.name, table));
+        return name != null ? name : entityName(table, false);
+    }
+
+    /**
+     * Write a header, made unique within the table, with an optional comment
+     */
+    private static void header(Writer out, Set<String> headers, String name, String info) throws IOException
+    {
+        String header = header(name);
+        for (int n = 2; !headers.add(header); n++)
+        {
+            header = header(name) + " " + n;
+        }
+
+        out.write("[" + header + "]");
+        if (info != null)
+        {
+            out.write(" ; " + info);
+        }
+        out.write(NEWLINE);
+    }
+
+    private static String expression(String text)
+    {
+        return "\"" + text.replace('"', '\'').replace('\r', ' ').replace('\n', ' ') + "\"" + NEWLINE;
+    }
+
+    /**
+     * Header names cannot contain brackets or line breaks
+     */
+    private static String header(String name)
+    {
+        return name.replace('[', '(').replace(']', ')').replace('\r', ' ').replace('\n', ' ').trim();
+    }
+
+    private static String comment(String text)
+    {
+        return text == null ? "" : text.replace('\r', ' ').replace('\n', ' ');
+    }
+
+    /**
+     * The <placeholders> identifying a row of the table (its primary key)
+     */
+    private static String identifier(CatalogModel.Table table)
+    {
+        if (table.pkCount == 0)
+        {
+            return "<identifier>";
+        }
+
+        StringBuilder identifier = new StringBuilder();
+        for (int i = 0; i < table.pkCount; i++)
+        {
+            if (i > 0) identifier.append(' ');
+            identifier.append(placeholder(table.getPrimaryKeyColumn(i)));
+        }
+        return identifier.toString();
+    }
+
+    private static String placeholder(String column)
+    {
+        return "<" + column.replace('"', '\'') + ">";
+    }
+
+    /**
+     * Entity name from a table name: "mymodule$sales_order" -> "Sales Order",
+     * or "MyModule Sales Order" with the module
+     */
+    static String entityName(String tableName, boolean withModule)
+    {
+        int dollar = tableName.indexOf('$');
+        String entity = capitalize(words(tableName.substring(dollar + 1)));
+
+        if (withModule && dollar > 0)
+        {
+            return capitalize(words(tableName.substring(0, dollar))) + " " + entity;
+        }
+        return entity;
+    }
+
+    /**
+     * Split an identifier into lower case words: "first_name" / "FirstName" -> "first name"
+     */
+    static String words(String identifier)
+    {
+        StringBuilder words = new StringBuilder(identifier.length() + 4);
+        char previous = ' ';
+
+        for (int i = 0; i < identifier.length(); i++)
+        {
+            char c = identifier.charAt(i);
+            if (c == '_' || c == '$' || c == '.' || Character.isWhitespace(c))
+            {
+                c = ' ';
+            }
+            else if (Character.isUpperCase(c) && Character.isLowerCase(previous))
+            {
+                words.append(' ');
+            }
+
+            if (c != ' ' || (words.length() > 0 && previous != ' '))
+            {
+                words.append(Character.toLowerCase(c));
+            }
+            previous = c;
+        }
+
+        return words.toString().trim();
+    }
+
+    /**
+     * Capitalize every word: "sales order" -> "Sales Order"
+     */
+    static String capitalize(String words)
+    {
+        StringBuilder result = new StringBuilder(words.length());
+        boolean start = true;
+
+        for (int i = 0; i < words.length(); i++)
+        {
+            char c = words.charAt(i);
+            result.append(start ? Character.toUpperCase(c) : c);
+            start = c == ' ';
+        }
+
+        return result.toString();
+    }
+}
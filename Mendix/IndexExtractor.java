@@ -0,0 +1,362 @@
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Reads indexes and unique constraints for the exporters.
+ *
+ * For PostgreSQL, SQL Server, MySQL/MariaDB and Oracle the indexes of all
+ * tables in a schema are read with one set-based query on the system catalog,
+ * so they cost one round trip per schema instead of one per table. Other
+ * databases are read per table with DatabaseMetaData.getIndexInfo(...,
+ * approximate=true), so the driver does not recompute statistics.
+ *
+ * Primary key indexes are left out (the primary key is exported already), and
+ * so are partial (filtered) and expression indexes, which do not make a
+ * column combination unique for the whole table.
+ *
+ * @author CaseTalk Integration
+ * @version 1.0
+ */
+public class IndexExtractor
+{
+    // Every dialect query takes the schema as its first parameter, then one per
+    // table name pattern, and returns table, index, unique (0/1), constraint (0/1), column, position
+
+    private static final String POSTGRESQL =
+        "SELECT t.relname, i.relname, CASE WHEN x.indisunique THEN 1 ELSE 0 END,"
+        + " CASE WHEN c.conname IS NULL THEN 0 ELSE 1 END, a.attname, k.n"
+        + " FROM pg_catalog.pg_index x"
+        + " JOIN pg_catalog.pg_class t ON t.oid = x.indrelid"
+        + " JOIN pg_catalog.pg_class i ON i.oid = x.indexrelid"
+        + " JOIN pg_catalog.pg_namespace ns ON ns.oid = t.relnamespace"
+        + " CROSS JOIN LATERAL generate_series(1, x.indnkeyatts) AS k(n)"
+        + " JOIN pg_catalog.pg_attribute a ON a.attrelid = t.oid AND a.attnum = x.indkey[k.n - 1]"
+        + " LEFT JOIN pg_catalog.pg_constraint c ON c.conindid = x.indexrelid AND c.contype = 'u'"
+        + " WHERE ns.nspname = ? AND t.relkind IN ('r', 'p') AND NOT x.indisprimary"
+        + " AND x.indpred IS NULL AND x.indexprs IS NULL"
+        + " ORDER BY 1, 2, 6";
+
+    private static final String SQLSERVER =
+        "SELECT t.name, i.name, CAST(i.is_unique AS int), CAST(i.is_unique_constraint AS int), c.name, ic.key_ordinal"
+        + " FROM sys.indexes i"
+        + " JOIN sys.tables t ON t.object_id = i.object_id"
+        + " JOIN sys.index_columns ic ON ic.object_id = i.object_id AND ic.index_id = i.index_id"
+        + " JOIN sys.columns c ON c.object_id = ic.object_id AND c.column_id = ic.column_id"
+        + " WHERE SCHEMA_NAME(t.schema_id) = ? AND i.is_primary_key = 0 AND i.type > 0"
+        + " AND i.is_hypothetical = 0 AND i.has_filter = 0 AND ic.key_ordinal > 0"
+        + " ORDER BY 1, 2, 6";
+
+    // MySQL has no schemas inside a database; without a matching database the current one is used.
+    // A unique key is both the index and the unique constraint. Prefix and functional
+    // key parts come back without a column, so addIndexes leaves out the whole index.
+    private static final String MYSQL =
+        "SELECT s.TABLE_NAME, s.INDEX_NAME, CASE WHEN s.NON_UNIQUE = 0 THEN 1 ELSE 0 END,"
+        + " CASE WHEN s.NON_UNIQUE = 0 THEN 1 ELSE 0 END,"
+        + " CASE WHEN s.SUB_PART IS NULL THEN s.COLUMN_NAME END, s.SEQ_IN_INDEX"
+        + " FROM information_schema.STATISTICS s"
+        + " WHERE s.TABLE_SCHEMA = COALESCE((SELECT SCHEMA_NAME FROM information_schema.SCHEMATA"
+        + " WHERE SCHEMA_NAME = ?), DATABASE())"
+        + " AND s.INDEX_NAME <> 'PRIMARY'"
+        + " ORDER BY 1, 2, 6";
+
+    private static final String ORACLE =
+        "SELECT i.TABLE_NAME, i.INDEX_NAME, CASE WHEN i.UNIQUENESS = 'UNIQUE' THEN 1 ELSE 0 END,"
+        + " CASE WHEN c.CONSTRAINT_TYPE = 'U' THEN 1 ELSE 0 END, ic.COLUMN_NAME, ic.COLUMN_POSITION"
+        + " FROM ALL_INDEXES i"
+        + " JOIN ALL_IND_COLUMNS ic ON ic.INDEX_OWNER = i.OWNER AND ic.INDEX_NAME = i.INDEX_NAME"
+        + " LEFT JOIN ALL_CONSTRAINTS c ON c.OWNER = i.TABLE_OWNER AND c.TABLE_NAME = i.TABLE_NAME"
+        + " AND c.INDEX_NAME = i.INDEX_NAME AND c.CONSTRAINT_TYPE IN ('P', 'U')"
+        + " WHERE i.TABLE_OWNER = ? AND i.INDEX_TYPE IN ('NORMAL', 'BITMAP')"
+        + " AND (c.CONSTRAINT_TYPE IS NULL OR c.CONSTRAINT_TYPE = 'U')"
+        + " ORDER BY 1, 2, 6";
+
+    /**
+     * One column of an index as read from the database
+     */
+    private static class IndexColumn
+    {
+        final String index;
+        final boolean unique;
+        final boolean constraint;
+        final String column;
+        final int position;
+
+        IndexColumn(String index, boolean unique, boolean constraint, String column, int position)
+        {
+            this.index = index;
+            this.unique = unique;
+            this.constraint = constraint;
+            this.column = column;
+            this.position = position;
+        }
+    }
+
+    // Table name -> its index columns, ordered by index and position
+    private final Map<String, List<IndexColumn>> tables = new HashMap<>();
+    private int rows;
+
+    private IndexExtractor()
+    {
+    }
+
+    /**
+     * Dialect query for a database product, or null if there is none
+     *
+     * @param tablePatterns  only tables matching one of these patterns (null: all tables)
+     */
+    static String dialectQuery(String productName, List<String> tablePatterns)
+    {
+        if (productName == null) return null;
+
+        // PostgreSQL and MySQL escape LIKE patterns with \ by default
+        String product = productName.toLowerCase(Locale.ROOT);
+        if (product.contains("postgresql")) return tableFilter(POSTGRESQL, "t.relname", tablePatterns, false);
+        if (product.contains("microsoft sql server")) return tableFilter(SQLSERVER, "t.name", tablePatterns, true);
+        if (product.contains("mysql") || product.contains("mariadb"))
+        {
+            return tableFilter(MYSQL, "s.TABLE_NAME", tablePatterns, false);
+        }
+        if (product.contains("oracle")) return tableFilter(ORACLE, "i.TABLE_NAME", tablePatterns, true);
+        return null;
+    }
+
+    /**
+     * Restrict a schema query to tables whose name matches one of the patterns
+     * (JDBC search patterns with \ as escape, bound by bindTablePatterns).
+     * Null or no patterns: all tables.
+     */
+    static String tableFilter(String sql, String tableColumn, List<String> patterns, boolean escapeClause)
+    {
+        if (patterns == null || patterns.isEmpty()) return sql;
+
+        StringBuilder filter = new StringBuilder(" AND (");
+        for (int i = 0; i < patterns.size(); i++)
+        {
+            if (i > 0) filter.append(" OR ");
+            filter.append(tableColumn).append(" LIKE ?");
+            if (escapeClause) filter.append(" ESCAPE '\\'");
+        }
+        filter.append(')');
+
+        int order = sql.lastIndexOf(" ORDER BY ");
+        return order < 0 ? sql + filter : sql.substring(0, order) + filter + sql.substring(order);
+    }
+
+    /**
+     * Bind the patterns of tableFilter after the schema parameter
+     */
+    static void bindTablePatterns(PreparedStatement statement, List<String> patterns) throws SQLException
+    {
+        for (int i = 0; patterns != null && i < patterns.size(); i++)
+        {
+            statement.setString(i + 2, patterns.get(i));
+        }
+    }
+
+    /**
+     * Read the indexes of all tables in a schema with one dialect query.
+     *
+     * Returns null when the database has no dialect query or the query fails
+     * (e.g. missing privileges or an old server version); read the indexes per
+     * table with readTable() then.
+     *
+     * @param connection  connection to query (the watchdog's current connection is used if there is one)
+     * @param watchdog    sets the query timeout (may be null)
+     * @param throttle    paces the query together with the metadata calls (may be null)
+     * @param tablePatterns  only read the tables matching one of these patterns, e.g. the
+     *                       tables of selected modules (null: all tables of the schema)
+     */
+    public static IndexExtractor readSchema(Connection connection, MetadataWatchdog watchdog,
+                                            AdaptiveThrottle throttle, final String schema,
+                                            final List<String> tablePatterns)
+    {
+        try
+        {
+            final Connection target = watchdog != null ? watchdog.getConnection() : connection;
+            final String sql = dialectQuery(target.getMetaData().getDatabaseProductName(), tablePatterns);
+            if (sql == null)
+            {
+                return null;
+            }
+
+            final MetadataWatchdog timeouts = watchdog;
+            Callable<IndexExtractor> query = new Callable<IndexExtractor>()
+            {
+                @Override
+                public IndexExtractor call() throws SQLException
+                {
+                    return query(target, timeouts, sql, schema, tablePatterns);
+                }
+            };
+            return throttle != null ? throttle.call(query) : query.call();
+        }
+        catch (Exception e)
+        {
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            System.out.println("  Index query failed, reading indexes per table (" + e.getMessage() + ")");
+            return null;
+        }
+    }
+
+    private static IndexExtractor query(Connection connection, MetadataWatchdog watchdog, String sql, String schema,
+                                        List<String> tablePatterns) throws SQLException
+    {
+        // Inside a transaction a failed query would abort it (PostgreSQL); undo just the query
+        Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+        try
+        {
+            IndexExtractor result = new IndexExtractor();
+            try (PreparedStatement statement = connection.prepareStatement(sql))
+            {
+                if (watchdog != null)
+                {
+                    watchdog.applyTimeout(statement);
+                }
+                statement.setFetchSize(1000);
+                statement.setString(1, schema);
+                bindTablePatterns(statement, tablePatterns);
+
+                try (ResultSet rs = statement.executeQuery())
+                {
+                    while (rs.next())
+                    {
+                        result.add(rs.getString(1), new IndexColumn(rs.getString(2), rs.getInt(3) != 0,
+                            rs.getInt(4) != 0, rs.getString(5), rs.getInt(6)));
+                    }
+                }
+            }
+
+            if (savepoint != null)
+            {
+                connection.releaseSavepoint(savepoint);
+            }
+            return result;
+        }
+        catch (SQLException e)
+        {
+            if (savepoint != null)
+            {
+                try
+                {
+                    connection.rollback(savepoint);
+                }
+                catch (SQLException rollback)
+                {
+                    e.addSuppressed(rollback);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private void add(String table, IndexColumn column)
+    {
+        List<IndexColumn> columns = tables.get(table);
+        if (columns == null)
+        {
+            columns = new ArrayList<>(2);
+            tables.put(table, columns);
+        }
+        columns.add(column);
+        rows++;
+    }
+
+    /**
+     * Number of tables that have indexes
+     */
+    public int tableCount()
+    {
+        return tables.size();
+    }
+
+    /**
+     * Number of index columns read
+     */
+    public int columnCount()
+    {
+        return rows;
+    }
+
+    /**
+     * Add the indexes read for the schema to one of its tables
+     */
+    public void apply(CatalogModel.Table table)
+    {
+        List<IndexColumn> columns = tables.get(table.getName());
+        if (columns != null)
+        {
+            addIndexes(table, columns);
+        }
+    }
+
+    /**
+     * Read the indexes of one table with getIndexInfo. approximate=true lets
+     * the driver use cached statistics instead of recomputing them.
+     */
+    public static void readTable(DatabaseMetaData metaData, String catalog, String schema,
+                                 CatalogModel.Table table) throws SQLException
+    {
+        List<IndexColumn> columns = new ArrayList<>();
+        ResultSet indexRs = metaData.getIndexInfo(catalog, schema, table.getName(), false, true);
+
+        try
+        {
+            while (indexRs.next())
+            {
+                if (indexRs.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic)
+                {
+                    continue;
+                }
+
+                String indexName = indexRs.getString("INDEX_NAME");
+                if (indexName == null)
+                {
+                    continue;
+                }
+
+                // A filter makes the index partial: mark it so it is left out
+                String column = indexRs.getString("FILTER_CONDITION") == null ? indexRs.getString("COLUMN_NAME") : null;
+                columns.add(new IndexColumn(indexName, !indexRs.getBoolean("NON_UNIQUE"), false,
+                    column, indexRs.getInt("ORDINAL_POSITION")));
+            }
+        }
+        finally
+        {
+            indexRs.close();
+        }
+
+        addIndexes(table, columns);
+    }
+
+    /**
+     * Add complete indexes (all columns known) except the primary key index
+     */
+    private static void addIndexes(CatalogModel.Table table, List<IndexColumn> columns)
+    {
+        Set<String> incomplete = new HashSet<>();
+        for (IndexColumn column : columns)
+        {
+            if (column.column == null) incomplete.add(column.index);
+        }
+
+        for (IndexColumn column : columns)
+        {
+            if (incomplete.contains(column.index)) continue;
+            table.index(column.index, column.unique, column.constraint).addColumn(column.column, column.position);
+        }
+
+        table.dropPrimaryKeyIndex();
+    }
+}
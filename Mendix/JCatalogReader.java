@@ -0,0 +1,231 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Reads a .jcatalog file into CatalogModel instances (one per catalog).
+ *
+ * Table references ("ref", written by CatalogMerger) are resolved to a copy of
+ * the table stored earlier in the file with that content hash.
+ *
+ * @author CaseTalk Integration
+ * @version 1.0
+ */
+public class JCatalogReader
+{
+    /**
+     * Read all catalogs of a jcatalog file
+     */
+    public static List<CatalogModel> read(Path file) throws IOException
+    {
+        try (InputStream in = Files.newInputStream(file))
+        {
+            return read(new JSONObject(new JSONTokener(in)));
+        }
+    }
+
+    /**
+     * Read all catalogs of a jcatalog document
+     */
+    public static List<CatalogModel> read(Reader reader)
+    {
+        return read(new JSONObject(new JSONTokener(reader)));
+    }
+
+    static List<CatalogModel> read(JSONObject root)
+    {
+        List<CatalogModel> result = new ArrayList<>();
+
+        JSONObject connection = root.optJSONObject("connection");
+        JSONArray catalogs = connection == null ? null : connection.optJSONArray("catalogs");
+        if (catalogs == null)
+        {
+            return result;
+        }
+
+        // Content hash -> table, for the references of a merged catalog file
+        Map<String, CatalogModel.Table> shared = new HashMap<>();
+
+        for (int c = 0; c < catalogs.length(); c++)
+        {
+            JSONObject catalogJson = catalogs.getJSONObject(c);
+            CatalogModel catalog = new CatalogModel(catalogJson.optString("name", null));
+
+            JSONArray schemas = catalogJson.optJSONArray("schemas");
+            for (int s = 0; schemas != null && s < schemas.length(); s++)
+            {
+                readSchema(catalog, schemas.getJSONObject(s), shared);
+            }
+
+            result.add(catalog);
+        }
+
+        return result;
+    }
+
+    private static void readSchema(CatalogModel catalog, JSONObject schemaJson, Map<String, CatalogModel.Table> shared)
+    {
+        CatalogModel.Schema schema = catalog.addSchema(schemaJson.optString("name", null));
+
+        JSONArray tables = schemaJson.optJSONArray("tables");
+        for (int t = 0; tables != null && t < tables.length(); t++)
+        {
+            readTable(schema, tables.getJSONObject(t), shared);
+        }
+
+        readSchemaDetails(schema, schemaJson);
+    }
+
+    /**
+     * Read the associations and skipped tables of a schema
+     */
+    static void readSchemaDetails(CatalogModel.Schema schema, JSONObject schemaJson)
+    {
+        JSONArray associations = schemaJson.optJSONArray("associations");
+        for (int a = 0; associations != null && a < associations.length(); a++)
+        {
+            JSONObject assocJson = associations.getJSONObject(a);
+            CatalogModel.Association association = schema.addAssociation(assocJson.optString("junctionTable", null));
+            association.type = assocJson.optString("type", association.type);
+            association.name = assocJson.optString("name", null);
+            association.entity1 = assocJson.optString("entity1", null);
+            association.entity2 = assocJson.optString("entity2", null);
+        }
+
+        schema.setSkipped(schemaJson.optString("skipped", null));
+        JSONArray skippedTables = schemaJson.optJSONArray("skippedTables");
+        for (int i = 0; skippedTables != null && i < skippedTables.length(); i++)
+        {
+            JSONObject skipped = skippedTables.getJSONObject(i);
+            schema.addSkippedTable(skipped.optString("name", null), skipped.optString("reason", null));
+        }
+    }
+
+    /**
+     * Read a table into the schema. A table with a "hash" is registered in
+     * shared (may be null); a "ref" is resolved from it.
+     */
+    static CatalogModel.Table readTable(CatalogModel.Schema schema, JSONObject tableJson,
+                                        Map<String, CatalogModel.Table> shared)
+    {
+        CatalogModel.Table table = schema.addTable(tableJson.optString("name", null));
+
+        String ref = tableJson.optString("ref", null);
+        if (ref != null)
+        {
+            CatalogModel.Table original = shared == null ? null : shared.get(ref);
+            if (original == null)
+            {
+                throw new IllegalArgumentException("Table " + table.getName() + " refers to unknown table " + ref);
+            }
+            table.copyFrom(original);
+            return table;
+        }
+
+        table.setAnnotation(tableJson.optString("annotation", null));
+
+        JSONArray columns = tableJson.optJSONArray("columns");
+        for (int i = 0; columns != null && i < columns.length(); i++)
+        {
+            JSONObject columnJson = columns.getJSONObject(i);
+            JSONObject metadata = columnJson.optJSONObject("metadata");
+            if (metadata == null)
+            {
+                metadata = new JSONObject();
+            }
+
+            table.addColumn(
+                columnJson.optString("name", null),
+                metadata.optString("type", null),
+                metadata.optInt("size", 0),
+                metadata.optBoolean("nullable", false),
+                metadata.optString("annotation", null),
+                metadata.optString("default", null));
+        }
+
+        JSONObject primaryKey = tableJson.optJSONObject("primarykey");
+        JSONArray pkColumns = primaryKey == null ? null : primaryKey.optJSONArray("columns");
+        for (int i = 0; pkColumns != null && i < pkColumns.length(); i++)
+        {
+            JSONObject pkColumn = pkColumns.getJSONObject(i);
+            table.addPrimaryKeyColumn(pkColumn.optString("column", null), position(pkColumn, i));
+        }
+
+        JSONArray foreignKeys = tableJson.optJSONArray("foreignkeys");
+        for (int f = 0; foreignKeys != null && f < foreignKeys.length(); f++)
+        {
+            JSONObject fkJson = foreignKeys.getJSONObject(f);
+            CatalogModel.ForeignKey fk = table.foreignKey(fkJson.optString("name", null),
+                fkJson.optString("referencedSchema", null), fkJson.optString("referencedTable", null));
+
+            JSONArray fkColumns = fkJson.optJSONArray("columns");
+            for (int i = 0; fkColumns != null && i < fkColumns.length(); i++)
+            {
+                JSONObject fkColumn = fkColumns.getJSONObject(i);
+                fk.addColumn(fkColumn.optString("column", null),
+                    fkColumn.optString("referencedColumn", null), position(fkColumn, i));
+            }
+        }
+
+        JSONArray indexes = tableJson.optJSONArray("indexes");
+        for (int x = 0; indexes != null && x < indexes.length(); x++)
+        {
+            JSONObject indexJson = indexes.getJSONObject(x);
+            CatalogModel.Index index = table.index(indexJson.optString("name", null),
+                indexJson.optBoolean("unique", false), indexJson.optBoolean("constraint", false));
+
+            JSONArray indexColumns = indexJson.optJSONArray("columns");
+            for (int i = 0; indexColumns != null && i < indexColumns.length(); i++)
+            {
+                JSONObject indexColumn = indexColumns.getJSONObject(i);
+                index.addColumn(indexColumn.optString("column", null), position(indexColumn, i));
+            }
+        }
+
+        String hash = tableJson.optString("hash", null);
+        if (hash != null && shared != null)
+        {
+            shared.put(hash, table);
+        }
+        return table;
+    }
+
+    /**
+     * Key positions are written as strings ("1") but accept numbers as well
+     */
+    private static int position(JSONObject keyColumn, int index)
+    {
+        Object position = keyColumn.opt("position");
+        if (position instanceof Number)
+        {
+            return ((Number) position).intValue();
+        }
+
+        try
+        {
+            return Integer.parseInt(String.valueOf(position));
+        }
+        catch (NumberFormatException e)
+        {
+            return index + 1;
+        }
+    }
+
+    /**
+     * Check whether a file is a jcatalog by its extension
+     */
+    static boolean isJCatalog(Path file)
+    {
+        return file.getFileName().toString().toLowerCase().endsWith(".jcatalog");
+    }
+}
@@ -0,0 +1,375 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.json.JSONObject;
+
+/**
+ * Streams a CatalogModel as pretty-printed jcatalog JSON (4-space indent).
+ *
+ * The JSON is written directly from the compact model, so no JSONObject tree
+ * is built for the catalog. Keys are written in the order used by the example
+ * jcatalog files.
+ *
+ * A table can carry its content hash ("hash"), and a table that is stored
+ * elsewhere in the file can be written as a reference to that hash ("ref");
+ * see CatalogMerger.
+ *
+ * In canonical mode (setCanonical) the catalog is first put in a fixed order
+ * (CatalogModel.canonicalize), and every table and schema is written with its
+ * content hash. Two exports of an unchanged database are then identical, and
+ * a downstream system can compare the hashes to skip unchanged schemas and
+ * tables.
+ *
+ * @author CaseTalk Integration
+ * @version 1.0
+ */
+public class JCatalogWriter
+{
+    private static final String INDENT = "    ";
+
+    private final Writer out;
+    private int depth;
+    private boolean canonical;
+
+    // Whether the current object/array already has a member (needs a comma)
+    private boolean[] hasMember = new boolean[32];
+
+    public JCatalogWriter(Writer out)
+    {
+        this.out = out;
+    }
+
+    /**
+     * Canonical output: stable order plus table and schema content hashes
+     */
+    public void setCanonical(boolean canonical)
+    {
+        this.canonical = canonical;
+    }
+
+    /**
+     * Write the complete jcatalog document
+     */
+    public void write(CatalogModel model) throws IOException
+    {
+        write(Collections.singletonList(model));
+    }
+
+    /**
+     * Write a jcatalog document containing several catalogs
+     */
+    public void write(List<CatalogModel> models) throws IOException
+    {
+        beginDocument();
+
+        for (CatalogModel model : models)
+        {
+            if (canonical)
+            {
+                model.canonicalize();
+            }
+
+            beginObject(null);
+            value("name", model.name);
+            if (model.isPartial())
+            {
+                raw("partial", "true");
+            }
+            beginArray("schemas");
+            for (CatalogModel.Schema schema : model.schemas)
+            {
+                writeSchema(schema);
+            }
+            endArray();
+            endObject();
+        }
+
+        endDocument();
+    }
+
+    /**
+     * Open the document and its catalogs array
+     */
+    void beginDocument() throws IOException
+    {
+        beginObject(null);
+        beginObject("connection");
+        beginArray("catalogs");
+    }
+
+    /**
+     * Close the catalogs array and the document
+     */
+    void endDocument() throws IOException
+    {
+        endArray();
+        endObject();
+        endObject();
+        out.flush();
+    }
+
+    private void writeSchema(CatalogModel.Schema schema) throws IOException
+    {
+        // The table hashes are computed while writing; the schema hash needs them all
+        String[] hashes = new String[schema.tables.size()];
+        if (canonical)
+        {
+            for (int i = 0; i < hashes.length; i++)
+            {
+                hashes[i] = schema.tables.get(i).contentHash();
+            }
+        }
+
+        beginObject(null);
+        value("name", schema.name);
+        value("hash", canonical ? schema.contentHash(hashes) : null);
+
+        beginArray("tables");
+        for (int i = 0; i < hashes.length; i++)
+        {
+            writeTable(schema.tables.get(i), hashes[i]);
+        }
+        endArray();
+
+        writeSchemaDetails(schema);
+        endObject();
+    }
+
+    /**
+     * Write the associations and skipped tables of a schema
+     */
+    void writeSchemaDetails(CatalogModel.Schema schema) throws IOException
+    {
+        if (!schema.associations.isEmpty())
+        {
+            beginArray("associations");
+            for (CatalogModel.Association association : schema.associations)
+            {
+                beginObject(null);
+                value("type", association.type);
+                value("junctionTable", association.junctionTable);
+                value("name", association.name);
+                value("entity1", association.entity1);
+                value("entity2", association.entity2);
+                endObject();
+            }
+            endArray();
+        }
+
+        value("skipped", schema.skippedReason);
+        if (!schema.skippedTables.isEmpty())
+        {
+            beginArray("skippedTables");
+            for (CatalogModel.SkippedTable skipped : schema.skippedTables)
+            {
+                beginObject(null);
+                value("name", skipped.name);
+                value("reason", skipped.reason);
+                endObject();
+            }
+            endArray();
+        }
+    }
+
+    /**
+     * Write a table reference: a table with the same content as the table
+     * written earlier with this hash
+     */
+    void writeTableReference(String name, String hash) throws IOException
+    {
+        beginObject(null);
+        value("name", name);
+        value("ref", hash);
+        endObject();
+    }
+
+    /**
+     * Write a table, with its content hash if one is given
+     */
+    void writeTable(CatalogModel.Table table, String hash) throws IOException
+    {
+        beginObject(null);
+        value("name", table.name);
+        value("hash", hash);
+        value("annotation", table.annotation);
+
+        beginArray("columns");
+        for (int i = 0; i < table.columnCount; i++)
+        {
+            beginObject(null);
+            value("name", table.getColumnName(i));
+            beginObject("metadata");
+            value("type", table.getColumnType(i));
+            raw("size", Integer.toString(table.getColumnSize(i)));
+            raw("nullable", table.isColumnNullable(i) ? "true" : "false");
+            value("annotation", table.getColumnAnnotation(i));
+            value("default", table.getColumnDefault(i));
+            endObject();
+            endObject();
+        }
+        endArray();
+
+        if (table.pkCount > 0)
+        {
+            beginObject("primarykey");
+            beginArray("columns");
+            for (int i = 0; i < table.pkCount; i++)
+            {
+                beginObject(null);
+                value("column", table.getPrimaryKeyColumn(i));
+                value("position", String.valueOf(table.getPrimaryKeyPosition(i)));
+                endObject();
+            }
+            endArray();
+            endObject();
+        }
+
+        if (!table.foreignKeys.isEmpty())
+        {
+            beginArray("foreignkeys");
+            for (CatalogModel.ForeignKey fk : table.foreignKeys)
+            {
+                beginObject(null);
+                value("name", fk.name);
+                value("referencedTable", fk.getReferencedTable());
+                value("referencedSchema", fk.getReferencedSchema());
+                beginArray("columns");
+                for (int i = 0; i < fk.columnCount; i++)
+                {
+                    beginObject(null);
+                    value("column", fk.getColumn(i));
+                    value("referencedColumn", fk.getReferencedColumn(i));
+                    value("position", String.valueOf(fk.getPosition(i)));
+                    endObject();
+                }
+                endArray();
+                endObject();
+            }
+            endArray();
+        }
+
+        if (!table.indexes.isEmpty())
+        {
+            beginArray("indexes");
+            for (CatalogModel.Index index : table.indexes)
+            {
+                beginObject(null);
+                value("name", index.name);
+                raw("unique", index.unique ? "true" : "false");
+                if (index.constraint)
+                {
+                    raw("constraint", "true");
+                }
+                beginArray("columns");
+                for (int i = 0; i < index.columnCount; i++)
+                {
+                    beginObject(null);
+                    value("column", index.getColumn(i));
+                    value("position", String.valueOf(index.getPosition(i)));
+                    endObject();
+                }
+                endArray();
+                endObject();
+            }
+            endArray();
+        }
+
+        endObject();
+    }
+
+    // --- Low-level JSON output ---
+
+    /**
+     * Write a string member; null values are omitted, as org.json does
+     */
+    void value(String key, String value) throws IOException
+    {
+        if (value == null) return;
+        raw(key, JSONObject.quote(value));
+    }
+
+    void raw(String key, String json) throws IOException
+    {
+        member(key);
+        out.write(json);
+    }
+
+    void beginObject(String key) throws IOException
+    {
+        member(key);
+        out.write('{');
+        push();
+    }
+
+    void endObject() throws IOException
+    {
+        pop();
+        out.write('}');
+    }
+
+    void beginArray(String key) throws IOException
+    {
+        member(key);
+        out.write('[');
+        push();
+    }
+
+    void endArray() throws IOException
+    {
+        pop();
+        out.write(']');
+    }
+
+    /**
+     * Start a new member of the current container: separator, newline, indent and key
+     */
+    private void member(String key) throws IOException
+    {
+        if (depth == 0) return;
+
+        if (hasMember[depth])
+        {
+            out.write(',');
+        }
+        hasMember[depth] = true;
+
+        newline();
+        if (key != null)
+        {
+            out.write(JSONObject.quote(key));
+            out.write(": ");
+        }
+    }
+
+    private void push()
+    {
+        depth++;
+        if (depth == hasMember.length)
+        {
+            hasMember = Arrays.copyOf(hasMember, depth * 2);
+        }
+        hasMember[depth] = false;
+    }
+
+    private void pop() throws IOException
+    {
+        boolean nonEmpty = hasMember[depth];
+        depth--;
+        if (nonEmpty)
+        {
+            newline();
+        }
+    }
+
+    private void newline() throws IOException
+    {
+        out.write('\n');
+        for (int i = 0; i < depth; i++)
+        {
+            out.write(INDENT);
+        }
+    }
+}
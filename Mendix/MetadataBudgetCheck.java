@@ -0,0 +1,1086 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+
+/**
+ * Regression check for the metadata round trips and heap allocation of the exporters.
+ *
+ * Runs each exporter against generated schemas of several sizes through a
+ * call-counting DatabaseMetaData wrapper and compares the number of metadata
+ * round trips and the allocated bytes per table against an explicit budget.
+ * The process exits with status 1 when any budget is exceeded, so it can be
+ * used as a build step that fails when a change makes extraction scale worse.
+ *
+ * Usage:
+ *   java MetadataBudgetCheck [tablesPerSchema...]
+ *
+ * Example:
+ *   java -cp ".;json-20231013.jar" MetadataBudgetCheck 10 100 1000
+ *
+ * The Mendix Java Action is only checked when the Mendix runtime API is on the
+ * classpath; otherwise it is reported as skipped.
+ *
+ * It also checks that AdaptiveThrottle, with its default options, lowers the
+ * call rate when a stand-in database becomes slower than the target latency,
+ * and that an export of selected modules reads no tables of other modules.
+ * Finally it checks that the Java Action, which keeps its own copy of the
+ * model, the writer and the index queries, writes the same jcatalog as
+ * StandaloneMendixExporter.
+ *
+ * @author CaseTalk Integration
+ * @version 1.0
+ */
+public class MetadataBudgetCheck
+{
+    private static final int SCHEMAS = 2;
+    private static final int[] DEFAULT_SIZES = {10, 100, 1000};
+
+    /**
+     * Round trip and allocation budget per exporter.
+     *
+     * Round trips are budgeted per kind of call: the calls of a kind may not exceed
+     *   perExport + perSchema * schemas + perTable * tables
+     * and a kind without a budget may not be called at all. The marginal
+     * allocation per table may not exceed bytesPerTable.
+     *
+     * What can be read for a whole schema (the table list, the dialect index
+     * query) is budgeted per schema only. Only getColumns, getPrimaryKeys and
+     * getImportedKeys, which JDBC answers per table, have a per-table budget, so
+     * any new per-table call fails the check even where the total would fit.
+     *
+     * The synthetic database reports the product of the budget and answers its
+     * bulk queries: for PostgreSQL the dialect index query of the exporters, for
+     * Oracle also the data dictionary queries of OracleDictionary, which leave
+     * no per-table calls at all.
+     */
+    private static final Budget[] BUDGETS = {
+        new Budget("StandaloneMendixExporter", "PostgreSQL", 8 * 1024)
+            .calls("getSchemas", 1, 0, 0)
+            .calls("getTables", 0, 1, 0)
+            .calls("SQL pg_catalog.pg_index", 0, 1, 0)
+            .calls("getColumns", 0, 0, 1)
+            .calls("getPrimaryKeys", 0, 0, 1)
+            .calls("getImportedKeys", 0, 0, 1),
+        new Budget("ExportMendixMetadata", "PostgreSQL", 8 * 1024)
+            .calls("getSchemas", 1, 0, 0)
+            .calls("getTables", 0, 1, 0)
+            .calls("SQL pg_catalog.pg_index", 0, 1, 0)
+            .calls("getColumns", 0, 0, 1)
+            .calls("getPrimaryKeys", 0, 0, 1)
+            .calls("getImportedKeys", 0, 0, 1),
+        new Budget("StandaloneMendixExporter", "Oracle", 8 * 1024)
+            .calls("getSchemas", 1, 0, 0)
+            .calls("SQL ALL_TABLES", 0, 1, 0)
+            .calls("SQL ALL_TAB_COLUMNS", 0, 2, 0) // columns, then the defaults
+            .calls("SQL ALL_CONSTRAINTS", 0, 1, 0)
+            .calls("SQL ALL_INDEXES", 0, 1, 0)
+    };
+
+    public static void main(String[] args) throws Exception
+    {
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 0)
+        {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+            {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+            Arrays.sort(sizes);
+        }
+
+        int failures = 0;
+        for (Budget budget : BUDGETS)
+        {
+            ExportRun run = exporterFor(budget);
+            if (run == null)
+            {
+                System.out.println(budget.exporter + " (" + budget.product + "): skipped (Mendix runtime API not on classpath)");
+                continue;
+            }
+
+            failures += check(budget, run, sizes);
+        }
+
+        failures += checkThrottle();
+        failures += checkModules();
+        failures += checkSameOutput();
+
+        if (failures > 0)
+        {
+            System.err.println(failures + " budget violation(s)");
+            System.exit(1);
+        }
+
+        System.out.println("All metadata budgets met");
+    }
+
+    /**
+     * Run one exporter against every schema size and compare with its budget
+     */
+    private static int check(Budget budget, ExportRun run, int[] sizes) throws Exception
+    {
+        int failures = 0;
+
+        System.out.println(budget.exporter + " (" + budget.product + "):");
+
+        // Warm up once so class loading does not count towards the allocation budget
+        measure(run, new SyntheticDatabase(SCHEMAS, sizes[0], budget.product));
+
+        long[] allocated = new long[sizes.length];
+        for (int i = 0; i < sizes.length; i++)
+        {
+            SyntheticDatabase db = new SyntheticDatabase(SCHEMAS, sizes[i], budget.product);
+            Measurement m = measure(run, db);
+            allocated[i] = m.allocatedBytes;
+
+            int tables = db.tableCount();
+            long allowed = budget.allowedCalls(SCHEMAS, tables);
+
+            System.out.println(String.format("  %6d tables: %7d round trips (budget %7d) %s",
+                tables, m.calls, allowed, m.callsByMethod));
+
+            Set<String> calls = new TreeSet<>(m.callsByMethod.keySet());
+            calls.addAll(budget.calls.keySet());
+            for (String call : calls)
+            {
+                Integer made = m.callsByMethod.get(call);
+                long callsAllowed = budget.allowedCalls(call, SCHEMAS, tables);
+                if (made != null && made > callsAllowed)
+                {
+                    System.err.println("  BUDGET EXCEEDED: " + budget.exporter + " made " + made + " " + call
+                        + " calls for " + tables + " tables in " + SCHEMAS + " schemas, budget is " + callsAllowed);
+                    failures++;
+                }
+            }
+        }
+
+        if (sizes.length > 1 && allocated[0] >= 0)
+        {
+            int first = SCHEMAS * sizes[0];
+            int last = SCHEMAS * sizes[sizes.length - 1];
+            long perTable = (allocated[sizes.length - 1] - allocated[0]) / Math.max(1, last - first);
+
+            System.out.println(String.format("  heap per table: %d bytes (budget %d)", perTable, budget.bytesPerTable));
+
+            if (perTable > budget.bytesPerTable)
+            {
+                System.err.println("  BUDGET EXCEEDED: " + budget.exporter + " allocates " + perTable
+                    + " bytes per table, budget is " + budget.bytesPerTable);
+                failures++;
+            }
+        }
+        else if (allocated[0] < 0)
+        {
+            System.out.println("  heap per table: not measured (thread allocation counters unavailable)");
+        }
+
+        return failures;
+    }
+
+    /**
+     * Sequential calls against a stand-in database that answers in 2 ms and then
+     * slows down to 40 ms (target 20 ms). The paced rate must drop to about the
+     * 50% duty cycle of the slow database, and the slow calls must be spaced out.
+     */
+    private static int checkThrottle() throws Exception
+    {
+        final AdaptiveThrottle throttle = new AdaptiveThrottle(20, 4, 0);
+        final long[] latency = {2};
+        Callable<Void> call = new Callable<Void>()
+        {
+            @Override
+            public Void call() throws InterruptedException
+            {
+                Thread.sleep(latency[0]);
+                return null;
+            }
+        };
+
+        for (int i = 0; i < 30; i++)
+        {
+            throttle.call(call);
+        }
+        double fastRate = throttle.getCallsPerSecond();
+
+        latency[0] = 40;
+        int slowCalls = 20;
+        long start = System.nanoTime();
+        for (int i = 0; i < slowCalls; i++)
+        {
+            throttle.call(call);
+        }
+        double slowRate = throttle.getCallsPerSecond();
+        double achievedRate = slowCalls * 1e9 / (System.nanoTime() - start);
+
+        System.out.println("AdaptiveThrottle:");
+        System.out.println(String.format("  fast database: %.0f calls/s, slow database: %.0f calls/s (achieved %.1f)",
+            fastRate, slowRate, achievedRate));
+
+        // One connection back to back would do 25 calls/s against the slow database
+        if (slowRate > 15 || achievedRate > 20 || slowRate >= fastRate / 4)
+        {
+            System.err.println("  THROTTLE DID NOT BACK OFF: rate " + slowRate + " calls/s after the database slowed down");
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Export one of two modules from PostgreSQL and through the Oracle
+     * dictionary: no call or bulk query may return rows of the other module
+     */
+    private static int checkModules() throws Exception
+    {
+        int failures = 0;
+        System.out.println("Selected modules:");
+
+        for (String product : new String[] {"PostgreSQL", "Oracle"})
+        {
+            SyntheticDatabase db = new SyntheticDatabase(SCHEMAS, 50, product).withModule("crm", 50);
+            final StandaloneMendixExporter exporter = new StandaloneMendixExporter();
+            exporter.setOracleDictionary("Oracle".equals(product));
+            exporter.setModules(Collections.singletonList("shop"));
+
+            measure(new ExportRun()
+            {
+                @Override
+                public void export(Connection conn) throws Exception
+                {
+                    exporter.generateJCatalog(conn);
+                }
+            }, db);
+
+            int otherModule = 0;
+            for (String table : db.tablesRead)
+            {
+                if (table.startsWith("crm$")) otherModule++;
+            }
+            System.out.println(String.format("  %s: %d table(s) read, %d of the other module",
+                product, db.tablesRead.size(), otherModule));
+
+            if (otherModule > 0 || db.tablesRead.isEmpty())
+            {
+                System.err.println("  OTHER MODULE FETCHED: " + otherModule + " crm$ table(s) read for --modules=shop on "
+                    + product);
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * The Java Action cannot use the default package classes from its Mendix
+     * package, so it keeps its own model, jcatalog writer and dialect index
+     * queries. Its index queries must equal those of IndexExtractor, and both
+     * exporters must write the same jcatalog for the same database (entity
+     * tables only: the action keeps junction tables as tables).
+     */
+    private static int checkSameOutput() throws Exception
+    {
+        final Class<?> actionClass;
+        final Object action;
+        try
+        {
+            actionClass = Class.forName("mendix.actions.ExportMendixMetadata");
+            Class<?> contextClass = Class.forName("com.mendix.systemwideinterfaces.core.IContext");
+            action = actionClass.getConstructor(contextClass, String.class, Boolean.class)
+                .newInstance(null, null, Boolean.FALSE);
+        }
+        catch (ClassNotFoundException | NoClassDefFoundError e)
+        {
+            System.out.println("Same output: skipped (Mendix runtime API not on classpath)");
+            return 0;
+        }
+
+        int failures = 0;
+        System.out.println("Same output:");
+
+        String[][] queries = {
+            {"INDEXES_POSTGRESQL", "PostgreSQL"},
+            {"INDEXES_SQLSERVER", "Microsoft SQL Server"},
+            {"INDEXES_MYSQL", "MySQL"},
+            {"INDEXES_ORACLE", "Oracle"}
+        };
+        for (String[] query : queries)
+        {
+            Field field = actionClass.getDeclaredField(query[0]);
+            field.setAccessible(true);
+            if (!field.get(null).equals(IndexExtractor.dialectQuery(query[1], null)))
+            {
+                System.err.println("  OUTPUT DIFFERS: " + query[0] + " of the Java Action is not the "
+                    + query[1] + " query of IndexExtractor");
+                failures++;
+            }
+        }
+        System.out.println("  index queries: " + (queries.length - failures) + " of " + queries.length + " equal");
+
+        final Method generate = actionClass.getDeclaredMethod("generateJCatalog", Connection.class);
+        final Method write = actionClass.getDeclaredMethod("writeJCatalog", Writer.class,
+            Class.forName("mendix.actions.ExportMendixMetadata$CatalogData"));
+        generate.setAccessible(true);
+        write.setAccessible(true);
+
+        // "H2" has no dialect index query: both read getIndexInfo per table
+        for (String product : new String[] {"PostgreSQL", "Oracle", "H2"})
+        {
+            final StringWriter standaloneOut = new StringWriter();
+            final StringWriter actionOut = new StringWriter();
+
+            measure(new ExportRun()
+            {
+                @Override
+                public void export(Connection conn) throws Exception
+                {
+                    new JCatalogWriter(standaloneOut).write(new StandaloneMendixExporter().generateJCatalog(conn));
+                }
+            }, new SyntheticDatabase(SCHEMAS, 0, product).withModule("shop", 50));
+
+            measure(new ExportRun()
+            {
+                @Override
+                public void export(Connection conn) throws Exception
+                {
+                    try
+                    {
+                        write.invoke(action, actionOut, generate.invoke(action, conn));
+                    }
+                    catch (InvocationTargetException e)
+                    {
+                        throw (Exception) e.getCause();
+                    }
+                }
+            }, new SyntheticDatabase(SCHEMAS, 0, product).withModule("shop", 50));
+
+            String[] expected = standaloneOut.toString().split("\n", -1);
+            String[] actual = actionOut.toString().split("\n", -1);
+            int line = 0;
+            while (line < expected.length && line < actual.length && expected[line].equals(actual[line]))
+            {
+                line++;
+            }
+
+            if (line < expected.length || line < actual.length)
+            {
+                System.err.println("  OUTPUT DIFFERS: " + product + " line " + (line + 1) + ": StandaloneMendixExporter "
+                    + (line < expected.length ? expected[line].trim() : "<end>") + ", ExportMendixMetadata "
+                    + (line < actual.length ? actual[line].trim() : "<end>"));
+                failures++;
+            }
+            else
+            {
+                System.out.println(String.format("  %s: %d lines, identical", product, expected.length));
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Run an export with the exporter's console output suppressed
+     */
+    private static Measurement measure(ExportRun run, SyntheticDatabase db) throws Exception
+    {
+        CountingHandler counter = new CountingHandler(db.metaData());
+        Connection conn = counter.wrap(db.connection());
+
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream()
+        {
+            @Override
+            public void write(int b)
+            {
+                // Discard progress output
+            }
+        }));
+
+        long before = allocatedBytes();
+        try
+        {
+            run.export(conn);
+        }
+        finally
+        {
+            System.setOut(out);
+        }
+        long after = allocatedBytes();
+
+        Measurement m = new Measurement();
+        m.calls = counter.total;
+        m.callsByMethod = counter.calls;
+        m.allocatedBytes = before < 0 ? -1 : after - before;
+        return m;
+    }
+
+    /**
+     * Bytes allocated by the current thread, or -1 if the JVM does not report it
+     */
+    private static long allocatedBytes()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+            {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Look up the export entry point for an exporter, or null if it cannot run here
+     */
+    private static ExportRun exporterFor(Budget budget)
+    {
+        String exporter = budget.exporter;
+        if ("StandaloneMendixExporter".equals(exporter))
+        {
+            final StandaloneMendixExporter standalone = new StandaloneMendixExporter();
+            standalone.setOracleDictionary("Oracle".equals(budget.product));
+            return new ExportRun()
+            {
+                @Override
+                public void export(Connection conn) throws Exception
+                {
+                    standalone.generateJCatalog(conn);
+                }
+            };
+        }
+
+        try
+        {
+            // The Java Action lives in a Mendix package and needs the Mendix runtime API to load
+            Class<?> actionClass = Class.forName("mendix.actions.ExportMendixMetadata");
+            Class<?> contextClass = Class.forName("com.mendix.systemwideinterfaces.core.IContext");
+            Constructor<?> constructor = actionClass.getConstructor(contextClass, String.class, Boolean.class);
+            final Object action = constructor.newInstance(null, null, Boolean.FALSE);
+            final Method generate = actionClass.getDeclaredMethod("generateJCatalog", Connection.class);
+            generate.setAccessible(true);
+
+            return new ExportRun()
+            {
+                @Override
+                public void export(Connection conn) throws Exception
+                {
+                    try
+                    {
+                        generate.invoke(action, conn);
+                    }
+                    catch (InvocationTargetException e)
+                    {
+                        throw (Exception) e.getCause();
+                    }
+                }
+            };
+        }
+        catch (ClassNotFoundException | NoClassDefFoundError e)
+        {
+            return null;
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("Cannot invoke " + exporter, e);
+        }
+    }
+
+    /**
+     * Export entry point of one exporter
+     */
+    private interface ExportRun
+    {
+        void export(Connection conn) throws Exception;
+    }
+
+    /**
+     * Result of a single export run
+     */
+    private static class Measurement
+    {
+        int calls;
+        Map<String, Integer> callsByMethod;
+        long allocatedBytes;
+    }
+
+    /**
+     * Round trip and allocation budget of one exporter
+     */
+    private static class Budget
+    {
+        final String exporter;
+        final String product;
+        final long bytesPerTable;
+
+        // Kind of call -> {perExport, perSchema, perTable}
+        final Map<String, int[]> calls = new LinkedHashMap<>();
+
+        Budget(String exporter, String product, long bytesPerTable)
+        {
+            this.exporter = exporter;
+            this.product = product;
+            this.bytesPerTable = bytesPerTable;
+        }
+
+        Budget calls(String call, int perExport, int perSchema, int perTable)
+        {
+            calls.put(call, new int[] {perExport, perSchema, perTable});
+            return this;
+        }
+
+        long allowedCalls(String call, int schemas, int tables)
+        {
+            int[] budget = calls.get(call);
+            return budget == null ? 0 : budget[0] + (long) budget[1] * schemas + (long) budget[2] * tables;
+        }
+
+        long allowedCalls(int schemas, int tables)
+        {
+            long allowed = 0;
+            for (String call : calls.keySet())
+            {
+                allowed += allowedCalls(call, schemas, tables);
+            }
+            return allowed;
+        }
+    }
+
+    /**
+     * DatabaseMetaData wrapper that counts every call returning a ResultSet
+     * (each of those is a round trip to the database), and every executed
+     * query, counted as "SQL <first table>"
+     */
+    static class CountingHandler implements InvocationHandler
+    {
+        private final DatabaseMetaData target;
+        private Connection connectionProxy;
+        private DatabaseMetaData metaDataProxy;
+
+        final Map<String, Integer> calls = new TreeMap<>();
+        int total;
+
+        CountingHandler(DatabaseMetaData target)
+        {
+            this.target = target;
+        }
+
+        /**
+         * Wrap a connection so that getMetaData() hands out the counting wrapper
+         */
+        Connection wrap(final Connection conn)
+        {
+            metaDataProxy = (DatabaseMetaData) Proxy.newProxyInstance(
+                DatabaseMetaData.class.getClassLoader(), new Class<?>[] {DatabaseMetaData.class}, this);
+
+            connectionProxy = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[] {Connection.class}, new InvocationHandler()
+                {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+                    {
+                        if ("getMetaData".equals(method.getName()))
+                        {
+                            return metaDataProxy;
+                        }
+                        if ("prepareStatement".equals(method.getName()))
+                        {
+                            return countQueries((PreparedStatement) forward(conn, method, args), (String) args[0]);
+                        }
+                        return forward(conn, method, args);
+                    }
+                });
+
+            return connectionProxy;
+        }
+
+        private PreparedStatement countQueries(final PreparedStatement statement, String sql)
+        {
+            final String label = "SQL " + sql.replaceFirst("(?s).*? FROM (\\S+).*", "$1");
+
+            return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(), new Class<?>[] {PreparedStatement.class}, new InvocationHandler()
+                {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+                    {
+                        if ("executeQuery".equals(method.getName()))
+                        {
+                            count(label);
+                        }
+                        return forward(statement, method, args);
+                    }
+                });
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            if ("getConnection".equals(method.getName()))
+            {
+                return connectionProxy;
+            }
+
+            if (ResultSet.class.isAssignableFrom(method.getReturnType()))
+            {
+                count(method.getName());
+            }
+
+            return forward(target, method, args);
+        }
+
+        private void count(String call)
+        {
+            Integer count = calls.get(call);
+            calls.put(call, count == null ? 1 : count + 1);
+            total++;
+        }
+    }
+
+    /**
+     * Invoke a method on the wrapped object, unwrapping the reflective exception
+     */
+    static Object forward(Object target, Method method, Object[] args) throws Throwable
+    {
+        try
+        {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * In-memory database that answers DatabaseMetaData calls for a generated
+     * Mendix-style schema. Every tenth table is a many-to-many junction table.
+     * It reports the given product name and answers the bulk queries the
+     * exporters run for PostgreSQL and Oracle; other queries fail, as on a
+     * database without them.
+     */
+    static class SyntheticDatabase
+    {
+        private final String product;
+        private final Map<String, Map<String, SyntheticTable>> schemas = new LinkedHashMap<>();
+
+        // Tables that any call or query returned rows for
+        final Set<String> tablesRead = new TreeSet<>();
+
+        SyntheticDatabase(int schemaCount, int tablesPerSchema, String product)
+        {
+            this.product = product;
+            for (int s = 0; s < schemaCount; s++)
+            {
+                String schemaName = "app" + s;
+                Map<String, SyntheticTable> tables = new LinkedHashMap<>();
+
+                for (int i = 0; i < tablesPerSchema; i++)
+                {
+                    SyntheticTable table;
+                    if (i % 10 == 9)
+                    {
+                        table = junctionTable(schemaName, "shop$item" + (i - 1) + "_item" + (i - 2),
+                            "shop$item" + (i - 1), "shop$item" + (i - 2));
+                    }
+                    else
+                    {
+                        table = entityTable(schemaName, "shop$item" + i, i > 0 && i % 10 != 0 ? "shop$item" + (i - 1) : null);
+                    }
+                    tables.put(table.name, table);
+                }
+
+                schemas.put(schemaName, tables);
+            }
+        }
+
+        /**
+         * Add a module of entity tables to every schema
+         */
+        SyntheticDatabase withModule(String module, int tablesPerSchema)
+        {
+            for (Map.Entry<String, Map<String, SyntheticTable>> schema : schemas.entrySet())
+            {
+                for (int i = 0; i < tablesPerSchema; i++)
+                {
+                    SyntheticTable table = entityTable(schema.getKey(), module + "$lead" + i,
+                        i > 0 ? module + "$lead" + (i - 1) : null);
+                    schema.getValue().put(table.name, table);
+                }
+            }
+            return this;
+        }
+
+        int tableCount()
+        {
+            int count = 0;
+            for (Map<String, SyntheticTable> tables : schemas.values())
+            {
+                count += tables.size();
+            }
+            return count;
+        }
+
+        private SyntheticTable entityTable(String schema, String name, String parent)
+        {
+            SyntheticTable table = new SyntheticTable(schema, name, "Entity " + name);
+            table.column("id", "BIGINT", 19, false, null, null);
+            table.column("name", "VARCHAR", 200, true, "Display name", null);
+            table.column("amount", "DECIMAL", 28, true, null, "0");
+            table.column("createddate", "TIMESTAMP", 29, true, null, null);
+            table.primaryKey("id");
+            table.index(table.primaryKeyName(), true, "id");
+            table.index("ux_" + name + "_name", true, "name");
+
+            if (parent != null)
+            {
+                String fkColumn = name + "_" + parent.substring(parent.indexOf('$') + 1);
+                table.column(fkColumn, "BIGINT", 19, true, null, null);
+                table.foreignKey("fk_" + name, fkColumn, schema, parent, 1);
+            }
+            return table;
+        }
+
+        private SyntheticTable junctionTable(String schema, String name, String left, String right)
+        {
+            SyntheticTable table = new SyntheticTable(schema, name, null);
+            table.column(left + "id", "BIGINT", 19, false, null, null);
+            table.column(right + "id", "BIGINT", 19, false, null, null);
+            table.primaryKey(left + "id", right + "id");
+            table.index("ix_" + name + "_" + right, false, right + "id");
+            table.foreignKey("fk_" + name + "_1", left + "id", schema, left, 1);
+            table.foreignKey("fk_" + name + "_2", right + "id", schema, right, 1);
+            return table;
+        }
+
+        Connection connection()
+        {
+            return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[] {Connection.class}, new InvocationHandler()
+                {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                    {
+                        String name = method.getName();
+                        if ("getCatalog".equals(name)) return "budget";
+                        if ("getMetaData".equals(name)) return metaData();
+                        if ("getAutoCommit".equals(name)) return Boolean.TRUE;
+                        if ("prepareStatement".equals(name)) return statement((String) args[0]);
+                        if ("isClosed".equals(name) || "isReadOnly".equals(name)) return Boolean.FALSE;
+                        if ("close".equals(name)) return null;
+                        throw new UnsupportedOperationException("Connection." + name);
+                    }
+                });
+        }
+
+        DatabaseMetaData metaData()
+        {
+            return (DatabaseMetaData) Proxy.newProxyInstance(
+                DatabaseMetaData.class.getClassLoader(), new Class<?>[] {DatabaseMetaData.class}, new InvocationHandler()
+                {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                    {
+                        return answer(method.getName(), args);
+                    }
+                });
+        }
+
+        /**
+         * Prepared statement for a query; parameters are collected and the query
+         * is answered on executeQuery
+         */
+        private PreparedStatement statement(final String sql)
+        {
+            final Map<Integer, Object> parameters = new HashMap<>();
+
+            return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(), new Class<?>[] {PreparedStatement.class}, new InvocationHandler()
+                {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws SQLException
+                    {
+                        String name = method.getName();
+                        if ("executeQuery".equals(name)) return query(sql, parameters);
+                        if (name.startsWith("set") && args != null && args.length == 2 && args[0] instanceof Integer)
+                        {
+                            parameters.put((Integer) args[0], args[1]);
+                            return null;
+                        }
+                        if (name.startsWith("set") || "close".equals(name)) return null;
+                        throw new UnsupportedOperationException("PreparedStatement." + name);
+                    }
+                });
+        }
+
+        /**
+         * Answer a bulk query for the schema (owner) in parameter 1, in the
+         * column layout of the query; further parameters are table name patterns
+         */
+        private ResultSet query(String sql, Map<Integer, Object> parameters) throws SQLException
+        {
+            List<String> tablePatterns = new ArrayList<>();
+            for (int i = 2; parameters.containsKey(i); i++)
+            {
+                tablePatterns.add((String) parameters.get(i));
+            }
+            if (tablePatterns.size() != sql.split(" LIKE \\?", -1).length - 1)
+            {
+                throw new SQLException("Parameter count does not match: " + sql);
+            }
+            if (tablePatterns.isEmpty()) tablePatterns.add(null);
+
+            List<Object[]> rows = new ArrayList<>();
+            List<SyntheticTable> tables = matching((String) parameters.get(1), tablePatterns);
+
+            if (sql.contains("pg_catalog.pg_index") || sql.contains("FROM ALL_INDEXES"))
+            {
+                // IndexExtractor: table, index, unique, constraint, column, position; no primary key index
+                for (SyntheticTable table : tables)
+                {
+                    for (Object[] index : table.indexes)
+                    {
+                        if (table.primaryKeyName().equals(index[3])) continue;
+                        int unique = Boolean.TRUE.equals(index[2]) ? 0 : 1;
+                        rows.add(new Object[] {table.name, index[3], unique, unique, index[6], index[5]});
+                    }
+                }
+                return MetadataRows.resultSet(new String[] {"TABLE", "INDEX", "UNIQUE", "CONSTRAINT", "COLUMN", "POSITION"}, rows);
+            }
+
+            if (sql.contains("FROM ALL_TABLES"))
+            {
+                for (SyntheticTable table : tables)
+                {
+                    rows.add(new Object[] {table.name, table.remarks});
+                }
+                return MetadataRows.resultSet(new String[] {"TABLE_NAME", "COMMENTS"}, rows);
+            }
+
+            if (sql.contains("FROM ALL_TAB_COLUMNS") && sql.contains("DEFAULT_LENGTH > 0"))
+            {
+                for (SyntheticTable table : tables)
+                {
+                    for (Object[] column : table.columns)
+                    {
+                        if (column[7] != null) rows.add(new Object[] {table.name, column[2], column[7]});
+                    }
+                }
+                return MetadataRows.resultSet(new String[] {"TABLE_NAME", "COLUMN_NAME", "DATA_DEFAULT"}, rows);
+            }
+
+            if (sql.contains("FROM ALL_TAB_COLUMNS"))
+            {
+                for (SyntheticTable table : tables)
+                {
+                    for (Object[] column : table.columns)
+                    {
+                        rows.add(new Object[] {table.name, column[2], column[3], column[4],
+                            "NO".equals(column[5]) ? "N" : "Y", column[6],
+                            column[7] == null ? 0 : ((String) column[7]).length()});
+                    }
+                }
+                return MetadataRows.resultSet(new String[] {"TABLE_NAME", "COLUMN_NAME", "DATA_TYPE", "DATA_SIZE",
+                    "NULLABLE", "COMMENTS", "DEFAULT_LENGTH"}, rows);
+            }
+
+            if (sql.contains("FROM ALL_CONSTRAINTS"))
+            {
+                for (SyntheticTable table : tables)
+                {
+                    for (Object[] pk : table.primaryKey)
+                    {
+                        rows.add(new Object[] {table.name, "P", pk[4], pk[2], pk[3], null, null, null});
+                    }
+                    for (Object[] fk : table.foreignKeys)
+                    {
+                        rows.add(new Object[] {table.name, "R", fk[7], fk[5], fk[6], fk[0], fk[1], fk[2]});
+                    }
+                }
+                return MetadataRows.resultSet(new String[] {"TABLE_NAME", "CONSTRAINT_TYPE", "CONSTRAINT_NAME",
+                    "COLUMN_NAME", "POSITION", "R_OWNER", "R_TABLE_NAME", "R_COLUMN_NAME"}, rows);
+            }
+
+            throw new SQLException("Unsupported query: " + sql);
+        }
+
+        private Object answer(String method, Object[] args)
+        {
+            if ("getDatabaseProductName".equals(method)) return product;
+            if ("getSearchStringEscape".equals(method)) return "\\";
+
+            if ("getSchemas".equals(method))
+            {
+                List<Object[]> rows = new ArrayList<>();
+                for (String schema : schemas.keySet())
+                {
+                    rows.add(new Object[] {schema, "budget"});
+                }
+                return MetadataRows.resultSet(MetadataRows.SCHEMA_LABELS, rows);
+            }
+
+            if ("getTables".equals(method))
+            {
+                List<Object[]> rows = new ArrayList<>();
+                for (SyntheticTable table : matching((String) args[1], (String) args[2]))
+                {
+                    rows.add(new Object[] {"budget", table.schema, table.name, "TABLE", table.remarks});
+                }
+                return MetadataRows.resultSet(MetadataRows.TABLE_LABELS, rows);
+            }
+
+            if ("getColumns".equals(method))
+            {
+                List<Object[]> rows = new ArrayList<>();
+                for (SyntheticTable table : matching((String) args[1], (String) args[2]))
+                {
+                    rows.addAll(table.columns);
+                }
+                return MetadataRows.resultSet(MetadataRows.COLUMN_LABELS, rows);
+            }
+
+            if ("getPrimaryKeys".equals(method))
+            {
+                List<Object[]> rows = new ArrayList<>();
+                for (SyntheticTable table : matching((String) args[1], (String) args[2]))
+                {
+                    rows.addAll(table.primaryKey);
+                }
+                return MetadataRows.resultSet(MetadataRows.PK_LABELS, rows);
+            }
+
+            if ("getImportedKeys".equals(method))
+            {
+                List<Object[]> rows = new ArrayList<>();
+                for (SyntheticTable table : matching((String) args[1], (String) args[2]))
+                {
+                    rows.addAll(table.foreignKeys);
+                }
+                return MetadataRows.resultSet(MetadataRows.FK_LABELS, rows);
+            }
+
+            if ("getIndexInfo".equals(method))
+            {
+                List<Object[]> rows = new ArrayList<>();
+                for (SyntheticTable table : matching((String) args[1], (String) args[2]))
+                {
+                    rows.addAll(table.indexes);
+                }
+                return MetadataRows.resultSet(MetadataRows.INDEX_LABELS, rows);
+            }
+
+            throw new UnsupportedOperationException("DatabaseMetaData." + method);
+        }
+
+        /**
+         * Tables whose schema and name match the given JDBC search patterns (null matches all)
+         */
+        private List<SyntheticTable> matching(String schemaPattern, String tablePattern)
+        {
+            return matching(schemaPattern, Collections.singletonList(tablePattern));
+        }
+
+        /**
+         * Tables of the matching schemas whose name matches one of the table
+         * patterns; they count as read
+         */
+        private List<SyntheticTable> matching(String schemaPattern, List<String> tablePatterns)
+        {
+            List<SyntheticTable> result = new ArrayList<>();
+            for (Map.Entry<String, Map<String, SyntheticTable>> schema : schemas.entrySet())
+            {
+                if (!MetadataRows.like(schema.getKey(), schemaPattern)) continue;
+
+                for (SyntheticTable table : schema.getValue().values())
+                {
+                    for (int i = 0; i < tablePatterns.size(); i++)
+                    {
+                        if (MetadataRows.like(table.name, tablePatterns.get(i)))
+                        {
+                            result.add(table);
+                            tablesRead.add(table.name);
+                            break;
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Pre-built metadata rows of one generated table
+     */
+    static class SyntheticTable
+    {
+        final String schema;
+        final String name;
+        final String remarks;
+        final List<Object[]> columns = new ArrayList<>();
+        final List<Object[]> primaryKey = new ArrayList<>();
+        final List<Object[]> foreignKeys = new ArrayList<>();
+        final List<Object[]> indexes = new ArrayList<>();
+
+        SyntheticTable(String schema, String name, String remarks)
+        {
+            this.schema = schema;
+            this.name = name;
+            this.remarks = remarks;
+        }
+
+        void column(String column, String type, int size, boolean nullable, String remarks, String defaultValue)
+        {
+            columns.add(new Object[] {schema, name, column, type, size, nullable ? "YES" : "NO",
+                remarks, defaultValue, columns.size() + 1});
+        }
+
+        String primaryKeyName()
+        {
+            return "pk_" + name;
+        }
+
+        void primaryKey(String... pkColumns)
+        {
+            for (int i = 0; i < pkColumns.length; i++)
+            {
+                primaryKey.add(new Object[] {schema, name, pkColumns[i], i + 1, primaryKeyName()});
+            }
+        }
+
+        void index(String indexName, boolean unique, String... indexColumns)
+        {
+            for (int i = 0; i < indexColumns.length; i++)
+            {
+                indexes.add(new Object[] {schema, name, !unique, indexName, (int) DatabaseMetaData.tableIndexOther,
+                    i + 1, indexColumns[i], null});
+            }
+        }
+
+        void foreignKey(String fkName, String fkColumn, String pkSchema, String pkTable, int keySeq)
+        {
+            foreignKeys.add(new Object[] {pkSchema, pkTable, "id", schema, name, fkColumn, keySeq, fkName});
+        }
+    }
+}
@@ -0,0 +1,143 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DatabaseMetaData results answered from memory instead of by the driver.
+ *
+ * Holds the JDBC column labels of the metadata result sets, matches JDBC
+ * search patterns, and wraps in-memory rows as a forward-only ResultSet.
+ * Used by OracleDictionary, DdlCatalogSource and the synthetic database of
+ * MetadataBudgetCheck.
+ *
+ * @author CaseTalk Integration
+ * @version 1.0
+ */
+final class MetadataRows
+{
+    static final String[] SCHEMA_LABELS = {"TABLE_SCHEM", "TABLE_CATALOG"};
+    static final String[] TABLE_LABELS = {"TABLE_CAT", "TABLE_SCHEM", "TABLE_NAME", "TABLE_TYPE", "REMARKS"};
+    static final String[] COLUMN_LABELS = {"TABLE_SCHEM", "TABLE_NAME", "COLUMN_NAME", "TYPE_NAME",
+        "COLUMN_SIZE", "IS_NULLABLE", "REMARKS", "COLUMN_DEF", "ORDINAL_POSITION"};
+    static final String[] PK_LABELS = {"TABLE_SCHEM", "TABLE_NAME", "COLUMN_NAME", "KEY_SEQ", "PK_NAME"};
+    static final String[] FK_LABELS = {"PKTABLE_SCHEM", "PKTABLE_NAME", "PKCOLUMN_NAME",
+        "FKTABLE_SCHEM", "FKTABLE_NAME", "FKCOLUMN_NAME", "KEY_SEQ", "FK_NAME"};
+    static final String[] INDEX_LABELS = {"TABLE_SCHEM", "TABLE_NAME", "NON_UNIQUE", "INDEX_NAME",
+        "TYPE", "ORDINAL_POSITION", "COLUMN_NAME", "FILTER_CONDITION"};
+
+    private MetadataRows()
+    {
+    }
+
+    /**
+     * Match a JDBC search pattern with % and _ wildcards and \ as escape (null matches all)
+     */
+    static boolean like(String value, String pattern)
+    {
+        return like(value, pattern, "\\");
+    }
+
+    /**
+     * Match a JDBC search pattern with % and _ wildcards and the driver's
+     * search string escape (null or empty: no escape). A null pattern matches all.
+     */
+    static boolean like(String value, String pattern, String escape)
+    {
+        if (pattern == null) return true;
+        return like(value, 0, pattern, 0, escape == null || escape.isEmpty() ? null : escape);
+    }
+
+    private static boolean like(String value, int v, String pattern, int p, String escape)
+    {
+        while (p < pattern.length())
+        {
+            char c = pattern.charAt(p);
+            if (escape != null && pattern.startsWith(escape, p) && p + escape.length() < pattern.length())
+            {
+                p += escape.length();
+                c = pattern.charAt(p);
+            }
+            else if (c == '%')
+            {
+                for (int i = v; i <= value.length(); i++)
+                {
+                    if (like(value, i, pattern, p + 1, escape)) return true;
+                }
+                return false;
+            }
+            else if (c == '_')
+            {
+                if (v >= value.length()) return false;
+                v++;
+                p++;
+                continue;
+            }
+            if (v >= value.length() || value.charAt(v) != c) return false;
+            v++;
+            p++;
+        }
+        return v == value.length();
+    }
+
+    /**
+     * Forward-only ResultSet over in-memory rows; columns are read by label or index
+     */
+    static ResultSet resultSet(final String[] labels, final List<Object[]> rows)
+    {
+        final Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < labels.length; i++)
+        {
+            index.put(labels[i], i);
+        }
+
+        return (ResultSet) Proxy.newProxyInstance(
+            ResultSet.class.getClassLoader(), new Class<?>[] {ResultSet.class}, new InvocationHandler()
+            {
+                private int row = -1;
+                private boolean closed;
+                private boolean wasNull;
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws SQLException
+                {
+                    String name = method.getName();
+
+                    if ("next".equals(name)) return ++row < rows.size();
+                    if ("close".equals(name)) { closed = true; return null; }
+                    if ("isClosed".equals(name)) return closed;
+                    if ("wasNull".equals(name)) return wasNull;
+                    if ("setFetchSize".equals(name)) return null;
+
+                    if (name.startsWith("get") && args != null && args.length == 1)
+                    {
+                        Integer column = args[0] instanceof Integer ? (Integer) args[0] - 1 : index.get(args[0]);
+                        if (column == null || column < 0 || column >= labels.length)
+                        {
+                            throw new SQLException("Unknown column: " + args[0]);
+                        }
+
+                        Object value = rows.get(row)[column];
+                        wasNull = value == null;
+                        return convert(value, method.getReturnType());
+                    }
+
+                    throw new SQLException("ResultSet." + name + " is not available for in-memory metadata");
+                }
+            });
+    }
+
+    private static Object convert(Object value, Class<?> type)
+    {
+        if (type == String.class) return value == null ? null : value.toString();
+        if (type == int.class) return value == null ? 0 : ((Number) value).intValue();
+        if (type == short.class) return value == null ? (short) 0 : ((Number) value).shortValue();
+        if (type == long.class) return value == null ? 0L : ((Number) value).longValue();
+        if (type == boolean.class) return value instanceof Boolean ? value : "YES".equals(value);
+        return value;
+    }
+}
@@ -0,0 +1,339 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Enforces per-call timeouts and an overall deadline on metadata calls.
+ *
+ * DatabaseMetaData calls have no timeout of their own, so every call that
+ * returns a ResultSet is guarded by a timer that runs until the ResultSet is
+ * closed. When the timer fires, the connection is aborted, which makes the
+ * blocked driver call fail; the caller then gets an SQLTimeoutException and can
+ * skip the table. The next call reconnects through the supplied factory.
+ *
+ * Dialect queries should use applyTimeout(Statement) so the database itself
+ * cancels them (Statement.setQueryTimeout).
+ *
+ * @author CaseTalk Integration
+ * @version 1.0
+ */
+public class MetadataWatchdog implements AutoCloseable
+{
+    private final long callTimeoutMillis;
+    private final long deadlineNanos;
+    private final Callable<Connection> reconnect;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+    {
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, "metadata-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private Connection connection;
+    private DatabaseMetaData metaData;
+    private boolean aborted;
+    private boolean reconnected;
+
+    /**
+     * @param connection         connection to guard
+     * @param reconnect          opens a new connection after a timed-out call (null: no reconnect)
+     * @param callTimeoutMillis  timeout per metadata call (0 or less: none)
+     * @param deadlineMillis     time budget for the whole export from now (0 or less: none)
+     */
+    public MetadataWatchdog(Connection connection, Callable<Connection> reconnect,
+                            long callTimeoutMillis, long deadlineMillis) throws SQLException
+    {
+        this.connection = connection;
+        this.metaData = connection.getMetaData();
+        this.reconnect = reconnect;
+        this.callTimeoutMillis = callTimeoutMillis;
+        this.deadlineNanos = deadlineMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis) : 0;
+    }
+
+    /**
+     * Whether the overall export deadline has passed
+     */
+    public boolean isDeadlineExpired()
+    {
+        return deadlineNanos != 0 && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * Set the remaining time (capped by the per-call timeout) as query timeout on a dialect query
+     */
+    public void applyTimeout(Statement statement) throws SQLException
+    {
+        long millis = effectiveTimeoutMillis();
+        if (millis > 0)
+        {
+            statement.setQueryTimeout((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(millis + 999)));
+        }
+    }
+
+    /**
+     * The connection currently in use (changes after a reconnect)
+     */
+    public synchronized Connection getConnection() throws SQLException
+    {
+        ensureConnected();
+        return connection;
+    }
+
+    /**
+     * DatabaseMetaData whose ResultSet-returning calls are guarded by the watchdog
+     */
+    public DatabaseMetaData wrap()
+    {
+        return (DatabaseMetaData) Proxy.newProxyInstance(
+            DatabaseMetaData.class.getClassLoader(), new Class<?>[] {DatabaseMetaData.class}, new InvocationHandler()
+            {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+                {
+                    if (!ResultSet.class.isAssignableFrom(method.getReturnType()))
+                    {
+                        return invokeTarget(currentMetaData(), method, args);
+                    }
+                    return guardedCall(method, args);
+                }
+            });
+    }
+
+    private Object guardedCall(Method method, Object[] args) throws Throwable
+    {
+        final long timeoutMillis = effectiveTimeoutMillis();
+        if (timeoutMillis < 0)
+        {
+            throw new SQLTimeoutException("Export deadline reached");
+        }
+
+        DatabaseMetaData target = currentMetaData();
+        if (timeoutMillis == 0)
+        {
+            return invokeTarget(target, method, args);
+        }
+
+        final Connection guarded = getConnection();
+        final String call = method.getName();
+        final AtomicBoolean fired = new AtomicBoolean();
+        final ScheduledFuture<?> task = timer.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                fired.set(true);
+                abort(guarded);
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+
+        ResultSet rs;
+        try
+        {
+            rs = (ResultSet) invokeTarget(target, method, args);
+        }
+        catch (SQLException e)
+        {
+            task.cancel(false);
+            throw fired.get() ? timeout(call, timeoutMillis, e) : e;
+        }
+
+        if (fired.get())
+        {
+            throw timeout(call, timeoutMillis, null);
+        }
+
+        // Keep the timer running while the rows are fetched
+        return guardResultSet(rs, task, fired, call, timeoutMillis);
+    }
+
+    private ResultSet guardResultSet(final ResultSet rs, final ScheduledFuture<?> task,
+                                     final AtomicBoolean fired, final String call, final long timeoutMillis)
+    {
+        return (ResultSet) Proxy.newProxyInstance(
+            ResultSet.class.getClassLoader(), new Class<?>[] {ResultSet.class}, new InvocationHandler()
+            {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+                {
+                    if ("close".equals(method.getName()))
+                    {
+                        task.cancel(false);
+                        try
+                        {
+                            return invokeTarget(rs, method, args);
+                        }
+                        catch (SQLException e)
+                        {
+                            // Closing a ResultSet of an aborted connection is expected to fail
+                            if (fired.get()) return null;
+                            throw e;
+                        }
+                    }
+
+                    try
+                    {
+                        return invokeTarget(rs, method, args);
+                    }
+                    catch (SQLException e)
+                    {
+                        throw fired.get() ? timeout(call, timeoutMillis, e) : e;
+                    }
+                }
+            });
+    }
+
+    /**
+     * Timeout for the next call: the per-call timeout capped by the remaining time
+     * until the deadline; 0 means no timeout and -1 means the deadline has passed
+     */
+    private long effectiveTimeoutMillis()
+    {
+        long timeout = callTimeoutMillis > 0 ? callTimeoutMillis : 0;
+
+        if (deadlineNanos != 0)
+        {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+            if (remaining <= 0)
+            {
+                return -1;
+            }
+            timeout = timeout == 0 ? remaining : Math.min(timeout, remaining);
+        }
+
+        return timeout;
+    }
+
+    private SQLTimeoutException timeout(String call, long timeoutMillis, SQLException cause)
+    {
+        SQLTimeoutException e = isDeadlineExpired()
+            ? new SQLTimeoutException("Export deadline reached during " + call)
+            : new SQLTimeoutException(call + " timed out after " + timeoutMillis + " ms");
+        if (cause != null)
+        {
+            e.initCause(cause);
+        }
+        return e;
+    }
+
+    /**
+     * Abort a connection whose call is stuck. Runs on the watchdog thread.
+     */
+    private void abort(Connection conn)
+    {
+        synchronized (this)
+        {
+            if (conn == connection)
+            {
+                aborted = true;
+            }
+        }
+
+        try
+        {
+            conn.abort(timer);
+        }
+        catch (SQLException | AbstractMethodError | UnsupportedOperationException e)
+        {
+            // Drivers without abort() support: closing usually interrupts the call too
+            try
+            {
+                conn.close();
+            }
+            catch (SQLException ignored)
+            {
+                // Nothing left to do
+            }
+        }
+    }
+
+    private synchronized DatabaseMetaData currentMetaData() throws SQLException
+    {
+        ensureConnected();
+        return metaData;
+    }
+
+    /**
+     * Replace an aborted connection by a new one
+     */
+    private synchronized void ensureConnected() throws SQLException
+    {
+        if (!aborted)
+        {
+            return;
+        }
+
+        if (reconnect == null)
+        {
+            throw new SQLTimeoutException("Connection was aborted after a timeout and cannot be reopened");
+        }
+
+        try
+        {
+            connection = reconnect.call();
+            metaData = connection.getMetaData();
+            aborted = false;
+            reconnected = true;
+            System.out.println("  Reconnected after metadata call timeout");
+        }
+        catch (SQLException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new SQLException("Failed to reconnect: " + e.getMessage(), e);
+        }
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable
+    {
+        try
+        {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Stop the watchdog and close a connection it opened itself
+     */
+    @Override
+    public synchronized void close()
+    {
+        timer.shutdownNow();
+
+        if (reconnected && connection != null)
+        {
+            try
+            {
+                connection.close();
+            }
+            catch (SQLException e)
+            {
+                System.err.println("Warning: Failed to close connection: " + e.getMessage());
+            }
+        }
+    }
+}
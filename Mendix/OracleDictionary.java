@@ -0,0 +1,446 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Reads the tables, columns and keys of one Oracle owner from the data
+ * dictionary in bulk.
+ *
+ * Oracle's JDBC DatabaseMetaData runs a dictionary query per call, and
+ * getColumns and getImportedKeys take hundreds of milliseconds each, so the
+ * per-table export of a large schema takes hours. This class reads ALL_TABLES,
+ * ALL_TAB_COLUMNS, ALL_COL_COMMENTS, ALL_CONSTRAINTS and ALL_CONS_COLUMNS with
+ * a few array-fetched queries per owner and answers getTables, getColumns,
+ * getPrimaryKeys and getImportedKeys for that owner from memory; all other
+ * calls go to the driver.
+ *
+ * Column defaults are a LONG column, which makes the driver fetch row by row,
+ * so they are read in a separate query for only the columns that have one.
+ *
+ * @author CaseTalk Integration
+ * @version 1.0
+ */
+public class OracleDictionary
+{
+    private static final int FETCH_SIZE = 5000;
+
+    private static final String TABLES =
+        "SELECT t.TABLE_NAME, c.COMMENTS"
+        + " FROM ALL_TABLES t"
+        + " LEFT JOIN ALL_TAB_COMMENTS c ON c.OWNER = t.OWNER AND c.TABLE_NAME = t.TABLE_NAME"
+        + " WHERE t.OWNER = ? AND t.NESTED = 'NO' AND t.SECONDARY = 'N' AND t.DROPPED = 'NO'"
+        + " AND (t.IOT_TYPE IS NULL OR t.IOT_TYPE = 'IOT')"
+        + " ORDER BY t.TABLE_NAME";
+
+    // COLUMN_SIZE as the Oracle driver reports it in getColumns
+    private static final String COLUMNS =
+        "SELECT c.TABLE_NAME, c.COLUMN_NAME, c.DATA_TYPE,"
+        + " DECODE(c.DATA_PRECISION, NULL, DECODE(c.DATA_TYPE, 'CHAR', c.CHAR_LENGTH, 'VARCHAR', c.CHAR_LENGTH,"
+        + " 'VARCHAR2', c.CHAR_LENGTH, 'NVARCHAR2', c.CHAR_LENGTH, 'NCHAR', c.CHAR_LENGTH, 'NUMBER', 0,"
+        + " c.DATA_LENGTH), c.DATA_PRECISION),"
+        + " c.NULLABLE, m.COMMENTS, c.DEFAULT_LENGTH"
+        + " FROM ALL_TAB_COLUMNS c"
+        + " LEFT JOIN ALL_COL_COMMENTS m ON m.OWNER = c.OWNER AND m.TABLE_NAME = c.TABLE_NAME"
+        + " AND m.COLUMN_NAME = c.COLUMN_NAME"
+        + " WHERE c.OWNER = ?"
+        + " ORDER BY c.TABLE_NAME, c.COLUMN_ID";
+
+    private static final String DEFAULTS =
+        "SELECT c.TABLE_NAME, c.COLUMN_NAME, c.DATA_DEFAULT"
+        + " FROM ALL_TAB_COLUMNS c"
+        + " WHERE c.OWNER = ? AND c.DEFAULT_LENGTH > 0";
+
+    // Primary keys ordered by column name and foreign keys by referenced table, as JDBC orders them
+    private static final String KEYS =
+        "SELECT c.TABLE_NAME, c.CONSTRAINT_TYPE, c.CONSTRAINT_NAME, cc.COLUMN_NAME, cc.POSITION,"
+        + " r.OWNER, r.TABLE_NAME, r.COLUMN_NAME"
+        + " FROM ALL_CONSTRAINTS c"
+        + " JOIN ALL_CONS_COLUMNS cc ON cc.OWNER = c.OWNER AND cc.CONSTRAINT_NAME = c.CONSTRAINT_NAME"
+        + " AND cc.TABLE_NAME = c.TABLE_NAME"
+        + " LEFT JOIN ALL_CONS_COLUMNS r ON r.OWNER = c.R_OWNER AND r.CONSTRAINT_NAME = c.R_CONSTRAINT_NAME"
+        + " AND r.POSITION = cc.POSITION"
+        + " WHERE c.OWNER = ? AND c.CONSTRAINT_TYPE IN ('P', 'R')"
+        + " ORDER BY c.TABLE_NAME, c.CONSTRAINT_TYPE, r.OWNER, r.TABLE_NAME,"
+        + " DECODE(c.CONSTRAINT_TYPE, 'P', cc.COLUMN_NAME), cc.POSITION, c.CONSTRAINT_NAME";
+
+    /**
+     * Metadata rows of one table, in the JDBC column layout
+     */
+    private static class TableRows
+    {
+        final String remarks;
+        final List<Object[]> columns = new ArrayList<>();
+        final List<Object[]> primaryKey = new ArrayList<>(1);
+        final List<Object[]> foreignKeys = new ArrayList<>(0);
+
+        TableRows(String remarks)
+        {
+            this.remarks = remarks;
+        }
+    }
+
+    private final String owner;
+
+    // Only tables matching one of these patterns (null: all tables of the owner)
+    private final List<String> tablePatterns;
+
+    // Table name -> rows, in table name order
+    private final Map<String, TableRows> tables = new LinkedHashMap<>();
+
+    // Shares repeated type names and nullability flags between columns
+    private final Map<String, String> strings = new HashMap<>();
+    private int columnCount;
+
+    private OracleDictionary(String owner, List<String> tablePatterns)
+    {
+        this.owner = owner;
+        this.tablePatterns = tablePatterns;
+    }
+
+    /**
+     * Whether a JDBC URL is an Oracle URL
+     */
+    public static boolean isOracle(String jdbcUrl)
+    {
+        return jdbcUrl != null && jdbcUrl.regionMatches(true, 0, "jdbc:oracle:", 0, 12);
+    }
+
+    /**
+     * Read the dictionary of one owner (schema).
+     *
+     * Returns null when the dictionary views cannot be read (e.g. missing
+     * privileges or a timeout); use the driver's DatabaseMetaData then.
+     *
+     * @param connection  connection to query (the watchdog's current connection is used if there is one)
+     * @param watchdog    sets the query timeout (may be null)
+     * @param throttle    paces the queries together with the metadata calls (may be null)
+     * @param tablePatterns  only read the tables matching one of these patterns, e.g. the
+     *                       tables of selected modules (null: all tables of the owner)
+     */
+    public static OracleDictionary readOwner(Connection connection, MetadataWatchdog watchdog,
+                                             AdaptiveThrottle throttle, final String owner,
+                                             List<String> tablePatterns)
+    {
+        try
+        {
+            final Connection target = watchdog != null ? watchdog.getConnection() : connection;
+            final MetadataWatchdog timeouts = watchdog;
+            final OracleDictionary dictionary = new OracleDictionary(owner, tablePatterns);
+
+            dictionary.run(throttle, new Callable<Void>()
+            {
+                @Override
+                public Void call() throws SQLException
+                {
+                    dictionary.readTables(target, timeouts);
+                    return null;
+                }
+            });
+
+            // An owner without tables needs no further queries
+            if (dictionary.tables.isEmpty())
+            {
+                return dictionary;
+            }
+
+            final int[] defaults = new int[1];
+            dictionary.run(throttle, new Callable<Void>()
+            {
+                @Override
+                public Void call() throws SQLException
+                {
+                    defaults[0] = dictionary.readColumns(target, timeouts);
+                    return null;
+                }
+            });
+
+            if (defaults[0] > 0)
+            {
+                dictionary.run(throttle, new Callable<Void>()
+                {
+                    @Override
+                    public Void call() throws SQLException
+                    {
+                        dictionary.readDefaults(target, timeouts);
+                        return null;
+                    }
+                });
+            }
+
+            dictionary.run(throttle, new Callable<Void>()
+            {
+                @Override
+                public Void call() throws SQLException
+                {
+                    dictionary.readKeys(target, timeouts);
+                    return null;
+                }
+            });
+
+            return dictionary;
+        }
+        catch (Exception e)
+        {
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            System.out.println("  Dictionary query failed, using JDBC metadata (" + e.getMessage() + ")");
+            return null;
+        }
+    }
+
+    private void run(AdaptiveThrottle throttle, Callable<Void> query) throws Exception
+    {
+        if (throttle != null)
+        {
+            throttle.call(query);
+        }
+        else
+        {
+            query.call();
+        }
+    }
+
+    private PreparedStatement prepare(Connection connection, MetadataWatchdog watchdog, String sql, String tableColumn)
+        throws SQLException
+    {
+        PreparedStatement statement = connection.prepareStatement(
+            IndexExtractor.tableFilter(sql, tableColumn, tablePatterns, true));
+        if (watchdog != null)
+        {
+            watchdog.applyTimeout(statement);
+        }
+        statement.setFetchSize(FETCH_SIZE);
+        statement.setString(1, owner);
+        IndexExtractor.bindTablePatterns(statement, tablePatterns);
+        return statement;
+    }
+
+    private void readTables(Connection connection, MetadataWatchdog watchdog) throws SQLException
+    {
+        try (PreparedStatement statement = prepare(connection, watchdog, TABLES, "t.TABLE_NAME");
+             ResultSet rs = statement.executeQuery())
+        {
+            while (rs.next())
+            {
+                tables.put(rs.getString(1), new TableRows(rs.getString(2)));
+            }
+        }
+    }
+
+    /**
+     * Read the columns; returns the number of columns that have a default
+     */
+    private int readColumns(Connection connection, MetadataWatchdog watchdog) throws SQLException
+    {
+        int defaults = 0;
+        try (PreparedStatement statement = prepare(connection, watchdog, COLUMNS, "c.TABLE_NAME");
+             ResultSet rs = statement.executeQuery())
+        {
+            TableRows table = null;
+            String tableName = null;
+            while (rs.next())
+            {
+                String name = rs.getString(1);
+                if (!name.equals(tableName))
+                {
+                    // Views and excluded tables have columns too
+                    tableName = name;
+                    table = tables.get(name);
+                }
+                if (table == null) continue;
+
+                table.columns.add(new Object[] {owner, tableName, rs.getString(2), shared(rs.getString(3)),
+                    rs.getInt(4), "N".equals(rs.getString(5)) ? "NO" : "YES", rs.getString(6), null,
+                    table.columns.size() + 1});
+                columnCount++;
+                if (rs.getInt(7) > 0) defaults++;
+            }
+        }
+        return defaults;
+    }
+
+    private void readDefaults(Connection connection, MetadataWatchdog watchdog) throws SQLException
+    {
+        try (PreparedStatement statement = prepare(connection, watchdog, DEFAULTS, "c.TABLE_NAME");
+             ResultSet rs = statement.executeQuery())
+        {
+            while (rs.next())
+            {
+                TableRows table = tables.get(rs.getString(1));
+                if (table == null) continue;
+
+                String column = rs.getString(2);
+                for (Object[] row : table.columns)
+                {
+                    if (column.equals(row[2]))
+                    {
+                        row[7] = rs.getString(3);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private void readKeys(Connection connection, MetadataWatchdog watchdog) throws SQLException
+    {
+        try (PreparedStatement statement = prepare(connection, watchdog, KEYS, "c.TABLE_NAME");
+             ResultSet rs = statement.executeQuery())
+        {
+            while (rs.next())
+            {
+                TableRows table = tables.get(rs.getString(1));
+                if (table == null) continue;
+
+                if ("P".equals(rs.getString(2)))
+                {
+                    table.primaryKey.add(new Object[] {owner, rs.getString(1), rs.getString(4),
+                        rs.getInt(5), rs.getString(3)});
+                }
+                else
+                {
+                    table.foreignKeys.add(new Object[] {rs.getString(6), rs.getString(7), rs.getString(8),
+                        owner, rs.getString(1), rs.getString(4), rs.getInt(5), rs.getString(3)});
+                }
+            }
+        }
+    }
+
+    private String shared(String value)
+    {
+        if (value == null) return null;
+
+        String existing = strings.get(value);
+        if (existing == null)
+        {
+            strings.put(value, value);
+            return value;
+        }
+        return existing;
+    }
+
+    /**
+     * Number of tables read
+     */
+    public int tableCount()
+    {
+        return tables.size();
+    }
+
+    /**
+     * Number of columns read
+     */
+    public int columnCount()
+    {
+        return columnCount;
+    }
+
+    /**
+     * DatabaseMetaData that answers getTables, getColumns, getPrimaryKeys and
+     * getImportedKeys for this owner from the dictionary and passes all other
+     * calls to the given metadata
+     */
+    public DatabaseMetaData wrap(final DatabaseMetaData metaData) throws SQLException
+    {
+        final String escape = metaData.getSearchStringEscape();
+
+        return (DatabaseMetaData) Proxy.newProxyInstance(
+            DatabaseMetaData.class.getClassLoader(), new Class<?>[] {DatabaseMetaData.class}, new InvocationHandler()
+            {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+                {
+                    Object answer = answer(method.getName(), args, escape);
+                    if (answer != null)
+                    {
+                        return answer;
+                    }
+
+                    try
+                    {
+                        return method.invoke(metaData, args);
+                    }
+                    catch (InvocationTargetException e)
+                    {
+                        throw e.getCause();
+                    }
+                }
+            });
+    }
+
+    /**
+     * The result for a call on this owner, or null to ask the driver
+     */
+    private ResultSet answer(String method, Object[] args, String escape)
+    {
+        if (args == null || args.length < 3 || !owner.equals(args[1]))
+        {
+            return null;
+        }
+
+        if ("getTables".equals(method))
+        {
+            if (!isTableType((String[]) args[3])) return null;
+
+            List<Object[]> rows = new ArrayList<>();
+            for (Map.Entry<String, TableRows> table : tables.entrySet())
+            {
+                if (MetadataRows.like(table.getKey(), (String) args[2], escape))
+                {
+                    rows.add(new Object[] {null, owner, table.getKey(), "TABLE", table.getValue().remarks});
+                }
+            }
+            return MetadataRows.resultSet(MetadataRows.TABLE_LABELS, rows);
+        }
+
+        if ("getColumns".equals(method))
+        {
+            List<Object[]> rows = new ArrayList<>();
+            for (Map.Entry<String, TableRows> table : tables.entrySet())
+            {
+                if (!MetadataRows.like(table.getKey(), (String) args[2], escape)) continue;
+
+                for (Object[] column : table.getValue().columns)
+                {
+                    if (MetadataRows.like((String) column[2], (String) args[3], escape)) rows.add(column);
+                }
+            }
+            return MetadataRows.resultSet(MetadataRows.COLUMN_LABELS, rows);
+        }
+
+        if ("getPrimaryKeys".equals(method) || "getImportedKeys".equals(method))
+        {
+            TableRows table = tables.get(args[2]);
+            List<Object[]> rows = new ArrayList<>();
+            if (table != null)
+            {
+                rows = "getPrimaryKeys".equals(method) ? table.primaryKey : table.foreignKeys;
+            }
+            return MetadataRows.resultSet("getPrimaryKeys".equals(method)
+                ? MetadataRows.PK_LABELS : MetadataRows.FK_LABELS, rows);
+        }
+
+        return null;
+    }
+
+    private static boolean isTableType(String[] types)
+    {
+        if (types == null) return true;
+        for (String type : types)
+        {
+            if ("TABLE".equals(type)) return true;
+        }
+        return false;
+    }
+}
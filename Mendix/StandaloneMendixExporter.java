@@ -1,17 +1,32 @@
+import java.io.BufferedWriter;
 import java.io.FileWriter;
-import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
-import org.json.JSONArray;
-import org.json.JSONObject;
+import java.util.Properties;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Standalone tool to export database metadata to CaseTalk jcatalog format.
@@ -20,7 +35,31 @@ import org.json.JSONObject;
  * and export the metadata structure.
  *
  * Usage:
- *   java StandaloneMendixExporter <jdbcUrl> <username> <password> <outputFile> [includeSystemTables]
+ *   java StandaloneMendixExporter <jdbcUrl> <username> <password> <outputFile> [includeSystemTables] [options]
+ *
+ * Options:
+ *   --throttle                    Adapt the metadata call rate to the database load (AIMD)
+ *   --target-latency-ms=<ms>      Target latency per metadata call when throttling (default 250)
+ *   --max-concurrency=<n>         Hard cap on metadata calls in flight when throttling (default 4)
+ *   --max-calls-per-second=<n>    Ceiling for the adaptive call rate when throttling (default: none)
+ *   --call-timeout-seconds=<s>    Timeout per metadata call; a table whose calls time out is skipped
+ *   --deadline-seconds=<s>        Time budget for the whole export; tables not reached are skipped
+ *   --expressions=<file>          Also write fact expression skeletons (see FactExpressionGenerator)
+ *   --modules=<a,b,...>           Export only these Mendix modules (table name prefix before '$')
+ *   --parallel=<n>                Export modules concurrently over n connections (default 1)
+ *   --canonical                   Stable output order plus per-table and per-schema content hashes
+ *
+ * Tables are exported per Mendix module. With --modules only the tables of
+ * the selected modules are listed (getTables with pattern "module$%") and the
+ * bulk index and dictionary queries get the same patterns, so refreshing one
+ * module of a large app reads just that module.
+ *
+ * For jdbc:oracle URLs the tables, columns and keys of each schema are read
+ * from the data dictionary in a few bulk queries (see OracleDictionary)
+ * instead of per-table DatabaseMetaData calls.
+ *
+ * When tables are skipped the jcatalog is still written, marked "partial" with
+ * the skipped tables and reasons per schema, and the exit code is 2.
  *
  * Examples:
  *   PostgreSQL (Mendix default):
@@ -38,12 +77,53 @@ import org.json.JSONObject;
 public class StandaloneMendixExporter
 {
     private boolean includeSystemTables = false;
+    private AdaptiveThrottle throttle;
+    private long callTimeoutMillis;
+    private long deadlineMillis;
+    private MetadataWatchdog watchdog;
+    private boolean partial;
+    private String expressionFile;
+    private List<String> modules;
+    private int parallelism = 1;
+    private boolean oracleDictionary;
+    private boolean canonical;
+    private Callable<Connection> connectionFactory;
+    private long startNanos;
+    private final List<Worker> workers = new ArrayList<>();
+    private final BlockingQueue<Worker> idleWorkers = new LinkedBlockingQueue<>();
+    private ExecutorService workerPool;
+
+    // Driver class per URL prefix, so a known database loads just its own driver
+    private static final String[][] KNOWN_DRIVERS = {
+        {"jdbc:postgresql:", "org.postgresql.Driver"},
+        {"jdbc:sqlserver:", "com.microsoft.sqlserver.jdbc.SQLServerDriver"},
+        {"jdbc:mysql:", "com.mysql.cj.jdbc.Driver"},
+        {"jdbc:oracle:", "oracle.jdbc.OracleDriver"},
+        {"jdbc:sqlite:", "org.sqlite.JDBC"},
+        {"jdbc:h2:", "org.h2.Driver"}
+    };
 
     public static void main(String[] args)
     {
-        if (args.length < 4)
+        List<String> positional = new ArrayList<>();
+        Map<String, String> options = new HashMap<>();
+        parseArguments(args, positional, options);
+
+        if (positional.size() < 4)
         {
-            System.err.println("Usage: java StandaloneMendixExporter <jdbcUrl> <username> <password> <outputFile> [includeSystemTables]");
+            System.err.println("Usage: java StandaloneMendixExporter <jdbcUrl> <username> <password> <outputFile> [includeSystemTables] [options]");
+            System.err.println();
+            System.err.println("Options:");
+            System.err.println("  --throttle                    Adapt the metadata call rate to the database load");
+            System.err.println("  --target-latency-ms=<ms>      Target latency per metadata call when throttling (default 250)");
+            System.err.println("  --max-concurrency=<n>         Hard cap on metadata calls in flight when throttling (default 4)");
+            System.err.println("  --max-calls-per-second=<n>    Ceiling for the adaptive call rate when throttling (default: none)");
+            System.err.println("  --call-timeout-seconds=<s>    Timeout per metadata call; timed-out tables are skipped");
+            System.err.println("  --deadline-seconds=<s>        Time budget for the whole export; a partial jcatalog is written");
+            System.err.println("  --expressions=<file>          Also write fact expression skeletons for the exported tables");
+            System.err.println("  --modules=<a,b,...>           Export only these Mendix modules (table name prefix before '$')");
+            System.err.println("  --parallel=<n>                Export modules concurrently over n connections (default 1)");
+            System.err.println("  --canonical                   Stable output order plus per-table and per-schema content hashes");
             System.err.println();
             System.err.println("Examples:");
             System.err.println("  PostgreSQL: java StandaloneMendixExporter \"jdbc:postgresql://localhost:5432/mendix\" postgres secret mendix.jcatalog false");
@@ -52,20 +132,48 @@ public class StandaloneMendixExporter
             System.exit(1);
         }
 
-        String jdbcUrl = args[0];
-        String username = args[1];
-        String password = args[2];
-        String outputFile = args[3];
-        boolean includeSystemTables = args.length > 4 ? Boolean.parseBoolean(args[4]) : false;
+        String jdbcUrl = positional.get(0);
+        String username = positional.get(1);
+        String password = positional.get(2);
+        String outputFile = positional.get(3);
+        boolean includeSystemTables = positional.size() > 4 ? Boolean.parseBoolean(positional.get(4)) : false;
 
         StandaloneMendixExporter exporter = new StandaloneMendixExporter();
         exporter.includeSystemTables = includeSystemTables;
 
         try
         {
+            if (options.containsKey("throttle") || options.containsKey("target-latency-ms")
+                || options.containsKey("max-concurrency") || options.containsKey("max-calls-per-second"))
+            {
+                exporter.throttle = new AdaptiveThrottle(
+                    Long.parseLong(option(options, "target-latency-ms", "250")),
+                    Integer.parseInt(option(options, "max-concurrency", "4")),
+                    Double.parseDouble(option(options, "max-calls-per-second", "0")));
+            }
+
+            exporter.callTimeoutMillis = (long) (Double.parseDouble(option(options, "call-timeout-seconds", "0")) * 1000);
+            exporter.deadlineMillis = (long) (Double.parseDouble(option(options, "deadline-seconds", "0")) * 1000);
+            exporter.expressionFile = options.get("expressions");
+            exporter.parallelism = Math.max(1, Integer.parseInt(option(options, "parallel", "1")));
+            exporter.canonical = options.containsKey("canonical");
+            if (options.containsKey("modules"))
+            {
+                exporter.modules = new ArrayList<>();
+                for (String module : options.get("modules").split(","))
+                {
+                    if (!module.trim().isEmpty()) exporter.modules.add(module.trim());
+                }
+            }
+
             System.out.println("Connecting to database: " + jdbcUrl);
             String result = exporter.exportMetadata(jdbcUrl, username, password, outputFile);
             System.out.println(result);
+
+            if (exporter.partial)
+            {
+                System.exit(2);
+            }
         }
         catch (Exception e)
         {
@@ -75,38 +183,114 @@ public class StandaloneMendixExporter
         }
     }
 
+    /**
+     * Split command line arguments into positional arguments and --name[=value] options
+     */
+    private static void parseArguments(String[] args, List<String> positional, Map<String, String> options)
+    {
+        for (String arg : args)
+        {
+            if (arg.startsWith("--"))
+            {
+                int eq = arg.indexOf('=');
+                if (eq < 0)
+                {
+                    options.put(arg.substring(2), "true");
+                }
+                else
+                {
+                    options.put(arg.substring(2, eq), arg.substring(eq + 1));
+                }
+            }
+            else
+            {
+                positional.add(arg);
+            }
+        }
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue)
+    {
+        String value = options.get(name);
+        return value == null ? defaultValue : value;
+    }
+
     /**
      * Export database metadata to jcatalog file
      */
-    public String exportMetadata(String jdbcUrl, String username, String password, String outputFile) throws Exception
+    public String exportMetadata(final String jdbcUrl, final String username, final String password,
+                                 String outputFile) throws Exception
     {
         Connection conn = null;
 
         try
         {
-            // Load appropriate JDBC driver based on URL
-            loadDriver(jdbcUrl);
+            // Load only the JDBC driver for this URL
+            final Driver driver = findDriver(jdbcUrl);
 
             // Connect to database
-            conn = DriverManager.getConnection(jdbcUrl, username, password);
+            if (callTimeoutMillis > 0)
+            {
+                // Drivers read the login timeout from DriverManager
+                DriverManager.setLoginTimeout((int) Math.max(1, (callTimeoutMillis + 999) / 1000));
+            }
+            conn = connect(driver, jdbcUrl, username, password);
             System.out.println("Connected successfully!");
 
-            // Generate jcatalog JSON
+            // Oracle's DatabaseMetaData is slow per call: read its dictionary in bulk
+            oracleDictionary = OracleDictionary.isOracle(jdbcUrl);
+
+            // New connections for reconnects after a timeout and for parallel module export
+            connectionFactory = new Callable<Connection>()
+            {
+                @Override
+                public Connection call() throws SQLException
+                {
+                    return connect(driver, jdbcUrl, username, password);
+                }
+            };
+
+            if (callTimeoutMillis > 0 || deadlineMillis > 0)
+            {
+                // A timed-out call aborts the connection; continue on a new one
+                watchdog = new MetadataWatchdog(conn, connectionFactory, callTimeoutMillis, deadlineMillis);
+            }
+
+            // Extract the catalog model
             System.out.println("Extracting metadata...");
-            JSONObject jcatalog = generateJCatalog(conn);
+            CatalogModel jcatalog = generateJCatalog(conn);
 
-            // Write to file
+            // Write to file; the JSON is streamed from the model
             System.out.println("Writing to file: " + outputFile);
-            try (FileWriter file = new FileWriter(outputFile))
+            try (Writer file = new BufferedWriter(new FileWriter(outputFile)))
             {
-                file.write(jcatalog.toString(4)); // Pretty print with 4-space indent
-                file.flush();
+                JCatalogWriter writer = new JCatalogWriter(file); // Pretty print with 4-space indent
+                writer.setCanonical(canonical);
+                writer.write(jcatalog);
             }
 
+            if (expressionFile != null)
+            {
+                System.out.println("Writing fact expressions to: " + expressionFile);
+                FactExpressionGenerator.generate(Collections.singletonList(jcatalog), Paths.get(expressionFile),
+                    Runtime.getRuntime().availableProcessors());
+            }
+
+            partial = jcatalog.isPartial();
+            if (partial)
+            {
+                return "Exported partial metadata (tables were skipped) to: " + outputFile;
+            }
             return "Successfully exported metadata to: " + outputFile;
         }
         finally
         {
+            if (watchdog != null)
+            {
+                watchdog.close();
+                watchdog = null;
+            }
+
             if (conn != null)
             {
                 try
@@ -123,51 +307,121 @@ public class StandaloneMendixExporter
     }
 
     /**
-     * Load appropriate JDBC driver based on connection URL
+     * Keep system schemas, system tables and Mendix system modules (used by DdlCatalogSource)
      */
-    private void loadDriver(String jdbcUrl) throws ClassNotFoundException
+    void setIncludeSystemTables(boolean includeSystemTables)
     {
-        if (jdbcUrl.startsWith("jdbc:postgresql:"))
-        {
-            Class.forName("org.postgresql.Driver");
-        }
-        else if (jdbcUrl.startsWith("jdbc:sqlserver:"))
-        {
-            Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
-        }
-        else if (jdbcUrl.startsWith("jdbc:mysql:"))
-        {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-        }
-        else if (jdbcUrl.startsWith("jdbc:oracle:"))
-        {
-            Class.forName("oracle.jdbc.driver.OracleDriver");
-        }
-        else if (jdbcUrl.startsWith("jdbc:sqlite:"))
+        this.includeSystemTables = includeSystemTables;
+    }
+
+    /**
+     * Read each schema from the Oracle data dictionary (set from the URL by exportMetadata)
+     */
+    void setOracleDictionary(boolean oracleDictionary)
+    {
+        this.oracleDictionary = oracleDictionary;
+    }
+
+    /**
+     * Export only these Mendix modules (null: all modules; set from --modules by main)
+     */
+    void setModules(List<String> modules)
+    {
+        this.modules = modules;
+    }
+
+    /**
+     * Find the JDBC driver for a connection URL.
+     *
+     * The driver of a known database is loaded by class name; for other URLs
+     * the drivers registered as java.sql.Driver services (JDBC 4 jars) are
+     * tried in turn until one accepts the URL. DriverManager is bypassed, so
+     * the other driver jars on the class path are not scanned and loaded.
+     */
+    static Driver findDriver(String jdbcUrl) throws SQLException
+    {
+        for (String[] known : KNOWN_DRIVERS)
         {
-            Class.forName("org.sqlite.JDBC");
+            if (jdbcUrl.startsWith(known[0]))
+            {
+                try
+                {
+                    return (Driver) Class.forName(known[1]).getDeclaredConstructor().newInstance();
+                }
+                catch (ClassNotFoundException e)
+                {
+                    // Another driver may accept the URL, e.g. MariaDB for jdbc:mysql
+                    break;
+                }
+                catch (ReflectiveOperationException e)
+                {
+                    throw new SQLException("Cannot load JDBC driver " + known[1] + ": " + e, e);
+                }
+            }
         }
-        else if (jdbcUrl.startsWith("jdbc:h2:"))
+
+        Iterator<Driver> drivers = ServiceLoader.load(Driver.class).iterator();
+        while (true)
         {
-            Class.forName("org.h2.Driver");
+            Driver driver;
+            try
+            {
+                if (!drivers.hasNext()) break;
+                driver = drivers.next();
+            }
+            catch (ServiceConfigurationError e)
+            {
+                // A broken jar on the class path must not hide the driver we need
+                System.out.println("Warning: Skipping JDBC driver: " + e.getMessage());
+                continue;
+            }
+
+            if (driver.acceptsURL(jdbcUrl))
+            {
+                return driver;
+            }
         }
-        else
+
+        throw new SQLException("No suitable driver found for " + jdbcUrl
+            + " (put the JDBC driver jar on the class path)", "08001");
+    }
+
+    /**
+     * Open a connection with the given driver
+     */
+    static Connection connect(Driver driver, String jdbcUrl, String username, String password) throws SQLException
+    {
+        Properties info = new Properties();
+        if (username != null) info.setProperty("user", username);
+        if (password != null) info.setProperty("password", password);
+
+        Connection conn = driver.connect(jdbcUrl, info);
+        if (conn == null)
         {
-            System.out.println("Warning: Unknown JDBC driver for URL: " + jdbcUrl);
-            System.out.println("Attempting to continue anyway...");
+            throw new SQLException("No suitable driver found for " + jdbcUrl, "08001");
         }
+        return conn;
     }
 
     /**
-     * Generate the jcatalog JSON structure from database metadata
+     * Generate the jcatalog model from database metadata
      */
-    private JSONObject generateJCatalog(Connection conn) throws SQLException
+    CatalogModel generateJCatalog(Connection conn) throws SQLException
     {
+        startNanos = System.nanoTime();
         DatabaseMetaData metaData = conn.getMetaData();
 
-        JSONObject root = new JSONObject();
-        JSONObject connection = new JSONObject();
-        JSONArray catalogs = new JSONArray();
+        // Guard metadata calls with per-call timeouts and the export deadline
+        if (watchdog != null)
+        {
+            metaData = watchdog.wrap();
+        }
+
+        // Pace all metadata round trips to what the database can sustain
+        if (throttle != null)
+        {
+            metaData = throttle.wrap(metaData);
+        }
 
         // Get catalog name
         String catalogName = conn.getCatalog();
@@ -178,14 +432,11 @@ public class StandaloneMendixExporter
 
         System.out.println("Catalog: " + catalogName);
 
-        JSONObject catalog = new JSONObject();
-        catalog.put("name", catalogName);
-
-        JSONArray schemas = new JSONArray();
+        CatalogModel catalog = new CatalogModel(catalogName);
 
         // Get all schemas
         ResultSet schemaRs = metaData.getSchemas();
-        Map<String, List<String>> schemaTableMap = new HashMap<>();
+        Map<String, List<String>> schemaTableMap = new TreeMap<>(); // Sorted: stable schema order
 
         try
         {
@@ -215,220 +466,589 @@ public class StandaloneMendixExporter
 
         System.out.println("Found " + schemaTableMap.size() + " schema(s)");
 
-        // Track junction tables to convert to associations
-        List<JSONObject> junctionTableAssociations = new ArrayList<>();
+        // Bulk reads of selected modules fetch only their tables
+        List<String> tablePatterns = null;
+        if (modules != null)
+        {
+            tablePatterns = new ArrayList<>();
+            for (String module : modules)
+            {
+                tablePatterns.add(modulePattern(module, "\\"));
+            }
+        }
 
-        // Get all tables for each schema
+        // Get all tables for each schema, one Mendix module at a time
         int totalTables = 0;
-        for (String schemaName : schemaTableMap.keySet())
+        int skippedTables = 0;
+        try
         {
-            System.out.println("Processing schema: " + schemaName);
-
-            JSONObject schema = new JSONObject();
-            schema.put("name", schemaName);
-
-            JSONArray tables = new JSONArray();
+            for (String schemaName : schemaTableMap.keySet())
+            {
+                System.out.println("Processing schema: " + schemaName);
 
-            // Get tables in this schema
-            ResultSet tableRs = metaData.getTables(catalogName, schemaName, "%", new String[] {"TABLE"});
+                CatalogModel.Schema schema = new CatalogModel.Schema(catalog, schemaName);
 
-            try
-            {
-                while (tableRs.next())
+                // Answer the per-table calls of this schema from the dictionary where possible
+                DatabaseMetaData schemaMetaData = metaData;
+                if (oracleDictionary)
                 {
-                    String tableName = tableRs.getString("TABLE_NAME");
-
-                    // Filter out system tables unless explicitly requested
-                    if (!includeSystemTables && (isSystemTable(tableName) || isMendixSystemTable(tableName)))
+                    OracleDictionary dictionary = OracleDictionary.readOwner(conn, watchdog, throttle, schemaName,
+                        tablePatterns);
+                    if (dictionary != null)
                     {
-                        continue;
+                        System.out.println("  Dictionary: " + dictionary.tableCount() + " table(s), "
+                            + dictionary.columnCount() + " column(s)");
+                        schemaMetaData = dictionary.wrap(metaData);
                     }
+                }
 
-                    // Check if this is a Mendix junction table (many-to-many)
-                    if (isJunctionTable(tableName, metaData, catalogName, schemaName))
+                List<ModuleUnit> units;
+                if (modules != null)
+                {
+                    // Selected modules: each unit lists only its own tables
+                    String escape = schemaMetaData.getSearchStringEscape();
+                    units = new ArrayList<>();
+                    for (String module : modules)
                     {
-                        // Convert to association instead of table
-                        System.out.println("  Detected junction table: " + tableName + " (converting to association)");
-                        JSONObject association = junctionTableToAssociation(
-                            tableName, metaData, catalogName, schemaName);
-                        junctionTableAssociations.add(association);
-                        continue; // Don't add as table
+                        units.add(new ModuleUnit(module, modulePattern(module, escape)));
                     }
-
-                    System.out.println("  Processing table: " + tableName);
-
-                    JSONObject table = new JSONObject();
-                    table.put("name", tableName);
-
-                    // Get columns for this table
-                    JSONArray columns = getTableColumns(metaData, catalogName, schemaName, tableName);
-                    table.put("columns", columns);
-
-                    // Get primary key for this table
-                    JSONObject primaryKey = getTablePrimaryKey(metaData, catalogName, schemaName, tableName);
-                    if (primaryKey != null && primaryKey.has("columns"))
+                }
+                else
+                {
+                    // Read the complete table list first: a timed-out call aborts the
+                    // connection, which would also end an open table ResultSet
+                    List<String[]> tables;
+                    try
                     {
-                        table.put("primarykey", primaryKey);
+                        tables = getTableList(schemaMetaData, catalogName, schemaName, "%");
                     }
-
-                    // Get foreign keys (optional - as annotations)
-                    JSONArray foreignKeys = getTableForeignKeys(metaData, catalogName, schemaName, tableName);
-                    if (foreignKeys.length() > 0)
+                    catch (SQLTimeoutException e)
                     {
-                        table.put("foreignkeys", foreignKeys);
+                        System.out.println("  Skipped schema: " + schemaName + " (" + e.getMessage() + ")");
+                        schema.setSkipped(e.getMessage());
+                        catalog.schemas.add(schema);
+                        continue;
                     }
+                    units = groupByModule(tables);
+                    System.out.println("  Modules: " + units.size());
+                }
+
+                // Indexes of the whole schema in one query where the database allows
+                IndexExtractor indexes = IndexExtractor.readSchema(conn, watchdog, throttle, schemaName, tablePatterns);
+                if (indexes != null)
+                {
+                    System.out.println("  Indexes: " + indexes.columnCount() + " index column(s) on "
+                        + indexes.tableCount() + " table(s)");
+                }
+
+                exportUnits(units, catalog, schemaMetaData, schemaMetaData != metaData, catalogName, schemaName, indexes);
+
+                // Merge the module fragments in module order
+                for (ModuleUnit unit : units)
+                {
+                    schema.tables.addAll(unit.fragment.tables);
+                    schema.associations.addAll(unit.fragment.associations);
+                    schema.skippedTables.addAll(unit.fragment.skippedTables);
+                    totalTables += unit.exported;
+                    skippedTables += unit.fragment.skippedTables.size();
+                }
 
-                    // Get table comment/annotation if available
-                    String remarks = tableRs.getString("REMARKS");
-                    if (remarks != null && !remarks.isEmpty())
+                // Only add schema if it has tables (or skipped tables, to report them)
+                if (!schema.tables.isEmpty() || !schema.skippedTables.isEmpty())
+                {
+                    if (!schema.associations.isEmpty())
                     {
-                        table.put("annotation", remarks);
+                        System.out.println("Added " + schema.associations.size() + " associations from junction tables");
                     }
 
-                    tables.put(table);
-                    totalTables++;
+                    catalog.schemas.add(schema);
                 }
             }
-            finally
-            {
-                tableRs.close();
-            }
+        }
+        finally
+        {
+            closeWorkers();
+        }
 
-            // Only add schema if it has tables
-            if (tables.length() > 0)
+        System.out.println("Total tables processed: " + totalTables);
+        if (skippedTables > 0)
+        {
+            System.out.println("Tables skipped: " + skippedTables);
+        }
+
+        if (throttle != null)
+        {
+            System.out.println("Throttle: " + throttle.getSummary());
+        }
+
+        return catalog;
+    }
+
+    /**
+     * Get the names and remarks of the (non-system) tables in a schema whose
+     * name matches the pattern
+     */
+    private List<String[]> getTableList(DatabaseMetaData metaData, String catalog, String schema,
+                                        String tablePattern) throws SQLException
+    {
+        List<String[]> tables = new ArrayList<>();
+        ResultSet tableRs = metaData.getTables(catalog, schema, tablePattern, new String[] {"TABLE"});
+
+        try
+        {
+            while (tableRs.next())
             {
-                schema.put("tables", tables);
+                String tableName = tableRs.getString("TABLE_NAME");
 
-                // Add associations (converted junction tables)
-                if (!junctionTableAssociations.isEmpty())
+                // Filter out system tables unless explicitly requested
+                if (!includeSystemTables && (isSystemTable(tableName) || isMendixSystemTable(tableName)))
                 {
-                    JSONArray associations = new JSONArray();
-                    for (JSONObject assoc : junctionTableAssociations)
-                    {
-                        associations.put(assoc);
-                    }
-                    schema.put("associations", associations);
-                    System.out.println("Added " + associations.length() + " associations from junction tables");
+                    continue;
                 }
 
-                schemas.put(schema);
+                tables.add(new String[] {tableName, tableRs.getString("REMARKS")});
             }
         }
+        finally
+        {
+            tableRs.close();
+        }
 
-        System.out.println("Total tables processed: " + totalTables);
+        return tables;
+    }
 
-        catalog.put("schemas", schemas);
-        catalogs.put(catalog);
+    /**
+     * The tables of one Mendix module in a schema, exported as an independent unit
+     */
+    private static class ModuleUnit
+    {
+        final String module;
+        final String pattern;
+        List<String[]> tables;
+        CatalogModel.Schema fragment;
+        int exported;
+
+        /**
+         * A selected module; its tables are listed with the name pattern
+         */
+        ModuleUnit(String module, String pattern)
+        {
+            this.module = module;
+            this.pattern = pattern;
+        }
 
-        connection.put("catalogs", catalogs);
-        root.put("connection", connection);
+        /**
+         * A module whose tables are already known
+         */
+        ModuleUnit(String module, List<String[]> tables)
+        {
+            this.module = module;
+            this.pattern = null;
+            this.tables = tables;
+        }
+    }
 
-        return root;
+    /**
+     * Module of a table: the name prefix before '$', or "" for tables outside modules
+     */
+    static String moduleOf(String tableName)
+    {
+        int dollar = tableName.indexOf('$');
+        return dollar > 0 ? tableName.substring(0, dollar) : "";
     }
 
     /**
-     * Get all columns for a table
+     * getTables pattern for the tables of a module, with _ and % in the module
+     * name escaped so they match literally
      */
-    private JSONArray getTableColumns(DatabaseMetaData metaData, String catalog,
-                                      String schema, String tableName) throws SQLException
+    static String modulePattern(String module, String escape)
     {
-        JSONArray columns = new JSONArray();
+        StringBuilder pattern = new StringBuilder();
+        for (int i = 0; i < module.length(); i++)
+        {
+            char c = module.charAt(i);
+            if (escape != null && !escape.isEmpty()
+                && (c == '_' || c == '%' || escape.indexOf(c) >= 0))
+            {
+                pattern.append(escape);
+            }
+            pattern.append(c);
+        }
+        return pattern.append("$%").toString();
+    }
+
+    /**
+     * Group a table list by module, keeping the order of the list
+     */
+    private static List<ModuleUnit> groupByModule(List<String[]> tables)
+    {
+        Map<String, List<String[]>> byModule = new LinkedHashMap<>();
+        for (String[] table : tables)
+        {
+            String module = moduleOf(table[0]);
+            List<String[]> moduleTables = byModule.get(module);
+            if (moduleTables == null)
+            {
+                moduleTables = new ArrayList<>();
+                byModule.put(module, moduleTables);
+            }
+            moduleTables.add(table);
+        }
+
+        List<ModuleUnit> units = new ArrayList<>();
+        for (Map.Entry<String, List<String[]>> entry : byModule.entrySet())
+        {
+            units.add(new ModuleUnit(entry.getKey(), entry.getValue()));
+        }
+        return units;
+    }
+
+    /**
+     * Export the units, concurrently over worker connections when --parallel is set.
+     * Metadata answered from memory (inMemory) is exported on this thread.
+     */
+    private void exportUnits(List<ModuleUnit> units, final CatalogModel catalog, DatabaseMetaData metaData,
+                             boolean inMemory, final String catalogName, final String schemaName,
+                             final IndexExtractor indexes) throws SQLException
+    {
+        for (ModuleUnit unit : units)
+        {
+            unit.fragment = new CatalogModel.Schema(catalog, schemaName);
+        }
+
+        if (parallelism <= 1 || units.size() <= 1 || connectionFactory == null || inMemory)
+        {
+            for (ModuleUnit unit : units)
+            {
+                exportUnit(unit, metaData, watchdog, catalogName, schemaName, indexes);
+            }
+            return;
+        }
 
-        ResultSet columnRs = metaData.getColumns(catalog, schema, tableName, "%");
+        // The main connection is the first worker; open the others once per export
+        if (workers.isEmpty())
+        {
+            Worker main = new Worker(metaData, watchdog);
+            workers.add(main);
+            idleWorkers.add(main);
+        }
+        while (workers.size() < Math.min(parallelism, units.size()))
+        {
+            Worker worker = new Worker();
+            workers.add(worker);
+            idleWorkers.add(worker);
+        }
+        if (workerPool == null)
+        {
+            workerPool = Executors.newFixedThreadPool(parallelism);
+        }
+
+        List<Future<Void>> futures = new ArrayList<>();
+        for (final ModuleUnit unit : units)
+        {
+            futures.add(workerPool.submit(new Callable<Void>()
+            {
+                @Override
+                public Void call() throws Exception
+                {
+                    Worker worker = idleWorkers.take();
+                    try
+                    {
+                        exportUnit(unit, worker.metaData, worker.watchdog, catalogName, schemaName, indexes);
+                    }
+                    finally
+                    {
+                        idleWorkers.put(worker);
+                    }
+                    return null;
+                }
+            }));
+        }
 
         try
         {
-            while (columnRs.next())
+            for (Future<Void> future : futures)
+            {
+                future.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while exporting modules", e);
+        }
+        catch (ExecutionException e)
+        {
+            for (Future<Void> future : futures)
             {
-                JSONObject column = new JSONObject();
-                String columnName = columnRs.getString("COLUMN_NAME");
-                column.put("name", columnName);
+                future.cancel(true);
+            }
+            if (e.getCause() instanceof SQLException) throw (SQLException) e.getCause();
+            throw new SQLException("Module export failed: " + e.getCause(), e.getCause());
+        }
+    }
 
-                // Optional: Add data type information as metadata
-                String dataType = columnRs.getString("TYPE_NAME");
-                int columnSize = columnRs.getInt("COLUMN_SIZE");
-                String nullable = columnRs.getString("IS_NULLABLE");
-                String remarks = columnRs.getString("REMARKS");
+    /**
+     * Export the tables of one module into its schema fragment
+     */
+    private void exportUnit(ModuleUnit unit, DatabaseMetaData metaData, MetadataWatchdog watchdog,
+                            String catalogName, String schemaName, IndexExtractor indexes) throws SQLException
+    {
+        CatalogModel.Schema schema = unit.fragment;
 
-                JSONObject metadata = new JSONObject();
-                metadata.put("type", dataType);
-                metadata.put("size", columnSize);
-                metadata.put("nullable", "YES".equalsIgnoreCase(nullable));
+        if (unit.tables == null)
+        {
+            try
+            {
+                unit.tables = new ArrayList<>();
+                for (String[] table : getTableList(metaData, catalogName, schemaName, unit.pattern))
+                {
+                    // Without a search string escape, _ in the module name matches any character
+                    if (moduleOf(table[0]).equalsIgnoreCase(unit.module))
+                    {
+                        unit.tables.add(table);
+                    }
+                }
+            }
+            catch (SQLTimeoutException e)
+            {
+                System.out.println("  Skipped module: " + unit.module + " (" + e.getMessage() + ")");
+                schema.addSkippedTable(unit.module, "Module table list: " + e.getMessage());
+                return;
+            }
+        }
+
+        System.out.println("  Processing module: " + (unit.module.isEmpty() ? "(none)" : unit.module)
+            + " (" + unit.tables.size() + " tables)");
+
+        List<String[]> tables = unit.tables;
+        for (int t = 0; t < tables.size(); t++)
+        {
+            String tableName = tables.get(t)[0];
 
-                if (remarks != null && !remarks.isEmpty())
+            if (watchdog != null && watchdog.isDeadlineExpired())
+            {
+                System.out.println("  Export deadline reached, skipping " + (tables.size() - t) + " remaining table(s)");
+                for (; t < tables.size(); t++)
                 {
-                    metadata.put("annotation", remarks);
+                    schema.addSkippedTable(tables.get(t)[0], "Export deadline reached");
                 }
+                break;
+            }
 
-                // Add default value if exists
-                String defaultValue = columnRs.getString("COLUMN_DEF");
-                if (defaultValue != null && !defaultValue.isEmpty())
+            int tableMark = schema.tables.size();
+            int associationMark = schema.associations.size();
+            try
+            {
+                if (exportTable(schema, tableName, tables.get(t)[1], metaData, catalogName, schemaName, indexes))
                 {
-                    metadata.put("default", defaultValue);
+                    unit.exported++;
                 }
+            }
+            catch (SQLTimeoutException e)
+            {
+                // Drop what was collected for the table and record it as skipped
+                schema.tables.subList(tableMark, schema.tables.size()).clear();
+                schema.associations.subList(associationMark, schema.associations.size()).clear();
+                schema.addSkippedTable(tableName, e.getMessage());
+                System.out.println("  Skipped table: " + tableName + " (" + e.getMessage() + ")");
+            }
+        }
+    }
 
-                column.put("metadata", metadata);
+    /**
+     * A connection used for parallel module export, with its own watchdog
+     */
+    private class Worker
+    {
+        final Connection connection;
+        final MetadataWatchdog watchdog;
+        final DatabaseMetaData metaData;
+
+        /**
+         * The main connection, already guarded and throttled
+         */
+        Worker(DatabaseMetaData metaData, MetadataWatchdog watchdog)
+        {
+            this.connection = null;
+            this.watchdog = watchdog;
+            this.metaData = metaData;
+        }
 
-                columns.put(column);
+        /**
+         * A new connection; the throttle is shared with the other workers
+         */
+        Worker() throws SQLException
+        {
+            try
+            {
+                connection = connectionFactory.call();
             }
+            catch (SQLException e)
+            {
+                throw e;
+            }
+            catch (Exception e)
+            {
+                throw new SQLException("Cannot open worker connection: " + e.getMessage(), e);
+            }
+
+            if (callTimeoutMillis > 0 || deadlineMillis > 0)
+            {
+                // The deadline is for the whole export, not from this connection on
+                long remaining = deadlineMillis > 0
+                    ? Math.max(1, deadlineMillis - (System.nanoTime() - startNanos) / 1000000)
+                    : 0;
+                watchdog = new MetadataWatchdog(connection, connectionFactory, callTimeoutMillis, remaining);
+            }
+            else
+            {
+                watchdog = null;
+            }
+
+            DatabaseMetaData workerMetaData = watchdog != null ? watchdog.wrap() : connection.getMetaData();
+            metaData = throttle != null ? throttle.wrap(workerMetaData) : workerMetaData;
         }
-        finally
+
+        void close()
         {
-            columnRs.close();
+            if (connection == null) return;
+
+            if (watchdog != null)
+            {
+                watchdog.close();
+            }
+            try
+            {
+                connection.close();
+            }
+            catch (SQLException e)
+            {
+                System.err.println("Warning: Failed to close worker connection: " + e.getMessage());
+            }
         }
+    }
 
-        return columns;
+    private void closeWorkers()
+    {
+        if (workerPool != null)
+        {
+            workerPool.shutdownNow();
+            workerPool = null;
+        }
+        for (Worker worker : workers)
+        {
+            worker.close();
+        }
+        workers.clear();
+        idleWorkers.clear();
     }
 
     /**
-     * Get primary key for a table
+     * Export one table, or the association of a junction table.
+     * Returns true when a table was added.
      */
-    private JSONObject getTablePrimaryKey(DatabaseMetaData metaData, String catalog,
-                                          String schema, String tableName) throws SQLException
+    private boolean exportTable(CatalogModel.Schema schema, String tableName, String remarks,
+                                DatabaseMetaData metaData, String catalogName, String schemaName,
+                                IndexExtractor indexes) throws SQLException
     {
-        JSONObject primaryKey = null;
-        JSONArray pkColumns = new JSONArray();
+        // Foreign keys first: they also tell whether this is a junction table
+        CatalogModel.Table table = schema.addTable(tableName);
+        getTableForeignKeys(table, metaData, catalogName, schemaName);
+
+        // Check if this is a Mendix junction table (many-to-many)
+        if (isJunctionTable(table))
+        {
+            // Convert to association instead of table
+            schema.tables.remove(schema.tables.size() - 1);
+            System.out.println("  Detected junction table: " + tableName + " (converting to association)");
+            junctionTableToAssociation(schema.addAssociation(tableName), table);
+            return false; // Don't add as table
+        }
+
+        System.out.println("  Processing table: " + tableName);
+
+        // Get columns and primary key for this table
+        getTableColumns(table, metaData, catalogName, schemaName);
+        getTablePrimaryKey(table, metaData, catalogName, schemaName);
+
+        // Indexes and unique constraints: from the schema query, otherwise per table
+        if (indexes != null)
+        {
+            indexes.apply(table);
+        }
+        else
+        {
+            IndexExtractor.readTable(metaData, catalogName, schemaName, table);
+        }
 
-        ResultSet pkRs = metaData.getPrimaryKeys(catalog, schema, tableName);
+        // Get table comment/annotation if available
+        if (remarks != null && !remarks.isEmpty())
+        {
+            table.setAnnotation(remarks);
+        }
+
+        return true;
+    }
+
+    /**
+     * Get all columns for a table
+     */
+    private void getTableColumns(CatalogModel.Table table, DatabaseMetaData metaData,
+                                 String catalog, String schema) throws SQLException
+    {
+        ResultSet columnRs = metaData.getColumns(catalog, schema, table.getName(), "%");
 
         try
         {
-            while (pkRs.next())
+            while (columnRs.next())
             {
-                JSONObject pkColumn = new JSONObject();
-                pkColumn.put("column", pkRs.getString("COLUMN_NAME"));
-                pkColumn.put("position", String.valueOf(pkRs.getInt("KEY_SEQ")));
-                pkColumns.put(pkColumn);
+                table.addColumn(
+                    columnRs.getString("COLUMN_NAME"),
+                    columnRs.getString("TYPE_NAME"),
+                    columnRs.getInt("COLUMN_SIZE"),
+                    "YES".equalsIgnoreCase(columnRs.getString("IS_NULLABLE")),
+                    columnRs.getString("REMARKS"),
+                    columnRs.getString("COLUMN_DEF"));
             }
         }
         finally
         {
-            pkRs.close();
+            columnRs.close();
         }
+    }
+
+    /**
+     * Get primary key for a table
+     */
+    private void getTablePrimaryKey(CatalogModel.Table table, DatabaseMetaData metaData,
+                                    String catalog, String schema) throws SQLException
+    {
+        ResultSet pkRs = metaData.getPrimaryKeys(catalog, schema, table.getName());
 
-        if (pkColumns.length() > 0)
+        try
         {
-            primaryKey = new JSONObject();
-            primaryKey.put("columns", pkColumns);
+            while (pkRs.next())
+            {
+                table.addPrimaryKeyColumn(pkRs.getString("COLUMN_NAME"), pkRs.getInt("KEY_SEQ"));
+            }
+        }
+        finally
+        {
+            pkRs.close();
         }
-
-        return primaryKey;
     }
 
     /**
      * Get foreign keys for a table
      */
-    private JSONArray getTableForeignKeys(DatabaseMetaData metaData, String catalog,
-                                          String schema, String tableName) throws SQLException
+    private void getTableForeignKeys(CatalogModel.Table table, DatabaseMetaData metaData,
+                                     String catalog, String schema) throws SQLException
     {
-        JSONArray foreignKeys = new JSONArray();
-
-        ResultSet fkRs = metaData.getImportedKeys(catalog, schema, tableName);
+        ResultSet fkRs = metaData.getImportedKeys(catalog, schema, table.getName());
 
         try
         {
-            Map<String, JSONObject> fkMap = new HashMap<>();
-
             while (fkRs.next())
             {
                 String fkName = fkRs.getString("FK_NAME");
@@ -438,36 +1058,16 @@ public class StandaloneMendixExporter
                     fkName = "FK_" + fkRs.getString("FKCOLUMN_NAME");
                 }
 
-                JSONObject fk = fkMap.get(fkName);
-                if (fk == null)
-                {
-                    fk = new JSONObject();
-                    fk.put("name", fkName);
-                    fk.put("referencedTable", fkRs.getString("PKTABLE_NAME"));
-                    fk.put("referencedSchema", fkRs.getString("PKTABLE_SCHEM"));
-                    fk.put("columns", new JSONArray());
-                    fkMap.put(fkName, fk);
-                }
-
-                JSONObject fkColumn = new JSONObject();
-                fkColumn.put("column", fkRs.getString("FKCOLUMN_NAME"));
-                fkColumn.put("referencedColumn", fkRs.getString("PKCOLUMN_NAME"));
-                fkColumn.put("position", String.valueOf(fkRs.getInt("KEY_SEQ")));
+                CatalogModel.ForeignKey fk = table.foreignKey(fkName,
+                    fkRs.getString("PKTABLE_SCHEM"), fkRs.getString("PKTABLE_NAME"));
 
-                ((JSONArray) fk.get("columns")).put(fkColumn);
-            }
-
-            for (JSONObject fk : fkMap.values())
-            {
-                foreignKeys.put(fk);
+                fk.addColumn(fkRs.getString("FKCOLUMN_NAME"), fkRs.getString("PKCOLUMN_NAME"), fkRs.getInt("KEY_SEQ"));
             }
         }
         finally
         {
             fkRs.close();
         }
-
-        return foreignKeys;
     }
 
     /**
@@ -542,29 +1142,20 @@ public class StandaloneMendixExporter
      * 2. Exactly two foreign keys
      * 3. Typically a composite primary key
      */
-    private boolean isJunctionTable(String tableName, DatabaseMetaData metaData,
-                                    String catalog, String schema) throws SQLException
+    private boolean isJunctionTable(CatalogModel.Table table)
     {
         // Must have Mendix naming pattern
+        String tableName = table.getName();
         if (!tableName.contains("$") || !tableName.contains("_"))
         {
             return false;
         }
 
-        // Count foreign keys
-        ResultSet fkRs = metaData.getImportedKeys(catalog, schema, tableName);
+        // Count foreign key columns (already read with the table)
         int fkCount = 0;
-
-        try
-        {
-            while (fkRs.next())
-            {
-                fkCount++;
-            }
-        }
-        finally
+        for (CatalogModel.ForeignKey fk : table.getForeignKeys())
         {
-            fkRs.close();
+            fkCount += fk.getColumnCount();
         }
 
         // Junction tables have exactly 2 foreign keys
@@ -574,42 +1165,30 @@ public class StandaloneMendixExporter
     /**
      * Convert junction table to semantic association
      */
-    private JSONObject junctionTableToAssociation(String junctionTable,
-                                                   DatabaseMetaData metaData,
-                                                   String catalog, String schema) throws SQLException
+    private void junctionTableToAssociation(CatalogModel.Association association, CatalogModel.Table table)
     {
-        JSONObject association = new JSONObject();
-        association.put("type", "many-to-many");
-        association.put("junctionTable", junctionTable);
+        String junctionTable = association.junctionTable;
 
         // Extract semantic name from table name
         // e.g., "mymodule$customer_order" → "Customer_Order"
         String name = junctionTable.substring(junctionTable.indexOf("$") + 1);
-        association.put("name", formatAssociationName(name));
+        association.name = formatAssociationName(name);
 
         // Get the two entities being associated
-        ResultSet fkRs = metaData.getImportedKeys(catalog, schema, junctionTable);
         List<String> targets = new ArrayList<>();
-
-        try
+        for (CatalogModel.ForeignKey fk : table.getForeignKeys())
         {
-            while (fkRs.next())
+            for (int i = 0; i < fk.getColumnCount(); i++)
             {
-                targets.add(fkRs.getString("PKTABLE_NAME"));
-            }
-
-            if (targets.size() == 2)
-            {
-                association.put("entity1", targets.get(0));
-                association.put("entity2", targets.get(1));
+                targets.add(fk.getReferencedTable());
             }
         }
-        finally
+
+        if (targets.size() == 2)
         {
-            fkRs.close();
+            association.entity1 = targets.get(0);
+            association.entity2 = targets.get(1);
         }
-
-        return association;
     }
 
     /**
@@ -0,0 +1,62 @@
+@echo off
+REM ============================================================================
+REM Build the fast-starting Mendix exporter launcher
+REM
+REM   build_launcher.bat          builds mendix-exporter.jar
+REM   build_launcher.bat native   also builds mendix-exporter.exe (GraalVM)
+REM
+REM export_mendix.bat runs the jar with an AppCDS archive (mendix-exporter.jsa)
+REM that is recorded by the first export and reused afterwards, or the native
+REM executable when it exists.
+REM ============================================================================
+
+setlocal
+cd /d "%~dp0"
+
+set JSON_JAR=json-20231013.jar
+if "%DRIVER_JARS%"=="" set DRIVER_JARS=postgresql-42.7.1.jar
+
+echo Compiling Java exporter...
+if exist build rmdir /s /q build
+mkdir build
+javac -encoding UTF-8 -cp "%JSON_JAR%" -sourcepath . -d build StandaloneMendixExporter.java
+if errorlevel 1 (
+    echo ERROR: Failed to compile Java exporter
+    echo Make sure %JSON_JAR% is in the same directory
+    exit /b 1
+)
+
+REM Reflection and proxy configuration, picked up by native-image from the jar
+mkdir build\META-INF\native-image\casetalk\mendix-exporter
+copy /y native-image\*.json build\META-INF\native-image\casetalk\mendix-exporter >nul
+
+echo Packaging mendix-exporter.jar...
+jar cfe mendix-exporter.jar StandaloneMendixExporter -C build .
+if errorlevel 1 (
+    echo ERROR: Failed to create mendix-exporter.jar
+    exit /b 1
+)
+
+REM Classes in the old archive no longer match the jar
+if exist mendix-exporter.jsa del mendix-exporter.jsa
+
+if /i not "%1"=="native" goto done
+
+where native-image >nul 2>&1
+if errorlevel 1 (
+    echo ERROR: native-image not found; install GraalVM and add its bin directory to PATH
+    exit /b 1
+)
+
+echo Building native executable (this takes a few minutes)...
+native-image --no-fallback -cp "mendix-exporter.jar;%JSON_JAR%;%DRIVER_JARS%" -o mendix-exporter StandaloneMendixExporter
+if errorlevel 1 (
+    echo ERROR: native-image failed
+    echo Drivers without embedded native-image metadata need one traced export, then build again:
+    echo   java -agentlib:native-image-agent=config-merge-dir=native-image -cp "mendix-exporter.jar;%JSON_JAR%;%DRIVER_JARS%" StandaloneMendixExporter ^<arguments^>
+    exit /b 1
+)
+
+:done
+echo Launcher built.
+endlocal
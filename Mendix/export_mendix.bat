@@ -25,6 +25,21 @@ set DB_PASS=secret
 set OUTPUT_FILE=mendix_export.jcatalog
 set INCLUDE_SYSTEM=false
 
+REM JDBC driver jar(s), separated by ; (same default as build_launcher.bat)
+if "%DRIVER_JARS%"=="" set DRIVER_JARS=%~dp0postgresql-42.7.1.jar
+
+REM Startup options: the first run records the loaded classes in an AppCDS
+REM archive (JDK 13+), later runs map it instead of loading the classes again.
+REM Delete mendix-exporter.jsa after changing the JDK or the jars. Older JDKs
+REM ignore these options. C1 and the serial GC start fastest; the export
+REM itself waits on the database.
+if exist "%~dp0mendix-exporter.jsa" (
+    set CDS_OPTS=-XX:SharedArchiveFile="%~dp0mendix-exporter.jsa"
+) else (
+    set CDS_OPTS=-XX:ArchiveClassesAtExit="%~dp0mendix-exporter.jsa"
+)
+set JAVA_OPTS=-XX:+IgnoreUnrecognizedVMOptions %CDS_OPTS% -Xshare:auto -XX:TieredStopAtLevel=1 -XX:+UseSerialGC
+
 REM Ask user for configuration
 echo Default configuration:
 echo   JDBC URL: %JDBC_URL%
@@ -49,27 +64,36 @@ echo.
 echo Exporting metadata...
 echo ========================================================================
 
-REM Compile Java file if needed
-if not exist StandaloneMendixExporter.class (
-    echo Compiling Java exporter...
-    javac -cp ".;json-20231013.jar" StandaloneMendixExporter.java
+REM Build the launcher jar if needed
+if not exist "%~dp0mendix-exporter.jar" (
+    call "%~dp0build_launcher.bat"
     if errorlevel 1 (
-        echo ERROR: Failed to compile Java exporter
-        echo Make sure json-20231013.jar is in the same directory
         pause
         exit /b 1
     )
 )
 
-REM Run the exporter
-java -cp ".;json-20231013.jar;postgresql-42.7.1.jar" StandaloneMendixExporter "%JDBC_URL%" "%DB_USER%" "%DB_PASS%" "%OUTPUT_FILE%" %INCLUDE_SYSTEM%
+REM Run the exporter: the native executable when built, otherwise the jar
+if exist "%~dp0mendix-exporter.exe" (
+    "%~dp0mendix-exporter.exe" "%JDBC_URL%" "%DB_USER%" "%DB_PASS%" "%OUTPUT_FILE%" %INCLUDE_SYSTEM%
+) else (
+    java %JAVA_OPTS% -cp "%~dp0mendix-exporter.jar;%~dp0json-20231013.jar;%DRIVER_JARS%" StandaloneMendixExporter "%JDBC_URL%" "%DB_USER%" "%DB_PASS%" "%OUTPUT_FILE%" %INCLUDE_SYSTEM%
+)
+
+REM Exit code 2: partial export (tables skipped after a timeout or the deadline)
+if errorlevel 2 (
+    echo.
+    echo WARNING: Partial export, see skippedTables in %OUTPUT_FILE%
+    echo The tables listed there could not be read; the rest was exported.
+    goto exported
+)
 
 if errorlevel 1 (
     echo.
     echo ERROR: Export failed
     echo.
     echo Common issues:
-    echo   - JDBC driver not found: Make sure the appropriate JDBC jar is in the directory
+    echo   - JDBC driver not found: Set DRIVER_JARS to the JDBC jar^(s^) of your database
     echo     * PostgreSQL: postgresql-42.7.1.jar
     echo     * SQL Server: mssql-jdbc-12.4.2.jre11.jar
     echo     * MySQL: mysql-connector-j-8.2.0.jar
@@ -84,6 +108,8 @@ echo.
 echo ========================================================================
 echo SUCCESS! Metadata exported to: %OUTPUT_FILE%
 echo ========================================================================
+
+:exported
 echo.
 echo Next steps:
 echo   1. Copy %OUTPUT_FILE% to your CaseTalk project folder
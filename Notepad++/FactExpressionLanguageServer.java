@@ -0,0 +1,741 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Language server (LSP over stdio) for CaseTalk fact expression files.
+ *
+ * Uses the same rules as FactExpressionValidator and the Notepad++ UDL. Features:
+ *   - diagnostics, published 200 ms after the last edit
+ *   - completion of fact type names (after '[' or in an expression), of
+ *     roles (after '<') and of the Tag keyword (after the comma)
+ *   - go to definition: from a fact type name in an expression to its
+ *     [header], and from a <role> to its first use
+ *
+ * Documents are kept as a list of lines with a parse result per line.
+ * Incremental edits only reparse the lines they touch, and the index of fact
+ * types and roles is updated from the old and new results of those lines.
+ *
+ * Usage (configure as the server command in the editor's LSP client):
+ *   java -cp ".;json-20231013.jar" FactExpressionLanguageServer
+ *
+ * @author CaseTalk Integration
+ * @version 1.0
+ */
+public class FactExpressionLanguageServer
+{
+    private static final long DIAGNOSTICS_DELAY_MS = 200;
+    private static final int MAX_DIAGNOSTICS = 1000;
+    private static final int MAX_COMPLETIONS = 500;
+    private static final Pattern LINE_BREAK = Pattern.compile("\r\n|\r|\n");
+
+    // LSP constants
+    private static final int SEVERITY_ERROR = 1;
+    private static final int SYNC_INCREMENTAL = 2;
+    private static final int COMPLETION_FIELD = 5;
+    private static final int COMPLETION_CLASS = 7;
+    private static final int COMPLETION_KEYWORD = 14;
+
+    private final InputStream in;
+    private final OutputStream out;
+    private final Map<String, Document> documents = new HashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+    {
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, "diagnostics");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private boolean shutdown;
+
+    public static void main(String[] args)
+    {
+        try
+        {
+            new FactExpressionLanguageServer(System.in, System.out).run();
+        }
+        catch (Exception e)
+        {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    FactExpressionLanguageServer(InputStream in, OutputStream out)
+    {
+        this.in = new BufferedInputStream(in, 1 << 16);
+        this.out = out;
+    }
+
+    /**
+     * Read and handle messages until the client exits
+     */
+    void run() throws IOException
+    {
+        String message;
+        while ((message = readMessage()) != null)
+        {
+            JSONObject request = new JSONObject(message);
+            Object id = request.opt("id");
+            String method = request.optString("method", "");
+            JSONObject params = request.optJSONObject("params");
+
+            try
+            {
+                Object result = handle(method, params);
+                if (id != null)
+                {
+                    respond(new JSONObject().put("id", id).put("result", result == null ? JSONObject.NULL : result));
+                }
+            }
+            catch (UnsupportedOperationException e)
+            {
+                if (id != null)
+                {
+                    respond(new JSONObject().put("id", id).put("error",
+                        new JSONObject().put("code", -32601).put("message", "Method not found: " + method)));
+                }
+            }
+            catch (RuntimeException e)
+            {
+                System.err.println("Error handling " + method + ": " + e);
+                if (id != null)
+                {
+                    respond(new JSONObject().put("id", id).put("error",
+                        new JSONObject().put("code", -32603).put("message", String.valueOf(e.getMessage()))));
+                }
+            }
+
+            if ("exit".equals(method))
+            {
+                break;
+            }
+        }
+
+        timer.shutdownNow();
+        System.exit(shutdown ? 0 : 1);
+    }
+
+    private Object handle(String method, JSONObject params)
+    {
+        switch (method)
+        {
+            case "initialize":
+                return new JSONObject()
+                    .put("capabilities", new JSONObject()
+                        .put("textDocumentSync", new JSONObject().put("openClose", true).put("change", SYNC_INCREMENTAL))
+                        .put("completionProvider", new JSONObject().put("triggerCharacters", new JSONArray().put("[").put("<")))
+                        .put("definitionProvider", true))
+                    .put("serverInfo", new JSONObject().put("name", "CaseTalk fact expressions"));
+
+            case "initialized":
+            case "exit":
+            case "$/cancelRequest":
+            case "$/setTrace":
+                return null;
+
+            case "shutdown":
+                shutdown = true;
+                return null;
+
+            case "textDocument/didOpen":
+            {
+                JSONObject item = params.getJSONObject("textDocument");
+                Document document = new Document(item.getString("uri"));
+                synchronized (document)
+                {
+                    document.replace(0, 0, 0, 0, item.getString("text"), true);
+                }
+                synchronized (documents)
+                {
+                    documents.put(document.uri, document);
+                }
+                scheduleDiagnostics(document);
+                return null;
+            }
+
+            case "textDocument/didChange":
+            {
+                Document document = document(params);
+                if (document == null) return null;
+
+                JSONArray changes = params.getJSONArray("contentChanges");
+                synchronized (document)
+                {
+                    for (int i = 0; i < changes.length(); i++)
+                    {
+                        JSONObject change = changes.getJSONObject(i);
+                        JSONObject range = change.optJSONObject("range");
+                        if (range == null)
+                        {
+                            document.replace(0, 0, 0, 0, change.getString("text"), true);
+                        }
+                        else
+                        {
+                            JSONObject start = range.getJSONObject("start");
+                            JSONObject end = range.getJSONObject("end");
+                            document.replace(start.getInt("line"), start.getInt("character"),
+                                end.getInt("line"), end.getInt("character"), change.getString("text"), false);
+                        }
+                    }
+                }
+                scheduleDiagnostics(document);
+                return null;
+            }
+
+            case "textDocument/didClose":
+            {
+                String uri = params.getJSONObject("textDocument").getString("uri");
+                Document document;
+                synchronized (documents)
+                {
+                    document = documents.remove(uri);
+                }
+                if (document != null)
+                {
+                    synchronized (document)
+                    {
+                        if (document.pending != null) document.pending.cancel(false);
+                        document.closed = true;
+                    }
+                    publish(uri, new JSONArray());
+                }
+                return null;
+            }
+
+            case "textDocument/completion":
+            {
+                Document document = document(params);
+                if (document == null) return null;
+                JSONObject position = params.getJSONObject("position");
+                synchronized (document)
+                {
+                    return document.complete(position.getInt("line"), position.getInt("character"));
+                }
+            }
+
+            case "textDocument/definition":
+            {
+                Document document = document(params);
+                if (document == null) return null;
+                JSONObject position = params.getJSONObject("position");
+                synchronized (document)
+                {
+                    return document.definition(position.getInt("line"), position.getInt("character"));
+                }
+            }
+
+            default:
+                if (method.startsWith("$/"))
+                {
+                    return null;
+                }
+                throw new UnsupportedOperationException(method);
+        }
+    }
+
+    private Document document(JSONObject params)
+    {
+        synchronized (documents)
+        {
+            return documents.get(params.getJSONObject("textDocument").getString("uri"));
+        }
+    }
+
+    /**
+     * Publish diagnostics once the document has not changed for a while
+     */
+    private void scheduleDiagnostics(final Document document)
+    {
+        synchronized (document)
+        {
+            if (document.pending != null)
+            {
+                document.pending.cancel(false);
+            }
+
+            document.pending = timer.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    JSONArray diagnostics;
+                    synchronized (document)
+                    {
+                        if (document.closed) return;
+                        diagnostics = document.diagnostics();
+                    }
+                    publish(document.uri, diagnostics);
+                }
+            }, DIAGNOSTICS_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void publish(String uri, JSONArray diagnostics)
+    {
+        JSONObject notification = new JSONObject()
+            .put("method", "textDocument/publishDiagnostics")
+            .put("params", new JSONObject().put("uri", uri).put("diagnostics", diagnostics));
+        try
+        {
+            send(notification);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Error: Failed to publish diagnostics: " + e.getMessage());
+        }
+    }
+
+    private void respond(JSONObject response) throws IOException
+    {
+        send(response);
+    }
+
+    private void send(JSONObject message) throws IOException
+    {
+        byte[] body = message.put("jsonrpc", "2.0").toString().getBytes(StandardCharsets.UTF_8);
+        synchronized (out)
+        {
+            out.write(("Content-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(body);
+            out.flush();
+        }
+    }
+
+    /**
+     * Read one message (headers, blank line, Content-Length bytes of JSON);
+     * null at end of input
+     */
+    private String readMessage() throws IOException
+    {
+        int length = -1;
+        String header;
+        while ((header = readHeaderLine()) != null)
+        {
+            if (header.isEmpty())
+            {
+                if (length >= 0) break;
+                continue;
+            }
+            if (header.toLowerCase().startsWith("content-length:"))
+            {
+                length = Integer.parseInt(header.substring("content-length:".length()).trim());
+            }
+        }
+        if (header == null)
+        {
+            return null;
+        }
+
+        byte[] body = new byte[length];
+        int read = 0;
+        while (read < length)
+        {
+            int n = in.read(body, read, length - read);
+            if (n < 0) return null;
+            read += n;
+        }
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    private String readHeaderLine() throws IOException
+    {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) >= 0)
+        {
+            if (b == '\n')
+            {
+                return line.toString("US-ASCII");
+            }
+            if (b != '\r')
+            {
+                line.write(b);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * An open document: its lines, a parse result per line and the index of
+     * fact types and roles
+     */
+    static class Document
+    {
+        final String uri;
+        final List<String> lines = new ArrayList<>();
+        final List<LineInfo> infos = new ArrayList<>();
+
+        // Number of lines defining a fact type / using a role, by name
+        final Map<String, Integer> factTypes = new HashMap<>();
+        final Map<String, Integer> roles = new HashMap<>();
+
+        ScheduledFuture<?> pending;
+        boolean closed;
+
+        Document(String uri)
+        {
+            this.uri = uri;
+        }
+
+        /**
+         * Replace the text between two positions and reparse the affected lines
+         */
+        void replace(int startLine, int startChar, int endLine, int endChar, String text, boolean all)
+        {
+            if (all || lines.isEmpty())
+            {
+                for (LineInfo info : infos) unindex(info);
+                lines.clear();
+                infos.clear();
+                startLine = 0;
+                endLine = -1;
+                startChar = 0;
+                endChar = 0;
+            }
+
+            startLine = Math.min(startLine, lines.size());
+            endLine = Math.min(endLine, lines.size() - 1);
+
+            String first = startLine < lines.size() ? lines.get(startLine) : "";
+            String last = endLine >= 0 ? lines.get(endLine) : "";
+            String prefix = first.substring(0, Math.min(startChar, first.length()));
+            String suffix = endLine >= 0 ? last.substring(Math.min(endChar, last.length())) : "";
+
+            String[] replacement = LINE_BREAK.split(prefix + text + suffix, -1);
+
+            // Remove the old lines and their index entries
+            for (int i = endLine; i >= startLine; i--)
+            {
+                unindex(infos.get(i));
+            }
+            if (endLine >= startLine)
+            {
+                lines.subList(startLine, endLine + 1).clear();
+                infos.subList(startLine, endLine + 1).clear();
+            }
+
+            // Parse only the new lines
+            List<LineInfo> parsed = new ArrayList<>(replacement.length);
+            for (String line : replacement)
+            {
+                LineInfo info = LineInfo.parse(line);
+                index(info);
+                parsed.add(info);
+            }
+            lines.addAll(startLine, Arrays.asList(replacement));
+            infos.addAll(startLine, parsed);
+        }
+
+        private void index(LineInfo info)
+        {
+            if (info.factType != null) add(factTypes, info.factType, 1);
+            for (String role : info.roles) add(roles, role, 1);
+        }
+
+        private void unindex(LineInfo info)
+        {
+            if (info.factType != null) add(factTypes, info.factType, -1);
+            for (String role : info.roles) add(roles, role, -1);
+        }
+
+        private static void add(Map<String, Integer> counts, String name, int delta)
+        {
+            Integer count = counts.get(name);
+            int updated = (count == null ? 0 : count) + delta;
+            if (updated <= 0)
+            {
+                counts.remove(name);
+            }
+            else
+            {
+                counts.put(name, updated);
+            }
+        }
+
+        /**
+         * Diagnostics from the cached line results (no reparse)
+         */
+        JSONArray diagnostics()
+        {
+            JSONArray diagnostics = new JSONArray();
+            boolean seenHeader = false;
+
+            for (int i = 0; i < infos.size() && diagnostics.length() < MAX_DIAGNOSTICS; i++)
+            {
+                LineInfo info = infos.get(i);
+                String line = lines.get(i);
+
+                if (info.error != null)
+                {
+                    diagnostics.put(diagnostic(i, line, info.errorColumn, info.error));
+                }
+                else if (info.expression && !seenHeader)
+                {
+                    diagnostics.put(diagnostic(i, line, info.expressionColumn, "Expression outside a fact type section"));
+                }
+
+                seenHeader |= info.factType != null;
+            }
+
+            return diagnostics;
+        }
+
+        private static JSONObject diagnostic(int line, String text, int column, String message)
+        {
+            int start = utf16Offset(text, column);
+            return new JSONObject()
+                .put("range", range(line, start, line, Math.max(start + 1, text.length())))
+                .put("severity", SEVERITY_ERROR)
+                .put("source", "casetalk")
+                .put("message", message);
+        }
+
+        /**
+         * Completion list for the context of the position, filtered by the
+         * text typed so far (incomplete when capped, so the client asks again)
+         */
+        JSONObject complete(int line, int character)
+        {
+            JSONArray items = new JSONArray();
+            JSONObject list = new JSONObject().put("isIncomplete", false).put("items", items);
+            if (line >= lines.size()) return list;
+
+            String text = lines.get(line);
+            String before = text.substring(0, Math.min(character, text.length()));
+            String trimmed = before.trim();
+
+            if (trimmed.startsWith("[") && before.indexOf(']') < 0)
+            {
+                list.put("isIncomplete", addItems(items, factTypes, before.substring(before.indexOf('[') + 1), COMPLETION_CLASS));
+            }
+            else if (trimmed.startsWith("\"") && before.lastIndexOf('"') > before.indexOf('"'))
+            {
+                // After the expression: only ", Tag" may follow
+                if (before.substring(before.lastIndexOf('"') + 1).trim().startsWith(","))
+                {
+                    items.put(new JSONObject().put("label", "Tag").put("kind", COMPLETION_KEYWORD));
+                }
+            }
+            else if (trimmed.startsWith("\""))
+            {
+                int open = before.lastIndexOf('<');
+                if (open > before.lastIndexOf('>'))
+                {
+                    list.put("isIncomplete", addItems(items, roles, before.substring(open + 1), COMPLETION_FIELD));
+                }
+                else
+                {
+                    list.put("isIncomplete", addItems(items, factTypes, lastWord(before), COMPLETION_CLASS));
+                }
+            }
+
+            return list;
+        }
+
+        /**
+         * Add the names starting with the prefix (ignoring case); true when capped
+         */
+        private static boolean addItems(JSONArray items, Map<String, Integer> names, String prefix, int kind)
+        {
+            for (String name : names.keySet())
+            {
+                if (!name.regionMatches(true, 0, prefix, 0, prefix.length())) continue;
+
+                if (items.length() == MAX_COMPLETIONS) return true;
+                items.put(new JSONObject().put("label", name).put("kind", kind));
+            }
+            return false;
+        }
+
+        private static String lastWord(String text)
+        {
+            int start = text.length();
+            while (start > 0 && Character.isLetterOrDigit(text.charAt(start - 1)))
+            {
+                start--;
+            }
+            return text.substring(start);
+        }
+
+        /**
+         * Location of the definition of the fact type or role at the position
+         */
+        Object definition(int line, int character)
+        {
+            if (line >= lines.size() || !infos.get(line).expression) return null;
+
+            String text = lines.get(line);
+
+            // A <role>: go to its first use
+            int open = text.lastIndexOf('<', character);
+            int close = open < 0 ? -1 : text.indexOf('>', open);
+            if (close >= 0 && character <= close + 1)
+            {
+                String role = text.substring(open + 1, close);
+                String placeholder = "<" + role + ">";
+                for (int i = 0; i < infos.size(); i++)
+                {
+                    if (infos.get(i).roles.contains(role))
+                    {
+                        int start = lines.get(i).indexOf(placeholder);
+                        return location(i, start, start + placeholder.length());
+                    }
+                }
+                return null;
+            }
+
+            // The longest fact type name in the expression that covers the position
+            String best = null;
+            for (String name : factTypes.keySet())
+            {
+                if (best != null && name.length() <= best.length()) continue;
+
+                for (int at = text.indexOf(name); at >= 0; at = text.indexOf(name, at + 1))
+                {
+                    if (at <= character && character <= at + name.length() && isWord(text, at, at + name.length()))
+                    {
+                        best = name;
+                        break;
+                    }
+                }
+            }
+            if (best == null) return null;
+
+            for (int i = 0; i < infos.size(); i++)
+            {
+                if (best.equals(infos.get(i).factType))
+                {
+                    String header = lines.get(i);
+                    return location(i, header.indexOf('['), header.indexOf(']') + 1);
+                }
+            }
+            return null;
+        }
+
+        private static boolean isWord(String text, int start, int end)
+        {
+            return (start == 0 || !Character.isLetterOrDigit(text.charAt(start - 1)))
+                && (end == text.length() || !Character.isLetterOrDigit(text.charAt(end)));
+        }
+
+        private JSONObject location(int line, int start, int end)
+        {
+            return new JSONObject().put("uri", uri).put("range", range(line, start, line, end));
+        }
+    }
+
+    /**
+     * Parse result of one line
+     */
+    static class LineInfo
+    {
+        private static final List<String> NO_ROLES = new ArrayList<>(0);
+
+        String factType;
+        boolean expression;
+        int expressionColumn;
+        List<String> roles = NO_ROLES;
+
+        String error;
+        int errorColumn;
+
+        /**
+         * Tokenize and validate a line with the lexer and validator rules
+         */
+        static LineInfo parse(String line)
+        {
+            final LineInfo info = new LineInfo();
+            if (line.isEmpty()) return info;
+
+            final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+            FactExpressionValidator.Result result = FactExpressionValidator.validate(buffer, 0, bytes.length);
+            if (!result.problems.isEmpty())
+            {
+                FactExpressionValidator.Problem problem = result.problems.get(0);
+                info.error = problem.message;
+                info.errorColumn = problem.column;
+                return info;
+            }
+
+            FactExpressionLexer.scan(buffer, 0, bytes.length, new FactExpressionLexer.TokenHandler()
+            {
+                @Override
+                public void token(int type, int start, int end)
+                {
+                    if (type == FactExpressionLexer.HEADER)
+                    {
+                        info.factType = new String(bytes, start + 1, end - start - 2, StandardCharsets.UTF_8).trim();
+                    }
+                    else if (type == FactExpressionLexer.EXPRESSION)
+                    {
+                        info.expression = true;
+                        info.expressionColumn = FactExpressionLexer.column(buffer, 0, start);
+                        info.roles = roles(new String(bytes, start + 1, end - start - 2, StandardCharsets.UTF_8));
+                    }
+                }
+            });
+
+            return info;
+        }
+
+        private static List<String> roles(String expression)
+        {
+            List<String> roles = NO_ROLES;
+            int open = expression.indexOf('<');
+            while (open >= 0)
+            {
+                int close = expression.indexOf('>', open + 1);
+                if (close < 0) break;
+
+                if (close > open + 1)
+                {
+                    if (roles == NO_ROLES) roles = new ArrayList<>(2);
+                    roles.add(expression.substring(open + 1, close));
+                }
+                open = expression.indexOf('<', close + 1);
+            }
+            return roles;
+        }
+    }
+
+    /**
+     * Convert a 1-based character (code point) column to a UTF-16 offset
+     */
+    private static int utf16Offset(String text, int column)
+    {
+        int codePoints = Math.min(column - 1, text.codePointCount(0, text.length()));
+        return text.offsetByCodePoints(0, Math.max(0, codePoints));
+    }
+
+    private static JSONObject range(int startLine, int startChar, int endLine, int endChar)
+    {
+        return new JSONObject()
+            .put("start", new JSONObject().put("line", startLine).put("character", startChar))
+            .put("end", new JSONObject().put("line", endLine).put("character", endChar));
+    }
+}
@@ -0,0 +1,214 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Tokenizer for CaseTalk fact expression files, following the rules of the
+ * CaseTalk Notepad++ UDL (CaseTalk Notepad++ UDL.xml):
+ *
+ *   ;  ...           line comment (UDL comment "00;")
+ *   [ ... ]          fact type header (UDL block comment "03[ 04]")
+ *   Tag              keyword, case-sensitive, whole words only (Keywords1)
+ *
+ * The UDL leaves everything else in the default style. The lexer additionally
+ * recognizes the quoted expressions and the comma before Tag, as laid out in
+ * CaseTalk:
+ *
+ *   [City of Residence]
+ *   "John Doe lives in New York.", Tag
+ *
+ * Within a header or an expression ';' is an ordinary character. Headers and
+ * expressions end at the line end; an unclosed one is reported as an
+ * UNTERMINATED_* token.
+ *
+ * The lexer works on UTF-8 bytes (e.g. a memory-mapped file), reports tokens
+ * as byte ranges through a callback and does not allocate.
+ *
+ * @author CaseTalk Integration
+ * @version 1.0
+ */
+public class FactExpressionLexer
+{
+    public static final int HEADER = 1;
+    public static final int EXPRESSION = 2;
+    public static final int KEYWORD = 3;
+    public static final int COMMA = 4;
+    public static final int COMMENT = 5;
+    public static final int TEXT = 6;
+    public static final int UNTERMINATED_HEADER = 7;
+    public static final int UNTERMINATED_EXPRESSION = 8;
+    public static final int END_OF_LINE = 9;
+
+    private static final byte[] TAG = {'T', 'a', 'g'};
+
+    /**
+     * Receives the tokens of a scan. start/end are byte positions in the buffer;
+     * END_OF_LINE tokens have start == end == position of the line end.
+     */
+    public interface TokenHandler
+    {
+        void token(int type, int start, int end);
+    }
+
+    /**
+     * Tokenize the bytes [start, end) of the buffer. Every line, including a
+     * last line without line break, ends with an END_OF_LINE token.
+     *
+     * @return the number of lines
+     */
+    public static int scan(ByteBuffer buffer, int start, int end, TokenHandler handler)
+    {
+        int lines = 0;
+        int pos = start;
+        boolean lineHasContent = false;
+
+        while (pos < end)
+        {
+            byte b = buffer.get(pos);
+
+            switch (b)
+            {
+                case '\n':
+                    handler.token(END_OF_LINE, pos, pos);
+                    lines++;
+                    lineHasContent = false;
+                    pos++;
+                    continue;
+
+                case ' ':
+                case '\t':
+                case '\r':
+                    pos++;
+                    continue;
+
+                case ';':
+                {
+                    int stop = lineEnd(buffer, pos, end);
+                    handler.token(COMMENT, pos, stop);
+                    pos = stop;
+                    break;
+                }
+
+                case '[':
+                {
+                    int close = find(buffer, pos + 1, end, (byte) ']');
+                    if (close < 0)
+                    {
+                        int stop = lineEnd(buffer, pos, end);
+                        handler.token(UNTERMINATED_HEADER, pos, stop);
+                        pos = stop;
+                    }
+                    else
+                    {
+                        handler.token(HEADER, pos, close + 1);
+                        pos = close + 1;
+                    }
+                    break;
+                }
+
+                case '"':
+                {
+                    int close = find(buffer, pos + 1, end, (byte) '"');
+                    if (close < 0)
+                    {
+                        int stop = lineEnd(buffer, pos, end);
+                        handler.token(UNTERMINATED_EXPRESSION, pos, stop);
+                        pos = stop;
+                    }
+                    else
+                    {
+                        handler.token(EXPRESSION, pos, close + 1);
+                        pos = close + 1;
+                    }
+                    break;
+                }
+
+                case ',':
+                    handler.token(COMMA, pos, pos + 1);
+                    pos++;
+                    break;
+
+                default:
+                {
+                    int stop = pos + 1;
+                    while (stop < end && !isBreak(buffer.get(stop)))
+                    {
+                        stop++;
+                    }
+                    handler.token(isTag(buffer, pos, stop) ? KEYWORD : TEXT, pos, stop);
+                    pos = stop;
+                    break;
+                }
+            }
+
+            lineHasContent = true;
+        }
+
+        if (lineHasContent)
+        {
+            handler.token(END_OF_LINE, end, end);
+            lines++;
+        }
+
+        return lines;
+    }
+
+    /**
+     * Characters that end a word (the UDL has no operators or delimiters, so
+     * words are separated by white space and the comment/header/expression starts)
+     */
+    private static boolean isBreak(byte b)
+    {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n'
+            || b == ';' || b == '[' || b == '"' || b == ',';
+    }
+
+    private static boolean isTag(ByteBuffer buffer, int start, int end)
+    {
+        if (end - start != TAG.length) return false;
+
+        for (int i = 0; i < TAG.length; i++)
+        {
+            if (buffer.get(start + i) != TAG[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Position of the byte on the current line, or -1 if the line ends first
+     */
+    private static int find(ByteBuffer buffer, int pos, int end, byte wanted)
+    {
+        for (; pos < end; pos++)
+        {
+            byte b = buffer.get(pos);
+            if (b == wanted) return pos;
+            if (b == '\n') return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Position of the line end, excluding a trailing '\r'
+     */
+    private static int lineEnd(ByteBuffer buffer, int start, int end)
+    {
+        int pos = start;
+        while (pos < end && buffer.get(pos) != '\n')
+        {
+            pos++;
+        }
+        return pos > start && buffer.get(pos - 1) == '\r' ? pos - 1 : pos;
+    }
+
+    /**
+     * 1-based character column of a byte position (UTF-8 continuation bytes are not counted)
+     */
+    public static int column(ByteBuffer buffer, int lineStart, int pos)
+    {
+        int column = 1;
+        for (int i = lineStart; i < pos; i++)
+        {
+            if ((buffer.get(i) & 0xC0) != 0x80) column++;
+        }
+        return column;
+    }
+}
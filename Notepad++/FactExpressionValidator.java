@@ -0,0 +1,495 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Bulk syntax check of CaseTalk fact expression files before import.
+ *
+ * Files are memory-mapped and split into chunks at line boundaries; the chunks
+ * are tokenized (FactExpressionLexer) and validated in parallel. Line numbers
+ * are resolved afterwards from the line counts of the preceding chunks, so the
+ * errors are reported in file order with line and column.
+ *
+ * Rules per line:
+ *   - blank, or a ; comment
+ *   - a fact type header: [Name]
+ *   - an expression: "...", optionally followed by , Tag
+ * and a comment may follow a header or an expression. Expressions must be
+ * placed under a header.
+ *
+ * Usage:
+ *   java FactExpressionValidator [--threads=<n>] [--ext=<extension>] <file|directory>...
+ *
+ * Directories are searched recursively for files with the extension (default .exp).
+ * Exit code 1 when errors were found.
+ *
+ * @author CaseTalk Integration
+ * @version 1.0
+ */
+public class FactExpressionValidator
+{
+    private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+
+    public static void main(String[] args)
+    {
+        int threads = Runtime.getRuntime().availableProcessors();
+        String extension = ".exp";
+        List<Path> files = new ArrayList<>();
+
+        try
+        {
+            for (String arg : args)
+            {
+                if (arg.startsWith("--threads="))
+                {
+                    threads = Integer.parseInt(arg.substring("--threads=".length()));
+                }
+                else if (arg.startsWith("--ext="))
+                {
+                    extension = arg.substring("--ext=".length()).toLowerCase();
+                }
+                else
+                {
+                    addFiles(Paths.get(arg), extension, files);
+                }
+            }
+
+            if (files.isEmpty())
+            {
+                System.err.println("Usage: java FactExpressionValidator [--threads=<n>] [--ext=<extension>] <file|directory>...");
+                System.exit(1);
+            }
+
+            long start = System.nanoTime();
+            Summary summary = validate(files, threads);
+            long millis = (System.nanoTime() - start) / 1000000;
+
+            for (Problem problem : summary.problems)
+            {
+                System.out.println(files.get(problem.file) + ":" + problem.line + ":" + problem.column + ": " + problem.message);
+            }
+
+            System.out.println(String.format("Validated %d file(s), %d lines, %d fact types, %d expressions in %d ms (%.1f MB/s): %d error(s)",
+                files.size(), summary.lines, summary.headers, summary.expressions, millis,
+                summary.bytes / 1048576.0 / Math.max(0.001, millis / 1000.0), summary.problems.size()));
+
+            System.exit(summary.problems.isEmpty() ? 0 : 1);
+        }
+        catch (Exception e)
+        {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static void addFiles(Path path, final String extension, List<Path> files) throws IOException
+    {
+        if (!Files.isDirectory(path))
+        {
+            files.add(path);
+            return;
+        }
+
+        try (Stream<Path> walk = Files.walk(path))
+        {
+            walk.filter(p -> Files.isRegularFile(p) && p.getFileName().toString().toLowerCase().endsWith(extension))
+                .sorted()
+                .forEach(files::add);
+        }
+    }
+
+    /**
+     * Validate files in parallel chunks and merge the results in file order
+     */
+    static Summary validate(List<Path> files, int threads) throws Exception
+    {
+        List<Chunk> chunks = new ArrayList<>();
+        for (int f = 0; f < files.size(); f++)
+        {
+            split(f, files.get(f), chunks);
+        }
+
+        List<Future<Result>> futures = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try
+        {
+            for (final Chunk chunk : chunks)
+            {
+                futures.add(executor.submit(() -> validate(chunk, files.get(chunk.file))));
+            }
+
+            Summary summary = new Summary();
+            int file = -1;
+            long lineOffset = 0;
+            boolean hasHeader = false;
+
+            for (int i = 0; i < chunks.size(); i++)
+            {
+                Chunk chunk = chunks.get(i);
+                Result result = futures.get(i).get();
+
+                if (chunk.file != file)
+                {
+                    file = chunk.file;
+                    lineOffset = 0;
+                    hasHeader = false;
+                }
+
+                // Expressions before the first header of a chunk are only an error
+                // when no earlier chunk of the file had a header
+                if (!hasHeader)
+                {
+                    addProblems(result.headerlessProblems, chunk.file, lineOffset, summary.problems);
+                }
+                addProblems(result.problems, chunk.file, lineOffset, summary.problems);
+
+                hasHeader |= result.headers > 0;
+                lineOffset += result.lines;
+
+                summary.lines += result.lines;
+                summary.headers += result.headers;
+                summary.expressions += result.expressions;
+                summary.bytes += chunk.end - chunk.start;
+            }
+
+            Collections.sort(summary.problems);
+            return summary;
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private static void addProblems(List<Problem> problems, int file, long lineOffset, List<Problem> target)
+    {
+        for (Problem problem : problems)
+        {
+            problem.file = file;
+            problem.line += lineOffset;
+            target.add(problem);
+        }
+    }
+
+    /**
+     * Split a file into chunks of about CHUNK_SIZE that start at the beginning of a line
+     */
+    private static void split(int file, Path path, List<Chunk> chunks) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            long start = 0;
+
+            // Skip a UTF-8 byte order mark
+            ByteBuffer bom = ByteBuffer.allocate(3);
+            if (channel.read(bom, 0) == 3 && (bom.get(0) & 0xFF) == 0xEF && (bom.get(1) & 0xFF) == 0xBB && (bom.get(2) & 0xFF) == 0xBF)
+            {
+                start = 3;
+            }
+
+            ByteBuffer window = ByteBuffer.allocate(4096);
+            while (start < size)
+            {
+                long end = Math.min(size, start + CHUNK_SIZE);
+
+                // Move the end to just after the next line break
+                while (end < size)
+                {
+                    window.clear();
+                    int read = channel.read(window, end);
+                    int newline = -1;
+                    for (int i = 0; i < read; i++)
+                    {
+                        if (window.get(i) == '\n')
+                        {
+                            newline = i;
+                            break;
+                        }
+                    }
+                    if (newline >= 0)
+                    {
+                        end += newline + 1;
+                        break;
+                    }
+                    end = Math.min(size, end + Math.max(read, 1));
+                }
+
+                if (end - start > Integer.MAX_VALUE)
+                {
+                    throw new IOException(path + ": line too long near offset " + start);
+                }
+
+                chunks.add(new Chunk(file, start, end));
+                start = end;
+            }
+        }
+    }
+
+    private static Result validate(Chunk chunk, Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.end - chunk.start);
+            return validate(buffer, 0, buffer.limit());
+        }
+    }
+
+    /**
+     * Validate the lines in [start, end) of a buffer; line numbers in the result
+     * are relative to the start (first line is 1)
+     */
+    static Result validate(ByteBuffer buffer, int start, int end)
+    {
+        LineValidator validator = new LineValidator(buffer, start);
+        validator.result.lines = FactExpressionLexer.scan(buffer, start, end, validator);
+        return validator.result;
+    }
+
+    /**
+     * Grammar of a line as a small state machine over the tokens
+     */
+    private static class LineValidator implements FactExpressionLexer.TokenHandler
+    {
+        private static final int LINE_START = 0;
+        private static final int AFTER_HEADER = 1;
+        private static final int AFTER_EXPRESSION = 2;
+        private static final int AFTER_COMMA = 3;
+        private static final int AFTER_TAG = 4;
+        private static final int SKIP_LINE = 5;
+
+        private final ByteBuffer buffer;
+        private final Result result = new Result();
+        private int state = LINE_START;
+        private long line = 1;
+        private int lineStart;
+
+        LineValidator(ByteBuffer buffer, int start)
+        {
+            this.buffer = buffer;
+            this.lineStart = start;
+        }
+
+        @Override
+        public void token(int type, int start, int end)
+        {
+            if (type == FactExpressionLexer.END_OF_LINE)
+            {
+                if (state == AFTER_COMMA)
+                {
+                    error(start, "Expected Tag after ','");
+                }
+                line++;
+                lineStart = end + 1;
+                state = LINE_START;
+                return;
+            }
+
+            // A comment may end any line
+            if (state == SKIP_LINE || type == FactExpressionLexer.COMMENT)
+            {
+                return;
+            }
+
+            switch (state)
+            {
+                case LINE_START:
+                    lineStart(type, start, end);
+                    break;
+
+                case AFTER_HEADER:
+                    error(start, "Unexpected text after fact type header");
+                    break;
+
+                case AFTER_EXPRESSION:
+                    if (type == FactExpressionLexer.COMMA)
+                    {
+                        state = AFTER_COMMA;
+                    }
+                    else
+                    {
+                        error(start, "Expected ', Tag' or end of line after expression");
+                    }
+                    break;
+
+                case AFTER_COMMA:
+                    if (type == FactExpressionLexer.KEYWORD)
+                    {
+                        state = AFTER_TAG;
+                    }
+                    else if (type == FactExpressionLexer.TEXT)
+                    {
+                        error(start, "Unknown keyword '" + text(start, end) + "' (expected Tag)");
+                    }
+                    else
+                    {
+                        error(start, "Expected Tag after ','");
+                    }
+                    break;
+
+                case AFTER_TAG:
+                    error(start, "Unexpected text after Tag");
+                    break;
+
+                default:
+                    break;
+            }
+        }
+
+        private void lineStart(int type, int start, int end)
+        {
+            switch (type)
+            {
+                case FactExpressionLexer.HEADER:
+                    if (isBlank(start + 1, end - 1))
+                    {
+                        error(start, "Empty fact type header");
+                        return;
+                    }
+                    result.headers++;
+                    state = AFTER_HEADER;
+                    break;
+
+                case FactExpressionLexer.EXPRESSION:
+                    if (isBlank(start + 1, end - 1))
+                    {
+                        error(start, "Empty expression");
+                        return;
+                    }
+                    if (result.headers == 0)
+                    {
+                        result.headerlessProblems.add(new Problem(line, column(start), "Expression outside a fact type section"));
+                    }
+                    result.expressions++;
+                    state = AFTER_EXPRESSION;
+                    break;
+
+                case FactExpressionLexer.UNTERMINATED_HEADER:
+                    error(start, "Unterminated fact type header (missing ']')");
+                    break;
+
+                case FactExpressionLexer.UNTERMINATED_EXPRESSION:
+                    error(start, "Unterminated expression (missing '\"')");
+                    break;
+
+                default:
+                    error(start, "Expected an expression, a [fact type] header or a ; comment");
+                    break;
+            }
+        }
+
+        private void error(int position, String message)
+        {
+            result.problems.add(new Problem(line, column(position), message));
+            state = SKIP_LINE;
+        }
+
+        private int column(int position)
+        {
+            return FactExpressionLexer.column(buffer, lineStart, position);
+        }
+
+        private boolean isBlank(int start, int end)
+        {
+            for (int i = start; i < end; i++)
+            {
+                byte b = buffer.get(i);
+                if (b != ' ' && b != '\t') return false;
+            }
+            return true;
+        }
+
+        private String text(int start, int end)
+        {
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++)
+            {
+                bytes[i] = buffer.get(start + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Part of a file [start, end), starting at the beginning of a line
+     */
+    private static class Chunk
+    {
+        final int file;
+        final long start;
+        final long end;
+
+        Chunk(int file, long start, long end)
+        {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Validation result of one chunk
+     */
+    static class Result
+    {
+        long lines;
+        int headers;
+        long expressions;
+        final List<Problem> problems = new ArrayList<>(0);
+
+        // Expressions before the first header, resolved when chunks are merged
+        final List<Problem> headerlessProblems = new ArrayList<>(0);
+    }
+
+    /**
+     * Totals of a validation run
+     */
+    static class Summary
+    {
+        long lines;
+        long headers;
+        long expressions;
+        long bytes;
+        final List<Problem> problems = new ArrayList<>();
+    }
+
+    /**
+     * A syntax error at a line and column
+     */
+    static class Problem implements Comparable<Problem>
+    {
+        int file;
+        long line;
+        final int column;
+        final String message;
+
+        Problem(long line, int column, String message)
+        {
+            this.line = line;
+            this.column = column;
+            this.message = message;
+        }
+
+        @Override
+        public int compareTo(Problem other)
+        {
+            if (file != other.file) return Integer.compare(file, other.file);
+            if (line != other.line) return Long.compare(line, other.line);
+            return Integer.compare(column, other.column);
+        }
+    }
+}